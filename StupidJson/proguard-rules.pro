@@ -0,0 +1,8 @@
+# Adapters generated by StupidJsonProcessor are found from the name of the class they serve,
+# the rest of the class can be shrunk and obfuscated freely
+-keepattributes RuntimeVisibleAnnotations
+-keep @interface com.stupidjson.StupidJson$GenerateAdapter
+-keepnames @com.stupidjson.StupidJson$GenerateAdapter class *
+-keep class * extends com.stupidjson.StupidJson$Adapter {
+    <init>();
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+// Tokenizer over UTF-8 bytes. Structure, numbers and escapes are plain ascii, so bytes are
+// only decoded when they end up in a string value.
+final class ByteJsonReader extends JsonReader
+{
+    private final static char REPLACEMENT = '\uFFFD';
+    private final static int BUFFER_SIZE = 8192;
+
+    private final byte[] buf;
+    private final int start;
+    private final int end;
+    private boolean loaded;
+
+    // streamed input, at most one is set
+    private final InputStream in;
+    private final ReadableByteChannel channel;
+    private final ByteBuffer channelBuffer;
+    // bytes read into buf, [window, filled) is the tail of a split UTF-8 sequence
+    private int window;
+    private int filled;
+    private boolean eof;
+
+    /***********************************************************************************************/
+    ByteJsonReader(byte[] buf, int offset, int length)
+    {
+        this.buf = buf;
+        this.start = offset;
+        this.end = offset + length;
+        this.in = null;
+        this.channel = null;
+        this.channelBuffer = null;
+    }
+
+    /***********************************************************************************************/
+    ByteJsonReader(InputStream in)
+    {
+        this.buf = new byte[BUFFER_SIZE];
+        this.start = 0;
+        this.end = 0;
+        this.in = in;
+        this.channel = null;
+        this.channelBuffer = null;
+    }
+
+    /***********************************************************************************************/
+    ByteJsonReader(ReadableByteChannel channel)
+    {
+        this.buf = new byte[BUFFER_SIZE];
+        this.start = 0;
+        this.end = 0;
+        this.in = null;
+        this.channel = channel;
+        this.channelBuffer = ByteBuffer.wrap(buf);
+    }
+
+    /***********************************************************************************************/
+    @Override
+    int at(int i)
+    {
+        return buf[i] & 0xFF;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    int stringEnd(int from, int to)
+    {
+        return ByteScanner.INSTANCE.quoteOrEscape(buf, from, to);
+    }
+
+    /***********************************************************************************************/
+    @Override
+    int structureNext(int from, int to)
+    {
+        return ByteScanner.INSTANCE.quoteOrBracket(buf, from, to);
+    }
+
+    /***********************************************************************************************/
+    @Override
+    boolean load() throws IOException
+    {
+        if(in == null && channel == null)
+        {
+            // the whole slice is one window
+            if(loaded || start == end)
+            {
+                return false;
+            }
+
+            loaded = true;
+            pos = start;
+            limit = end;
+            return true;
+        }
+
+        // carry the held back tail over to the new window
+        int keep = filled - window;
+        System.arraycopy(buf, window, buf, 0, keep);
+        filled = keep;
+        window = 0;
+
+        while(!eof)
+        {
+            int n = readInput(filled, buf.length - filled);
+            if(n < 0)
+            {
+                eof = true;
+                break;
+            }
+
+            filled += n;
+            window = completeLength(filled);
+            if(window > 0)
+            {
+                limit = window;
+                return true;
+            }
+        }
+
+        // truncated sequence at the very end goes through as is and decodes as malformed
+        window = filled;
+        limit = window;
+        return limit > 0;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    int[] splitArray() throws IOException
+    {
+        if(in != null || channel != null || peek() != '[')
+        {
+            return null;
+        }
+
+        int[] starts = JsonTape.elements(buf, pos, end - pos);
+        pos = starts[starts.length - 1];
+        return starts;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    JsonReader readerAt(int p)
+    {
+        return new ByteJsonReader(buf, p, end - p);
+    }
+
+    /***********************************************************************************************/
+    private int readInput(int off, int length) throws IOException
+    {
+        if(in != null)
+        {
+            return in.read(buf, off, length);
+        }
+
+        channelBuffer.limit(off + length);
+        channelBuffer.position(off);
+        return channel.read(channelBuffer);
+    }
+
+    /***********************************************************************************************/
+    // length of buf[0, n) without a UTF-8 sequence cut off at the end
+    private int completeLength(int n)
+    {
+        for(int i = n - 1; i >= 0 && i >= n - 4; i--)
+        {
+            int c = buf[i] & 0xFF;
+            if(c < 0x80)
+            {
+                return n;
+            }
+            else if(c >= 0xC0)
+            {
+                int size = c >= 0xF0 ? 4 : c >= 0xE0 ? 3 : 2;
+                return i + size > n ? i : n;
+            }
+        }
+
+        return n;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    void appendRun(int from, int to)
+    {
+        // never more chars than bytes
+        if(scratchLength + (to - from) > scratch.length)
+        {
+            grow(to - from);
+        }
+
+        byte[] b = buf;
+        char[] s = scratch;
+        int n = scratchLength;
+        int i = from;
+        while(i < to)
+        {
+            int c = b[i];
+            if(c >= 0)
+            {
+                s[n++] = (char) c;
+                i++;
+                continue;
+            }
+
+            int cp = -1;
+            int size = 1;
+            if((c & 0xE0) == 0xC0 && i + 1 < to && isContinuation(b[i + 1]))
+            {
+                cp = ((c & 0x1F) << 6) | (b[i + 1] & 0x3F);
+                size = 2;
+                if(cp < 0x80)
+                {
+                    cp = -1;
+                }
+            }
+            else if((c & 0xF0) == 0xE0 && i + 2 < to && isContinuation(b[i + 1]) && isContinuation(b[i + 2]))
+            {
+                cp = ((c & 0x0F) << 12) | ((b[i + 1] & 0x3F) << 6) | (b[i + 2] & 0x3F);
+                size = 3;
+                if(cp < 0x800 || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE))
+                {
+                    cp = -1;
+                }
+            }
+            else if((c & 0xF8) == 0xF0 && i + 3 < to && isContinuation(b[i + 1]) &&
+                    isContinuation(b[i + 2]) && isContinuation(b[i + 3]))
+            {
+                cp = ((c & 0x07) << 18) | ((b[i + 1] & 0x3F) << 12) | ((b[i + 2] & 0x3F) << 6) | (b[i + 3] & 0x3F);
+                size = 4;
+                if(cp < 0x10000 || cp > Character.MAX_CODE_POINT)
+                {
+                    cp = -1;
+                }
+            }
+
+            if(cp < 0)
+            {
+                // malformed, one replacement char per bad byte
+                s[n++] = REPLACEMENT;
+                i++;
+            }
+            else if(cp < 0x10000)
+            {
+                s[n++] = (char) cp;
+                i += size;
+            }
+            else
+            {
+                cp -= 0x10000;
+                s[n++] = (char) (Character.MIN_HIGH_SURROGATE + (cp >>> 10));
+                s[n++] = (char) (Character.MIN_LOW_SURROGATE + (cp & 0x3FF));
+                i += size;
+            }
+        }
+
+        scratchLength = n;
+    }
+
+    /***********************************************************************************************/
+    private static boolean isContinuation(byte b)
+    {
+        return (b & 0xC0) == 0x80;
+    }
+}
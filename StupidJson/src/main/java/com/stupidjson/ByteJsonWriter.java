@@ -0,0 +1,239 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Writer encoding straight to UTF-8, either into a growable array or through a fixed
+// buffer into a stream
+final class ByteJsonWriter extends JsonWriter
+{
+    private byte[] buf;
+    private int count;
+    // null when collecting into the array
+    private final OutputStream out;
+    // pushed to the stream so far
+    private long flushed;
+
+    /***********************************************************************************************/
+    ByteJsonWriter(int capacity)
+    {
+        this.buf = new byte[capacity];
+        this.out = null;
+    }
+
+    /***********************************************************************************************/
+    ByteJsonWriter(OutputStream out, int bufferSize)
+    {
+        this.buf = new byte[bufferSize];
+        this.out = out;
+    }
+
+    /***********************************************************************************************/
+    // empties the writer for reuse, array collecting only, with room for at least capacity bytes
+    void reset(int capacity)
+    {
+        count = 0;
+        if(buf.length < capacity)
+        {
+            buf = new byte[capacity];
+        }
+    }
+
+    /***********************************************************************************************/
+    int capacity()
+    {
+        return buf.length;
+    }
+
+    /***********************************************************************************************/
+    int size()
+    {
+        return count;
+    }
+
+    /***********************************************************************************************/
+    // makes room for n more bytes, n is small unless we are collecting into the array
+    private void require(int n) throws IOException
+    {
+        if(count + n <= buf.length)
+        {
+            return;
+        }
+
+        if(out != null)
+        {
+            flush();
+            if(n <= buf.length)
+            {
+                return;
+            }
+        }
+
+        byte[] b = new byte[Math.max(buf.length * 2, count + n)];
+        System.arraycopy(buf, 0, b, 0, count);
+        buf = b;
+    }
+
+    /***********************************************************************************************/
+    // pushes buffered bytes to the stream, the stream itself is not flushed
+    void flush() throws IOException
+    {
+        if(count > 0)
+        {
+            out.write(buf, 0, count);
+            flushed += count;
+            count = 0;
+        }
+    }
+
+    /***********************************************************************************************/
+    // bytes written, flushed or not
+    long written()
+    {
+        return flushed + count;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    JsonWriter newChunk(int capacity)
+    {
+        ByteJsonWriter w = new ByteJsonWriter(capacity);
+        w.chunk = true;
+        w.positional = positional;
+        return w;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    void append(JsonWriter chunk) throws IOException
+    {
+        ByteJsonWriter c = (ByteJsonWriter) chunk;
+        if(out != null && c.count > buf.length)
+        {
+            // straight to the stream rather than through the buffer
+            flush();
+            out.write(c.buf, 0, c.count);
+            flushed += c.count;
+            return;
+        }
+
+        require(c.count);
+        System.arraycopy(c.buf, 0, buf, count, c.count);
+        count += c.count;
+    }
+
+    /***********************************************************************************************/
+    byte[] toByteArray()
+    {
+        byte[] b = new byte[count];
+        System.arraycopy(buf, 0, b, 0, count);
+        return b;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    void write(char c) throws IOException
+    {
+        if(count == buf.length)
+        {
+            require(1);
+        }
+
+        buf[count++] = (byte) c;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    void write(char[] chars, int offset, int length) throws IOException
+    {
+        require(length);
+        byte[] b = buf;
+        int n = count;
+        for(int i = offset, end = offset + length; i < end; i++)
+        {
+            b[n++] = (byte) chars[i];
+        }
+        count = n;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    void write(String s, int from, int to) throws IOException
+    {
+        int n = to;
+        int i = from;
+        while(i < n)
+        {
+            require(Math.min(n - i, 1024) * 3 + 1);
+
+            byte[] b = buf;
+            int c0 = count;
+            // every char below takes at most 3 bytes, a surrogate pair split by 'stop' takes the 4th
+            int stop = Math.min(n, i + (b.length - c0 - 1) / 3);
+
+            // ascii fast path
+            while(i < stop)
+            {
+                char c = s.charAt(i);
+                if(c >= 0x80)
+                {
+                    break;
+                }
+                b[c0++] = (byte) c;
+                i++;
+            }
+
+            while(i < stop)
+            {
+                char c = s.charAt(i++);
+                if(c < 0x80)
+                {
+                    b[c0++] = (byte) c;
+                }
+                else if(c < 0x800)
+                {
+                    b[c0++] = (byte) (0xC0 | (c >> 6));
+                    b[c0++] = (byte) (0x80 | (c & 0x3F));
+                }
+                else if(Character.isHighSurrogate(c) && i < n && Character.isLowSurrogate(s.charAt(i)))
+                {
+                    int cp = Character.toCodePoint(c, s.charAt(i++));
+                    b[c0++] = (byte) (0xF0 | (cp >> 18));
+                    b[c0++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    b[c0++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    b[c0++] = (byte) (0x80 | (cp & 0x3F));
+                }
+                else if(c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)
+                {
+                    // unpaired surrogate, same replacement String.getBytes() uses
+                    b[c0++] = '?';
+                }
+                else
+                {
+                    b[c0++] = (byte) (0xE0 | (c >> 12));
+                    b[c0++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    b[c0++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+
+            count = c0;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+// Finds the bytes that matter in runs of UTF-8 json: where a string ends, where the structure
+// continues. This one looks at a byte at a time, the plain Java build can bring one that looks at
+// whole vectors (StupidJsonVector). Only byte input goes through here, char input (Strings and
+// Readers) is always scanned a char at a time.
+class ByteScanner
+{
+    // Vector API, only on JDK 17+ with jdk.incubator.vector added
+    private final static String VECTOR = "com.stupidjson.VectorByteScanner";
+    final static ByteScanner INSTANCE = load();
+
+    /***********************************************************************************************/
+    private static ByteScanner load()
+    {
+        try
+        {
+            return (ByteScanner) Class.forName(VECTOR).getDeclaredConstructor().newInstance();
+        }
+        catch (Throwable e)
+        {
+            // not there, or the module is not
+            return new ByteScanner();
+        }
+    }
+
+    /***********************************************************************************************/
+    // first i in [from, to) with a quote or a backslash at b[i], to when there is none
+    int quoteOrEscape(byte[] b, int from, int to)
+    {
+        for(int i = from; i < to; i++)
+        {
+            byte c = b[i];
+            if(c == '"' || c == '\\')
+            {
+                return i;
+            }
+        }
+
+        return to;
+    }
+
+    /***********************************************************************************************/
+    // first i in [from, to) with a quote or a bracket at b[i], to when there is none
+    int quoteOrBracket(byte[] b, int from, int to)
+    {
+        for(int i = from; i < to; i++)
+        {
+            byte c = b[i];
+            if(c == '"' || c == '{' || c == '}' || c == '[' || c == ']')
+            {
+                return i;
+            }
+        }
+
+        return to;
+    }
+}
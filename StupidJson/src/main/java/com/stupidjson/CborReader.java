@@ -0,0 +1,753 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+
+// Reader of CBOR (RFC 8949) in memory. Values are read as leniently as JsonReader reads json:
+// numbers from text, text from numbers, containers as their json where text is expected, and
+// anything that does not fit is skipped over as 0, false or null. Tags are skipped, except for
+// the number ones nextDecimal() reads.
+final class CborReader
+{
+    // major types, as peek() returns them
+    final static int EOF = -1;
+    final static int UNSIGNED = 0;
+    final static int NEGATIVE = 1;
+    final static int BYTES = 2;
+    final static int TEXT = 3;
+    final static int ARRAY = 4;
+    final static int MAP = 5;
+    final static int TAG = 6;
+    final static int SIMPLE = 7;
+
+    private final static int HALF = CborWriter.SIMPLE | 25;
+    private final static int UNDEFINED = CborWriter.SIMPLE | 23;
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] buf;
+    private final int start;
+    private final int end;
+    private int pos;
+
+    // ascii names are decoded here for the lookup
+    private char[] scratch = new char[64];
+
+    // last tag peek() stepped over and where its value starts
+    private long tag;
+    private int tagged = -1;
+
+    // last numeric value
+    private boolean numberIntegral;
+    private long numberLong;
+    private double numberDouble;
+
+    /***********************************************************************************************/
+    CborReader(byte[] buf, int offset, int length)
+    {
+        this.buf = buf;
+        this.start = offset;
+        this.end = offset + length;
+        this.pos = offset;
+    }
+
+    /***********************************************************************************************/
+    long consumed()
+    {
+        return pos - start;
+    }
+
+    /***********************************************************************************************/
+    private IOException syntaxError(String message)
+    {
+        return new JsonReader.SyntaxException(message + " at offset " + (pos - start));
+    }
+
+    /***********************************************************************************************/
+    // major type of the next value without consuming it, EOF at the end of input
+    int peek() throws IOException
+    {
+        for(;;)
+        {
+            if(pos >= end)
+            {
+                return EOF;
+            }
+
+            int major = (buf[pos] & 0xFF) >> 5;
+            if(major != TAG)
+            {
+                return major;
+            }
+            tag = head();
+            tagged = pos;
+        }
+    }
+
+    /***********************************************************************************************/
+    // consumes the initial byte and its argument, -1 for an indefinite length
+    private long head() throws IOException
+    {
+        if(pos >= end)
+        {
+            throw syntaxError("Unexpected end of input");
+        }
+
+        int info = buf[pos++] & 0x1F;
+        if(info < 24)
+        {
+            return info;
+        }
+        else if(info == CborWriter.INDEFINITE)
+        {
+            return -1;
+        }
+        else if(info > 27)
+        {
+            throw syntaxError("Malformed head");
+        }
+
+        int n = 1 << (info - 24);
+        if(end - pos < n)
+        {
+            throw syntaxError("Unexpected end of input");
+        }
+
+        long v = 0;
+        for(int i = 0; i < n; i++)
+        {
+            v = (v << 8) | (buf[pos++] & 0xFF);
+        }
+        return v;
+    }
+
+    /***********************************************************************************************/
+    // length of a string or a container, checked against what is left of the input
+    private int length(long n) throws IOException
+    {
+        if(n < 0 || n > end - pos)
+        {
+            throw syntaxError("Bad length " + n);
+        }
+
+        return (int) n;
+    }
+
+    /***********************************************************************************************/
+    // consumes a null (or undefined) if it is the next value
+    boolean consumeNull() throws IOException
+    {
+        if(peek() == SIMPLE)
+        {
+            int b = buf[pos] & 0xFF;
+            if(b == CborWriter.NULL || b == UNDEFINED)
+            {
+                pos++;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /***********************************************************************************************/
+    // consumes the head of the array or map that is next, returns how many items or entries it
+    // has, -1 when they end with a break
+    int containerStart() throws IOException
+    {
+        long n = head();
+        return n < 0 ? -1 : length(n);
+    }
+
+    /***********************************************************************************************/
+    // consumes the break closing an indefinite length container if it is next
+    boolean consumeBreak()
+    {
+        if(pos < end && (buf[pos] & 0xFF) == CborWriter.BREAK)
+        {
+            pos++;
+            return true;
+        }
+
+        return false;
+    }
+
+    /***********************************************************************************************/
+    // number, or text holding one; anything else is skipped and false returned
+    private boolean readNumeric() throws IOException
+    {
+        switch(peek())
+        {
+            case UNSIGNED:
+            {
+                long v = head();
+                // above Long.MAX_VALUE saturates
+                numberLong = v < 0 ? Long.MAX_VALUE : v;
+                numberIntegral = true;
+                return true;
+            }
+
+            case NEGATIVE:
+            {
+                long v = head();
+                numberLong = v < 0 ? Long.MIN_VALUE : ~v;
+                numberIntegral = true;
+                return true;
+            }
+
+            case SIMPLE:
+            {
+                int b = buf[pos] & 0xFF;
+                if(b == HALF || b == CborWriter.FLOAT || b == CborWriter.DOUBLE)
+                {
+                    long bits = head();
+                    numberDouble = b == CborWriter.DOUBLE ? Double.longBitsToDouble(bits) :
+                            b == CborWriter.FLOAT ? Float.intBitsToFloat((int) bits) : halfToFloat((int) bits);
+                    numberIntegral = false;
+                    return true;
+                }
+                break;
+            }
+
+            case TEXT:
+            {
+                String s = nextText().trim();
+                try
+                {
+                    numberLong = Long.parseLong(s);
+                    numberIntegral = true;
+                    return true;
+                }
+                catch (NumberFormatException e)
+                {
+                    // not a long, maybe a double
+                }
+
+                try
+                {
+                    numberDouble = Double.parseDouble(s);
+                    numberIntegral = false;
+                    return true;
+                }
+                catch (NumberFormatException e)
+                {
+                    return false;
+                }
+            }
+        }
+
+        skipValue();
+        return false;
+    }
+
+    /***********************************************************************************************/
+    // Exact value of any number: integers, bignums, decimal fractions, floats and text holding
+    // one. Anything else is skipped and read as zero, same as in readNumeric().
+    BigDecimal nextDecimal() throws IOException
+    {
+        // the innermost tag is the one that applies to the value
+        int major = peek();
+        long tag = tagged == pos ? this.tag : -1;
+        if((tag == CborWriter.TAG_BIGNUM || tag == CborWriter.TAG_NEGATIVE_BIGNUM) && major == BYTES)
+        {
+            BigInteger v = new BigInteger(1, nextBytes());
+            return new BigDecimal(tag == CborWriter.TAG_NEGATIVE_BIGNUM ? v.not() : v);
+        }
+        else if(tag == CborWriter.TAG_DECIMAL && major == ARRAY)
+        {
+            if(containerStart() != 2)
+            {
+                throw syntaxError("Malformed decimal fraction");
+            }
+
+            long exponent = nextLong();
+            BigInteger mantissa = nextDecimal().toBigInteger();
+            if(exponent > Integer.MAX_VALUE || exponent <= Integer.MIN_VALUE)
+            {
+                throw syntaxError("Decimal exponent out of range");
+            }
+            return new BigDecimal(mantissa, (int) -exponent);
+        }
+
+        switch(major)
+        {
+            case UNSIGNED:
+            {
+                long v = head();
+                return new BigDecimal(unsigned(v));
+            }
+
+            case NEGATIVE:
+            {
+                long v = head();
+                return new BigDecimal(unsigned(v).not());
+            }
+
+            case TEXT:
+            {
+                try
+                {
+                    return new BigDecimal(nextText().trim());
+                }
+                catch (NumberFormatException e)
+                {
+                    return BigDecimal.ZERO;
+                }
+            }
+
+            default:
+            {
+                // only floats are left that read as a number
+                if(!readNumeric() || Double.isNaN(numberDouble) || Double.isInfinite(numberDouble))
+                {
+                    return BigDecimal.ZERO;
+                }
+                return BigDecimal.valueOf(numberDouble);
+            }
+        }
+    }
+
+    /***********************************************************************************************/
+    // Any number in the type its encoding has: integers and bignums as Integer, Long or BigInteger,
+    // half and single floats as Float, doubles as Double, decimal fractions as BigDecimal. Text
+    // holding a number reads like in json, anything else is skipped and read as zero.
+    Number nextNumber() throws IOException
+    {
+        int major = peek();
+        long tag = tagged == pos ? this.tag : -1;
+        if((tag == CborWriter.TAG_BIGNUM || tag == CborWriter.TAG_NEGATIVE_BIGNUM) && major == BYTES)
+        {
+            return JsonNumbers.integer(nextDecimal().toBigInteger());
+        }
+        else if(tag == CborWriter.TAG_DECIMAL && major == ARRAY)
+        {
+            return nextDecimal();
+        }
+
+        switch(major)
+        {
+            case UNSIGNED:
+            case NEGATIVE:
+                return JsonNumbers.integer(nextDecimal().toBigInteger());
+
+            case TEXT:
+                return JsonNumbers.valueOf(nextText());
+
+            case SIMPLE:
+            {
+                int b = buf[pos] & 0xFF;
+                if(b == CborWriter.DOUBLE)
+                {
+                    return nextDouble();
+                }
+                else if(b == HALF || b == CborWriter.FLOAT)
+                {
+                    return nextFloat();
+                }
+                break;
+            }
+        }
+
+        skipValue();
+        return 0;
+    }
+
+    /***********************************************************************************************/
+    // a head argument above Long.MAX_VALUE is negative as a long
+    private static BigInteger unsigned(long v)
+    {
+        BigInteger b = BigInteger.valueOf(v & Long.MAX_VALUE);
+        return v < 0 ? b.setBit(63) : b;
+    }
+
+    /***********************************************************************************************/
+    private static float halfToFloat(int h)
+    {
+        int exponent = (h >> 10) & 0x1F;
+        int mantissa = h & 0x3FF;
+        float v = exponent == 0 ? mantissa * 0x1p-24f :
+                exponent == 31 ? (mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN) :
+                (1024 + mantissa) * (float) Math.pow(2, exponent - 25);
+        return (h & 0x8000) != 0 ? -v : v;
+    }
+
+    /***********************************************************************************************/
+    // numbers out of range saturate, as they do for Java's floating point to integer conversions
+    long nextLong() throws IOException
+    {
+        if(!readNumeric())
+        {
+            return 0;
+        }
+
+        return numberIntegral ? numberLong : (long) numberDouble;
+    }
+
+    /***********************************************************************************************/
+    int nextInt() throws IOException
+    {
+        if(!readNumeric())
+        {
+            return 0;
+        }
+
+        if(numberIntegral)
+        {
+            long v = numberLong;
+            return v > Integer.MAX_VALUE ? Integer.MAX_VALUE : v < Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) v;
+        }
+
+        return (int) numberDouble;
+    }
+
+    /***********************************************************************************************/
+    short nextShort() throws IOException
+    {
+        int v = nextInt();
+        return v > Short.MAX_VALUE ? Short.MAX_VALUE : v < Short.MIN_VALUE ? Short.MIN_VALUE : (short) v;
+    }
+
+    /***********************************************************************************************/
+    byte nextByte() throws IOException
+    {
+        int v = nextInt();
+        return v > Byte.MAX_VALUE ? Byte.MAX_VALUE : v < Byte.MIN_VALUE ? Byte.MIN_VALUE : (byte) v;
+    }
+
+    /***********************************************************************************************/
+    double nextDouble() throws IOException
+    {
+        if(!readNumeric())
+        {
+            return 0;
+        }
+
+        return numberIntegral ? (double) numberLong : numberDouble;
+    }
+
+    /***********************************************************************************************/
+    float nextFloat() throws IOException
+    {
+        if(!readNumeric())
+        {
+            return 0;
+        }
+
+        return numberIntegral ? (float) numberLong : (float) numberDouble;
+    }
+
+    /***********************************************************************************************/
+    boolean nextBoolean() throws IOException
+    {
+        int major = peek();
+        if(major == SIMPLE)
+        {
+            int b = buf[pos] & 0xFF;
+            if(b == CborWriter.TRUE || b == CborWriter.FALSE)
+            {
+                pos++;
+                return b == CborWriter.TRUE;
+            }
+        }
+        else if(major == TEXT)
+        {
+            return "true".equalsIgnoreCase(nextText());
+        }
+
+        skipValue();
+        return false;
+    }
+
+    /***********************************************************************************************/
+    char nextChar() throws IOException
+    {
+        if(peek() == TEXT)
+        {
+            String s = nextText();
+            return s.length() > 0 ? s.charAt(0) : 0;
+        }
+
+        return (char) nextInt();
+    }
+
+    /***********************************************************************************************/
+    // lenient string value: null stays null, scalars become their text and containers their json
+    String nextString() throws IOException
+    {
+        switch(peek())
+        {
+            case TEXT:
+                return nextText();
+
+            case UNSIGNED:
+            case NEGATIVE:
+                return Long.toString(nextLong());
+
+            case SIMPLE:
+                return consumeNull() ? null : nextJson();
+
+            default:
+                return nextJson();
+        }
+    }
+
+    /***********************************************************************************************/
+    // text string, chunked ones too
+    private String nextText() throws IOException
+    {
+        long n = head();
+        if(n < 0)
+        {
+            StringBuilder sb = new StringBuilder();
+            while(!consumeBreak())
+            {
+                if(peek() != TEXT)
+                {
+                    throw syntaxError("Expected a text chunk");
+                }
+                sb.append(nextText());
+            }
+            return sb.toString();
+        }
+
+        int length = length(n);
+        String s = new String(buf, pos, length, UTF_8);
+        pos += length;
+        return s;
+    }
+
+    /***********************************************************************************************/
+    // byte string, chunked ones too
+    byte[] nextBytes() throws IOException
+    {
+        long n = head();
+        if(n < 0)
+        {
+            byte[] all = new byte[0];
+            while(!consumeBreak())
+            {
+                if(peek() != BYTES)
+                {
+                    throw syntaxError("Expected a byte chunk");
+                }
+                byte[] chunk = nextBytes();
+                byte[] b = new byte[all.length + chunk.length];
+                System.arraycopy(all, 0, b, 0, all.length);
+                System.arraycopy(chunk, 0, b, all.length, chunk.length);
+                all = b;
+            }
+            return all;
+        }
+
+        int length = length(n);
+        byte[] b = new byte[length];
+        System.arraycopy(buf, pos, b, 0, length);
+        pos += length;
+        return b;
+    }
+
+    /***********************************************************************************************/
+    // index of the key that is next in names, -1 if it is not there. Ascii keys are looked up
+    // straight from the input.
+    int nextName(NameTable names) throws IOException
+    {
+        if(peek() != TEXT || (buf[pos] & 0x1F) == CborWriter.INDEFINITE)
+        {
+            String s = nextString();
+            return s != null ? names.find(s.toCharArray(), s.length()) : -1;
+        }
+
+        int length = length(head());
+        if(scratch.length < length)
+        {
+            scratch = new char[Math.max(length, scratch.length * 2)];
+        }
+
+        byte[] b = buf;
+        char[] s = scratch;
+        int p = pos;
+        for(int i = 0; i < length; i++)
+        {
+            int c = b[p + i];
+            if(c < 0)
+            {
+                String name = new String(b, p, length, UTF_8);
+                pos += length;
+                return names.find(name.toCharArray(), name.length());
+            }
+            s[i] = (char) c;
+        }
+
+        pos += length;
+        return names.find(s, length);
+    }
+
+    /***********************************************************************************************/
+    // json text of the next value
+    String nextJson() throws IOException
+    {
+        CharJsonWriter w = new CharJsonWriter(64);
+        writeJson(w);
+        return w.toString();
+    }
+
+    /***********************************************************************************************/
+    private void writeJson(CharJsonWriter w) throws IOException
+    {
+        switch(peek())
+        {
+            case UNSIGNED:
+            case NEGATIVE:
+                w.writeLong(nextLong());
+                break;
+
+            case TEXT:
+                w.writeString(nextText());
+                break;
+
+            case BYTES:
+            {
+                // same as a byte[] in json
+                byte[] b = nextBytes();
+                w.write('[');
+                for(int i = 0; i < b.length; i++)
+                {
+                    if(i > 0)
+                    {
+                        w.write(',');
+                    }
+                    w.writeInt(b[i]);
+                }
+                w.write(']');
+                break;
+            }
+
+            case ARRAY:
+            {
+                int n = containerStart();
+                w.write('[');
+                for(int i = 0; n >= 0 ? i < n : !consumeBreak(); i++)
+                {
+                    if(i > 0)
+                    {
+                        w.write(',');
+                    }
+                    writeJson(w);
+                }
+                w.write(']');
+                break;
+            }
+
+            case MAP:
+            {
+                int n = containerStart();
+                w.write('{');
+                for(int i = 0; n >= 0 ? i < n : !consumeBreak(); i++)
+                {
+                    if(i > 0)
+                    {
+                        w.write(',');
+                    }
+                    w.writeString(String.valueOf(nextString()));
+                    w.write(':');
+                    writeJson(w);
+                }
+                w.write('}');
+                break;
+            }
+
+            case SIMPLE:
+            {
+                int b = buf[pos] & 0xFF;
+                if(b == CborWriter.TRUE || b == CborWriter.FALSE)
+                {
+                    w.writeBoolean(nextBoolean());
+                }
+                else if(b == HALF || b == CborWriter.FLOAT)
+                {
+                    w.writeFloat(nextFloat());
+                }
+                else if(b == CborWriter.DOUBLE)
+                {
+                    w.writeDouble(nextDouble());
+                }
+                else
+                {
+                    skipValue();
+                    w.write("null");
+                }
+                break;
+            }
+
+            default:
+                throw syntaxError("Unexpected end of input");
+        }
+    }
+
+    /***********************************************************************************************/
+    // skips the next value, whatever it is
+    void skipValue() throws IOException
+    {
+        int major = peek();
+        if(major == EOF)
+        {
+            throw syntaxError("Unexpected end of input");
+        }
+        else if(major == SIMPLE && (buf[pos] & 0xFF) == CborWriter.BREAK)
+        {
+            throw syntaxError("Unexpected break");
+        }
+
+        long n = head();
+        switch(major)
+        {
+            case BYTES:
+            case TEXT:
+                if(n < 0)
+                {
+                    while(!consumeBreak())
+                    {
+                        skipValue();
+                    }
+                }
+                else
+                {
+                    pos += length(n);
+                }
+                break;
+
+            case ARRAY:
+            case MAP:
+            {
+                long items = n < 0 ? -1 : major == MAP ? 2 * n : n;
+                for(long i = 0; items >= 0 ? i < items : !consumeBreak(); i++)
+                {
+                    skipValue();
+                }
+                break;
+            }
+
+            default:
+                // the argument is all there is
+                break;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+// Writer of CBOR (RFC 8949) into a growable array: integers in the shortest head that holds
+// them, floats as raw IEEE bits, strings as UTF-8 after their byte length.
+final class CborWriter
+{
+    final static int UNSIGNED = 0;
+    final static int NEGATIVE = 1 << 5;
+    final static int BYTES = 2 << 5;
+    final static int TEXT = 3 << 5;
+    final static int ARRAY = 4 << 5;
+    final static int MAP = 5 << 5;
+    final static int TAG = 6 << 5;
+    final static int SIMPLE = 7 << 5;
+
+    // tagged numbers: big-endian magnitudes of n and -1 - n, and [exponent, mantissa] decimals
+    final static int TAG_BIGNUM = 2;
+    final static int TAG_NEGATIVE_BIGNUM = 3;
+    final static int TAG_DECIMAL = 4;
+
+    final static int FALSE = SIMPLE | 20;
+    final static int TRUE = SIMPLE | 21;
+    final static int NULL = SIMPLE | 22;
+    final static int FLOAT = SIMPLE | 26;
+    final static int DOUBLE = SIMPLE | 27;
+    // opens an indefinite length array or map, the break closes it
+    final static int INDEFINITE = 31;
+    final static int BREAK = 0xFF;
+
+    private byte[] buf;
+    private int count;
+
+    /***********************************************************************************************/
+    CborWriter(int capacity)
+    {
+        buf = new byte[capacity];
+    }
+
+    /***********************************************************************************************/
+    // text head and UTF-8 of s, to be copied out with writeRaw()
+    static byte[] encode(String s)
+    {
+        CborWriter w = new CborWriter(s.length() + 9);
+        w.writeString(s);
+        return w.toByteArray();
+    }
+
+    /***********************************************************************************************/
+    int size()
+    {
+        return count;
+    }
+
+    /***********************************************************************************************/
+    private void require(int n)
+    {
+        if(count + n > buf.length)
+        {
+            byte[] b = new byte[Math.max(buf.length * 2, count + n)];
+            System.arraycopy(buf, 0, b, 0, count);
+            buf = b;
+        }
+    }
+
+    /***********************************************************************************************/
+    // major type (already shifted) and its argument in the shortest form
+    void writeHead(int major, long v)
+    {
+        require(9);
+        byte[] b = buf;
+        int n = count;
+        if(v < 24)
+        {
+            b[n++] = (byte) (major | (int) v);
+        }
+        else if(v <= 0xFF)
+        {
+            b[n++] = (byte) (major | 24);
+            b[n++] = (byte) v;
+        }
+        else if(v <= 0xFFFF)
+        {
+            b[n++] = (byte) (major | 25);
+            b[n++] = (byte) (v >> 8);
+            b[n++] = (byte) v;
+        }
+        else if(v <= 0xFFFFFFFFL)
+        {
+            b[n++] = (byte) (major | 26);
+            b[n++] = (byte) (v >> 24);
+            b[n++] = (byte) (v >> 16);
+            b[n++] = (byte) (v >> 8);
+            b[n++] = (byte) v;
+        }
+        else
+        {
+            b[n++] = (byte) (major | 27);
+            for(int shift = 56; shift >= 0; shift -= 8)
+            {
+                b[n++] = (byte) (v >> shift);
+            }
+        }
+        count = n;
+    }
+
+    /***********************************************************************************************/
+    void write(int initial)
+    {
+        if(count == buf.length)
+        {
+            require(1);
+        }
+
+        buf[count++] = (byte) initial;
+    }
+
+    /***********************************************************************************************/
+    void writeRaw(byte[] bytes)
+    {
+        require(bytes.length);
+        System.arraycopy(bytes, 0, buf, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /***********************************************************************************************/
+    void writeLong(long v)
+    {
+        // negative n is stored as -1 - n, which is ~n
+        if(v >= 0)
+        {
+            writeHead(UNSIGNED, v);
+        }
+        else
+        {
+            writeHead(NEGATIVE, ~v);
+        }
+    }
+
+    /***********************************************************************************************/
+    // a plain integer when it fits a long, a bignum otherwise
+    void writeBigInteger(BigInteger v)
+    {
+        if(v.bitLength() < 64)
+        {
+            writeLong(v.longValue());
+            return;
+        }
+
+        boolean negative = v.signum() < 0;
+        byte[] b = (negative ? v.not() : v).toByteArray();
+        writeHead(TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_BIGNUM);
+        // toByteArray() leads with a zero sign byte when the top bit is set
+        writeHead(BYTES, b[0] == 0 ? b.length - 1 : b.length);
+        require(b.length);
+        int from = b[0] == 0 ? 1 : 0;
+        System.arraycopy(b, from, buf, count, b.length - from);
+        count += b.length - from;
+    }
+
+    /***********************************************************************************************/
+    // decimal fraction, the value is mantissa * 10^exponent
+    void writeBigDecimal(BigDecimal v)
+    {
+        writeHead(TAG, TAG_DECIMAL);
+        writeHead(ARRAY, 2);
+        writeLong(-(long) v.scale());
+        writeBigInteger(v.unscaledValue());
+    }
+
+    /***********************************************************************************************/
+    void writeDouble(double v)
+    {
+        require(9);
+        buf[count++] = (byte) DOUBLE;
+        long bits = Double.doubleToLongBits(v);
+        for(int shift = 56; shift >= 0; shift -= 8)
+        {
+            buf[count++] = (byte) (bits >> shift);
+        }
+    }
+
+    /***********************************************************************************************/
+    void writeFloat(float v)
+    {
+        require(5);
+        buf[count++] = (byte) FLOAT;
+        int bits = Float.floatToIntBits(v);
+        for(int shift = 24; shift >= 0; shift -= 8)
+        {
+            buf[count++] = (byte) (bits >> shift);
+        }
+    }
+
+    /***********************************************************************************************/
+    void writeBoolean(boolean v)
+    {
+        write(v ? TRUE : FALSE);
+    }
+
+    /***********************************************************************************************/
+    void writeBytes(byte[] bytes)
+    {
+        writeHead(BYTES, bytes.length);
+        writeRaw(bytes);
+    }
+
+    /***********************************************************************************************/
+    // the byte length is counted first, ascii goes through a plain copy loop
+    void writeString(String s)
+    {
+        int n = s.length();
+        int length = n;
+        for(int i = 0; i < n; i++)
+        {
+            char c = s.charAt(i);
+            if(c < 0x80)
+            {
+                continue;
+            }
+
+            if(c < 0x800)
+            {
+                length += 1;
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1)))
+            {
+                // 4 bytes for the pair
+                length += 2;
+                i++;
+            }
+            else if(!Character.isSurrogate(c))
+            {
+                length += 2;
+            }
+        }
+
+        writeHead(TEXT, length);
+        require(length);
+        byte[] b = buf;
+        int p = count;
+        if(length == n)
+        {
+            for(int i = 0; i < n; i++)
+            {
+                b[p++] = (byte) s.charAt(i);
+            }
+            count = p;
+            return;
+        }
+
+        for(int i = 0; i < n; i++)
+        {
+            char c = s.charAt(i);
+            if(c < 0x80)
+            {
+                b[p++] = (byte) c;
+            }
+            else if(c < 0x800)
+            {
+                b[p++] = (byte) (0xC0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1)))
+            {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                b[p++] = (byte) (0xF0 | (cp >> 18));
+                b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (cp & 0x3F));
+            }
+            else if(Character.isSurrogate(c))
+            {
+                // unpaired, same as String.getBytes()
+                b[p++] = (byte) '?';
+            }
+            else
+            {
+                b[p++] = (byte) (0xE0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                b[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        count = p;
+    }
+
+    /***********************************************************************************************/
+    byte[] toByteArray()
+    {
+        byte[] b = new byte[count];
+        System.arraycopy(buf, 0, b, 0, count);
+        return b;
+    }
+}
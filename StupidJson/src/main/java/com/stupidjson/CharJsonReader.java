@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Tokenizer over text. The source is copied through a small window, never as a whole.
+final class CharJsonReader extends JsonReader
+{
+    private final static int BUFFER_SIZE = 8192;
+
+    // at most one of the two is set, neither when reading an array in place
+    private final String src;
+    private final Reader in;
+    private int srcPos;
+    private final char[] buf;
+    private final int start;
+    private final int end;
+    private boolean loaded;
+
+    /***********************************************************************************************/
+    CharJsonReader(String src)
+    {
+        this.src = src;
+        this.in = null;
+        this.buf = new char[Math.min(src.length(), BUFFER_SIZE)];
+        this.start = 0;
+        this.end = 0;
+    }
+
+    /***********************************************************************************************/
+    CharJsonReader(Reader in)
+    {
+        this.src = null;
+        this.in = in;
+        this.buf = new char[BUFFER_SIZE];
+        this.start = 0;
+        this.end = 0;
+    }
+
+    /***********************************************************************************************/
+    // buf[offset, offset + length) as one window, positions are indexes into buf
+    CharJsonReader(char[] buf, int offset, int length)
+    {
+        this.src = null;
+        this.in = null;
+        this.buf = buf;
+        this.start = offset;
+        this.end = offset + length;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    int at(int i)
+    {
+        return buf[i];
+    }
+
+    /***********************************************************************************************/
+    @Override
+    int stringEnd(int from, int to)
+    {
+        char[] b = buf;
+        for(int p = from; p < to; p++)
+        {
+            char c = b[p];
+            if(c == '"' || c == '\\')
+            {
+                return p;
+            }
+        }
+
+        return to;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    int structureNext(int from, int to)
+    {
+        char[] b = buf;
+        for(int p = from; p < to; p++)
+        {
+            char c = b[p];
+            if(c == '"' || c == '{' || c == '}' || c == '[' || c == ']')
+            {
+                return p;
+            }
+        }
+
+        return to;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    boolean load() throws IOException
+    {
+        if(in != null)
+        {
+            int n;
+            do
+            {
+                n = in.read(buf, 0, buf.length);
+            }
+            while(n == 0);
+
+            if(n < 0)
+            {
+                return false;
+            }
+
+            limit = n;
+            return true;
+        }
+
+        if(src == null)
+        {
+            if(loaded || start == end)
+            {
+                return false;
+            }
+
+            loaded = true;
+            pos = start;
+            limit = end;
+            return true;
+        }
+
+        int n = Math.min(buf.length, src.length() - srcPos);
+        if(n <= 0)
+        {
+            return false;
+        }
+
+        src.getChars(srcPos, srcPos + n, buf, 0);
+        srcPos += n;
+        limit = n;
+        return true;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    int[] splitArray() throws IOException
+    {
+        if(src != null || in != null || peek() != '[')
+        {
+            return null;
+        }
+
+        int[] starts = JsonTape.elements(buf, pos, end - pos);
+        pos = starts[starts.length - 1];
+        return starts;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    JsonReader readerAt(int p)
+    {
+        return new CharJsonReader(buf, p, end - p);
+    }
+
+    /***********************************************************************************************/
+    @Override
+    void appendRun(int from, int to)
+    {
+        int n = to - from;
+        if(scratchLength + n > scratch.length)
+        {
+            grow(n);
+        }
+
+        System.arraycopy(buf, from, scratch, scratchLength, n);
+        scratchLength += n;
+    }
+}
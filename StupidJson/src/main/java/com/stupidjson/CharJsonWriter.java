@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+// Writer producing a String
+final class CharJsonWriter extends JsonWriter
+{
+    private char[] buf;
+    private int count;
+
+    /***********************************************************************************************/
+    CharJsonWriter(int capacity)
+    {
+        buf = new char[capacity];
+    }
+
+    /***********************************************************************************************/
+    // empties the writer for reuse, with room for at least capacity chars
+    void reset(int capacity)
+    {
+        count = 0;
+        if(buf.length < capacity)
+        {
+            buf = new char[capacity];
+        }
+    }
+
+    /***********************************************************************************************/
+    int capacity()
+    {
+        return buf.length;
+    }
+
+    /***********************************************************************************************/
+    int size()
+    {
+        return count;
+    }
+
+    /***********************************************************************************************/
+    private void require(int n)
+    {
+        if(count + n > buf.length)
+        {
+            char[] b = new char[Math.max(buf.length * 2, count + n)];
+            System.arraycopy(buf, 0, b, 0, count);
+            buf = b;
+        }
+    }
+
+    /***********************************************************************************************/
+    @Override
+    void write(char c)
+    {
+        if(count == buf.length)
+        {
+            require(1);
+        }
+
+        buf[count++] = c;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    void write(char[] chars, int offset, int length)
+    {
+        require(length);
+        System.arraycopy(chars, offset, buf, count, length);
+        count += length;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    void write(String s, int from, int to)
+    {
+        int n = to - from;
+        require(n);
+        s.getChars(from, to, buf, count);
+        count += n;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    JsonWriter newChunk(int capacity)
+    {
+        CharJsonWriter w = new CharJsonWriter(capacity);
+        w.chunk = true;
+        w.positional = positional;
+        return w;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    void append(JsonWriter chunk)
+    {
+        CharJsonWriter c = (CharJsonWriter) chunk;
+        write(c.buf, 0, c.count);
+    }
+
+    /***********************************************************************************************/
+    @Override
+    public String toString()
+    {
+        return new String(buf, 0, count);
+    }
+}
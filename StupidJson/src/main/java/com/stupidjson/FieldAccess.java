@@ -0,0 +1,328 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.lang.reflect.Field;
+
+// Typed access to one field, resolved when the class plan is built. Primitive fields are read and
+// written through their own type, nothing is boxed. Each implementation overrides what applies to
+// the fields it serves, the rest throws.
+abstract class FieldAccess
+{
+    /***********************************************************************************************/
+    IllegalArgumentException mismatch(String type)
+    {
+        return new IllegalArgumentException("Not a " + type + " field");
+    }
+
+    /***********************************************************************************************/
+    // any field, primitives boxed
+    abstract Object get(Object o) throws IllegalAccessException;
+
+    /***********************************************************************************************/
+    // int, short, byte and char fields, widened
+    int getInt(Object o) throws IllegalAccessException
+    {
+        throw mismatch("int");
+    }
+
+    /***********************************************************************************************/
+    long getLong(Object o) throws IllegalAccessException
+    {
+        throw mismatch("long");
+    }
+
+    /***********************************************************************************************/
+    float getFloat(Object o) throws IllegalAccessException
+    {
+        throw mismatch("float");
+    }
+
+    /***********************************************************************************************/
+    double getDouble(Object o) throws IllegalAccessException
+    {
+        throw mismatch("double");
+    }
+
+    /***********************************************************************************************/
+    boolean getBoolean(Object o) throws IllegalAccessException
+    {
+        throw mismatch("boolean");
+    }
+
+    /***********************************************************************************************/
+    // reference fields
+    void set(Object o, Object v) throws IllegalAccessException
+    {
+        throw mismatch("reference");
+    }
+
+    /***********************************************************************************************/
+    void setInt(Object o, int v) throws IllegalAccessException
+    {
+        throw mismatch("int");
+    }
+
+    /***********************************************************************************************/
+    void setShort(Object o, short v) throws IllegalAccessException
+    {
+        throw mismatch("short");
+    }
+
+    /***********************************************************************************************/
+    void setByte(Object o, byte v) throws IllegalAccessException
+    {
+        throw mismatch("byte");
+    }
+
+    /***********************************************************************************************/
+    void setChar(Object o, char v) throws IllegalAccessException
+    {
+        throw mismatch("char");
+    }
+
+    /***********************************************************************************************/
+    void setLong(Object o, long v) throws IllegalAccessException
+    {
+        throw mismatch("long");
+    }
+
+    /***********************************************************************************************/
+    void setFloat(Object o, float v) throws IllegalAccessException
+    {
+        throw mismatch("float");
+    }
+
+    /***********************************************************************************************/
+    void setDouble(Object o, double v) throws IllegalAccessException
+    {
+        throw mismatch("double");
+    }
+
+    /***********************************************************************************************/
+    void setBoolean(Object o, boolean v) throws IllegalAccessException
+    {
+        throw mismatch("boolean");
+    }
+
+    /***********************************************************************************************/
+    // plain java.lang.reflect, the typed Field methods don't box either
+    final static class Reflect extends FieldAccess
+    {
+        private final Field field;
+
+        Reflect(Field field)
+        {
+            this.field = field;
+        }
+
+        @Override
+        Object get(Object o) throws IllegalAccessException
+        {
+            return field.get(o);
+        }
+
+        @Override
+        int getInt(Object o) throws IllegalAccessException
+        {
+            return field.getInt(o);
+        }
+
+        @Override
+        long getLong(Object o) throws IllegalAccessException
+        {
+            return field.getLong(o);
+        }
+
+        @Override
+        float getFloat(Object o) throws IllegalAccessException
+        {
+            return field.getFloat(o);
+        }
+
+        @Override
+        double getDouble(Object o) throws IllegalAccessException
+        {
+            return field.getDouble(o);
+        }
+
+        @Override
+        boolean getBoolean(Object o) throws IllegalAccessException
+        {
+            return field.getBoolean(o);
+        }
+
+        @Override
+        void set(Object o, Object v) throws IllegalAccessException
+        {
+            field.set(o, v);
+        }
+
+        @Override
+        void setInt(Object o, int v) throws IllegalAccessException
+        {
+            field.setInt(o, v);
+        }
+
+        @Override
+        void setShort(Object o, short v) throws IllegalAccessException
+        {
+            field.setShort(o, v);
+        }
+
+        @Override
+        void setByte(Object o, byte v) throws IllegalAccessException
+        {
+            field.setByte(o, v);
+        }
+
+        @Override
+        void setChar(Object o, char v) throws IllegalAccessException
+        {
+            field.setChar(o, v);
+        }
+
+        @Override
+        void setLong(Object o, long v) throws IllegalAccessException
+        {
+            field.setLong(o, v);
+        }
+
+        @Override
+        void setFloat(Object o, float v) throws IllegalAccessException
+        {
+            field.setFloat(o, v);
+        }
+
+        @Override
+        void setDouble(Object o, double v) throws IllegalAccessException
+        {
+            field.setDouble(o, v);
+        }
+
+        @Override
+        void setBoolean(Object o, boolean v) throws IllegalAccessException
+        {
+            field.setBoolean(o, v);
+        }
+    }
+
+    /***********************************************************************************************/
+    // through a generated StupidJson.Adapter
+    final static class Adapted extends FieldAccess
+    {
+        private final StupidJson.Adapter<Object> adapter;
+        private final int index;
+
+        Adapted(StupidJson.Adapter<Object> adapter, int index)
+        {
+            this.adapter = adapter;
+            this.index = index;
+        }
+
+        @Override
+        Object get(Object o)
+        {
+            return adapter.get(o, index);
+        }
+
+        @Override
+        int getInt(Object o)
+        {
+            return adapter.getInt(o, index);
+        }
+
+        @Override
+        long getLong(Object o)
+        {
+            return adapter.getLong(o, index);
+        }
+
+        @Override
+        float getFloat(Object o)
+        {
+            return adapter.getFloat(o, index);
+        }
+
+        @Override
+        double getDouble(Object o)
+        {
+            return adapter.getDouble(o, index);
+        }
+
+        @Override
+        boolean getBoolean(Object o)
+        {
+            return adapter.getBoolean(o, index);
+        }
+
+        @Override
+        void set(Object o, Object v)
+        {
+            adapter.set(o, index, v);
+        }
+
+        @Override
+        void setInt(Object o, int v)
+        {
+            adapter.setInt(o, index, v);
+        }
+
+        @Override
+        void setShort(Object o, short v)
+        {
+            adapter.setShort(o, index, v);
+        }
+
+        @Override
+        void setByte(Object o, byte v)
+        {
+            adapter.setByte(o, index, v);
+        }
+
+        @Override
+        void setChar(Object o, char v)
+        {
+            adapter.setChar(o, index, v);
+        }
+
+        @Override
+        void setLong(Object o, long v)
+        {
+            adapter.setLong(o, index, v);
+        }
+
+        @Override
+        void setFloat(Object o, float v)
+        {
+            adapter.setFloat(o, index, v);
+        }
+
+        @Override
+        void setDouble(Object o, double v)
+        {
+            adapter.setDouble(o, index, v);
+        }
+
+        @Override
+        void setBoolean(Object o, boolean v)
+        {
+            adapter.setBoolean(o, index, v);
+        }
+    }
+}
@@ -0,0 +1,692 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+// Number formatting and parsing without going through String. Doubles and floats are written with
+// Raffaello Giulietti's Schubfach: the shortest decimal that rounds back to the same value, laid out
+// the same way Double.toString() and Float.toString() do. They are read with Clinger's fast path and
+// the Eisel-Lemire algorithm, whatever those can't decide is left to the JDK.
+final class JsonNumbers
+{
+    // longest output: "-1.2345678901234567E-308"
+    final static int MAX_CHARS = 32;
+
+    // exact powers of ten
+    private final static double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final static char[] NAN = "NaN".toCharArray();
+    private final static char[] INFINITY = "Infinity".toCharArray();
+    private final static char[] NEGATIVE_INFINITY = "-Infinity".toCharArray();
+
+    private final static long MASK_63 = (1L << 63) - 1;
+    private final static long MASK_32 = (1L << 32) - 1;
+
+    // double
+    private final static int D_P = 53;
+    private final static int D_Q_MIN = -1074;
+    private final static long D_C_MIN = 1L << 52;
+    private final static int D_BQ_MASK = 0x7FF;
+    private final static long D_T_MASK = (1L << 52) - 1;
+    private final static long D_C_TINY = 3;
+
+    // float
+    private final static int F_P = 24;
+    private final static int F_Q_MIN = -149;
+    private final static int F_C_MIN = 1 << 23;
+    private final static int F_BQ_MASK = 0xFF;
+    private final static int F_T_MASK = (1 << 23) - 1;
+    private final static int F_C_TINY = 8;
+
+    // g = floor(10^-k 2^(125 - flog2pow10(-k))) + 1 for K_MIN <= k <= K_MAX, split into
+    // 63 high and 63 low bits
+    private final static int K_MIN = -324;
+    private final static int K_MAX = 292;
+    private final static long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+    static
+    {
+        for(int k = K_MIN; k <= K_MAX; k++)
+        {
+            int e = -k;
+            int s = 125 - flog2pow10(e);
+            BigInteger g;
+            if(e >= 0)
+            {
+                g = BigInteger.TEN.pow(e);
+                g = s >= 0 ? g.shiftLeft(s) : g.shiftRight(-s);
+            }
+            else
+            {
+                g = BigInteger.ONE.shiftLeft(s).divide(BigInteger.TEN.pow(-e));
+            }
+            g = g.add(BigInteger.ONE);
+
+            int i = 2 * (k - K_MIN);
+            G[i] = g.shiftRight(63).longValue();
+            G[i + 1] = g.longValue() & MASK_63;
+        }
+    }
+
+    /***********************************************************************************************/
+    private JsonNumbers()
+    {
+    }
+
+    /***********************************************************************************************/
+    // writes v into out starting at p, returns the end position; out needs MAX_CHARS past p
+    static int formatDouble(double v, char[] out, int p)
+    {
+        long bits = Double.doubleToRawLongBits(v);
+        long t = bits & D_T_MASK;
+        int bq = (int) (bits >>> 52) & D_BQ_MASK;
+
+        if(bq == D_BQ_MASK)
+        {
+            return special(t != 0, bits < 0, out, p);
+        }
+
+        if(bits < 0)
+        {
+            out[p++] = '-';
+        }
+
+        if(bq != 0)
+        {
+            int mq = -D_Q_MIN + 1 - bq;
+            long c = D_C_MIN | t;
+            // integers below 2^53 need no search
+            if(0 < mq && mq < D_P)
+            {
+                long f = c >> mq;
+                if(f << mq == c)
+                {
+                    return layout(f, 0, out, p);
+                }
+            }
+
+            return toDecimal(-mq, c, 0, out, p);
+        }
+
+        if(t != 0)
+        {
+            // subnormal
+            return t < D_C_TINY ? toDecimal(D_Q_MIN, 10 * t, -1, out, p) : toDecimal(D_Q_MIN, t, 0, out, p);
+        }
+
+        return zero(out, p);
+    }
+
+    /***********************************************************************************************/
+    // writes v into out starting at p, returns the end position
+    static int formatFloat(float v, char[] out, int p)
+    {
+        int bits = Float.floatToRawIntBits(v);
+        int t = bits & F_T_MASK;
+        int bq = (bits >>> 23) & F_BQ_MASK;
+
+        if(bq == F_BQ_MASK)
+        {
+            return special(t != 0, bits < 0, out, p);
+        }
+
+        if(bits < 0)
+        {
+            out[p++] = '-';
+        }
+
+        if(bq != 0)
+        {
+            int mq = -F_Q_MIN + 1 - bq;
+            int c = F_C_MIN | t;
+            if(0 < mq && mq < F_P)
+            {
+                int f = c >> mq;
+                if(f << mq == c)
+                {
+                    return layout(f, 0, out, p);
+                }
+            }
+
+            return toDecimal(-mq, c, 0, out, p);
+        }
+
+        if(t != 0)
+        {
+            return t < F_C_TINY ? toDecimal(F_Q_MIN, 10 * t, -1, out, p) : toDecimal(F_Q_MIN, t, 0, out, p);
+        }
+
+        return zero(out, p);
+    }
+
+    /***********************************************************************************************/
+    // double c 2^q, see figure 7 of the Schubfach paper
+    private static int toDecimal(int q, long c, int dk, char[] out, int p)
+    {
+        int odd = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if(c != D_C_MIN || q == D_Q_MIN)
+        {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        }
+        else
+        {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        int i = 2 * (k - K_MIN);
+        long g1 = G[i];
+        long g0 = G[i + 1];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if(s >= 100)
+        {
+            // one digit shorter, if it is still inside the rounding interval
+            long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + odd <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + odd <= vbr;
+            if(upin != wpin)
+            {
+                return layout(upin ? sp10 : tp10, k, out, p);
+            }
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + odd <= s << 2;
+        boolean win = (t << 2) + odd <= vbr;
+        if(uin != win)
+        {
+            return layout(uin ? s : t, k + dk, out, p);
+        }
+
+        // both candidates round back, take the closer one
+        long cmp = vb - (s + t << 1);
+        return layout(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, out, p);
+    }
+
+    /***********************************************************************************************/
+    // float c 2^q
+    private static int toDecimal(int q, int c, int dk, char[] out, int p)
+    {
+        int odd = c & 0x1;
+        long cb = (long) c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if(c != F_C_MIN || q == F_Q_MIN)
+        {
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        }
+        else
+        {
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 33;
+
+        long g = G[2 * (k - K_MIN)] + 1;
+
+        int vb = rop(g, cb << h);
+        int vbl = rop(g, cbl << h);
+        int vbr = rop(g, cbr << h);
+
+        int s = vb >> 2;
+        if(s >= 100)
+        {
+            int sp10 = 10 * (int) (s * 1717986919L >>> 34);
+            int tp10 = sp10 + 10;
+            boolean upin = vbl + odd <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + odd <= vbr;
+            if(upin != wpin)
+            {
+                return layout(upin ? sp10 : tp10, k, out, p);
+            }
+        }
+
+        int t = s + 1;
+        boolean uin = vbl + odd <= s << 2;
+        boolean win = (t << 2) + odd <= vbr;
+        if(uin != win)
+        {
+            return layout(uin ? s : t, k + dk, out, p);
+        }
+
+        int cmp = vb - (s + t << 1);
+        return layout(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, out, p);
+    }
+
+    /***********************************************************************************************/
+    // rounding to odd of g cp 2^-127
+    private static long rop(long g1, long g0, long cp)
+    {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+    /***********************************************************************************************/
+    private static int rop(long g, long cp)
+    {
+        long x1 = multiplyHigh(g, cp);
+        long vbp = x1 >>> 31;
+        return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+    }
+
+    /***********************************************************************************************/
+    // Math.multiplyHigh() is not there before Java 9
+    static long multiplyHigh(long x, long y)
+    {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    /***********************************************************************************************/
+    // floor(q log10(2))
+    private static int flog10pow2(int q)
+    {
+        return (int) (q * 661971961083L >> 41);
+    }
+
+    /***********************************************************************************************/
+    // floor(log10(3/4 2^q))
+    private static int flog10threeQuartersPow2(int q)
+    {
+        return (int) (q * 661971961083L + -274743187321L >> 41);
+    }
+
+    /***********************************************************************************************/
+    // floor(e log2(10))
+    private static int flog2pow10(int e)
+    {
+        return (int) (e * 913124641741L >> 38);
+    }
+
+    /***********************************************************************************************/
+    // unsigned m times 10^e, NaN when the fast paths can't decide and the text has to be parsed;
+    // truncated means digits after m were dropped and at least one of them was not a zero
+    static double parseDouble(long m, int e, boolean negative, boolean truncated)
+    {
+        if(m == 0)
+        {
+            return negative ? -0.0 : 0.0;
+        }
+
+        // both operands are exact, so is the one rounding
+        if(!truncated && m > 0 && m <= 1L << 53 && e >= -22 && e <= 22)
+        {
+            double d = m;
+            d = e < 0 ? d / POW10[-e] : d * POW10[e];
+            return negative ? -d : d;
+        }
+
+        double d = eiselLemire(m, e, negative);
+        if(truncated && d == d)
+        {
+            // the real value is somewhere between m and m + 1
+            if(eiselLemire(m + 1, e, negative) != d)
+            {
+                return Double.NaN;
+            }
+        }
+
+        return d;
+    }
+
+    /***********************************************************************************************/
+    // d rounded to float, NaN when d is exactly between two floats: it was rounded once already and
+    // rounding it again may go the wrong way. Same for values around the top of the float range.
+    static float toFloat(double d)
+    {
+        float f = (float) d;
+        if(f == d)
+        {
+            return f;
+        }
+        if(Float.isInfinite(f))
+        {
+            return Float.NaN;
+        }
+
+        float other = d > f ? Math.nextUp(f) : -Math.nextUp(-f);
+        if(((double) f + (double) other) * 0.5 == d)
+        {
+            return Float.NaN;
+        }
+
+        return f;
+    }
+
+    /***********************************************************************************************/
+    // Value of a field declared as Number, in the type the text calls for: integers as Integer, Long
+    // or BigInteger, fractions as Double when that keeps them as written, else BigDecimal. Text
+    // that is not a number reads as 0.
+    static Number valueOf(String text)
+    {
+        if(text == null)
+        {
+            return null;
+        }
+
+        text = text.trim();
+        if(text.equals("NaN") || text.equals("Infinity") || text.equals("-Infinity"))
+        {
+            return Double.valueOf(text);
+        }
+
+        BigDecimal value;
+        try
+        {
+            value = new BigDecimal(text);
+        }
+        catch (NumberFormatException e)
+        {
+            return 0;
+        }
+
+        if(text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0)
+        {
+            return integer(value.toBigInteger());
+        }
+
+        double d = value.doubleValue();
+        if(!Double.isInfinite(d) && BigDecimal.valueOf(d).compareTo(value) == 0)
+        {
+            return d;
+        }
+
+        return value;
+    }
+
+    /***********************************************************************************************/
+    // the narrowest of Integer, Long and BigInteger that holds v
+    static Number integer(BigInteger v)
+    {
+        int bits = v.bitLength();
+        if(bits < 32)
+        {
+            return v.intValue();
+        }
+        else if(bits < 64)
+        {
+            return v.longValue();
+        }
+
+        return v;
+    }
+
+    /***********************************************************************************************/
+    // port of Go's strconv eiselLemire64(), NaN when the result is not certain
+    private static double eiselLemire(long m, int e, boolean negative)
+    {
+        if(e < DecimalPowers.MIN || e > DecimalPowers.MAX)
+        {
+            return Double.NaN;
+        }
+
+        // normalization
+        int clz = Long.numberOfLeadingZeros(m);
+        m <<= clz;
+        long exp2 = (217706L * e >> 16) + 64 + 1023 - clz;
+
+        // multiplication
+        int i = 2 * (e - DecimalPowers.MIN);
+        long high = DecimalPowers.TABLE[i];
+        long low = DecimalPowers.TABLE[i + 1];
+        long xHi = unsignedMultiplyHigh(m, high);
+        long xLo = m * high;
+
+        // wider approximation
+        if((xHi & 0x1FF) == 0x1FF && lessUnsigned(xLo + m, m))
+        {
+            long yHi = unsignedMultiplyHigh(m, low);
+            long yLo = m * low;
+            long mergedHi = xHi;
+            long mergedLo = xLo + yHi;
+            if(lessUnsigned(mergedLo, xLo))
+            {
+                mergedHi++;
+            }
+            if((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && lessUnsigned(yLo + m, m))
+            {
+                return Double.NaN;
+            }
+            xHi = mergedHi;
+            xLo = mergedLo;
+        }
+
+        // shifting to 54 bits
+        long msb = xHi >>> 63;
+        long mantissa = xHi >>> (msb + 9);
+        exp2 -= 1 ^ msb;
+
+        // half way ambiguity
+        if(xLo == 0 && (xHi & 0x1FF) == 0 && (mantissa & 3) == 1)
+        {
+            return Double.NaN;
+        }
+
+        // from 54 to 53 bits
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if(mantissa >>> 53 > 0)
+        {
+            mantissa >>>= 1;
+            exp2++;
+        }
+
+        // subnormals, infinities and zeros are left to the slow path
+        if(exp2 <= 0 || exp2 >= 0x7FF)
+        {
+            return Double.NaN;
+        }
+
+        long bits = exp2 << 52 | mantissa & D_T_MASK;
+        if(negative)
+        {
+            bits |= Long.MIN_VALUE;
+        }
+
+        return Double.longBitsToDouble(bits);
+    }
+
+    /***********************************************************************************************/
+    private static long unsignedMultiplyHigh(long x, long y)
+    {
+        return multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    /***********************************************************************************************/
+    private static boolean lessUnsigned(long a, long b)
+    {
+        return a + Long.MIN_VALUE < b + Long.MIN_VALUE;
+    }
+
+    /***********************************************************************************************/
+    // 128 bit approximations, rounded down, of the powers of ten; apart from the parser nobody needs
+    // them, so they are built on first use
+    private final static class DecimalPowers
+    {
+        final static int MIN = -348;
+        final static int MAX = 347;
+        final static long[] TABLE = new long[2 * (MAX - MIN + 1)];
+
+        static
+        {
+            BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+            for(int e = MIN; e <= MAX; e++)
+            {
+                BigInteger v;
+                if(e >= 0)
+                {
+                    v = BigInteger.TEN.pow(e);
+                    int n = v.bitLength();
+                    v = n > 128 ? v.shiftRight(n - 128) : v.shiftLeft(128 - n);
+                }
+                else
+                {
+                    BigInteger d = BigInteger.TEN.pow(-e);
+                    v = BigInteger.ONE.shiftLeft(127 + d.bitLength()).divide(d);
+                }
+
+                int i = 2 * (e - MIN);
+                TABLE[i] = v.shiftRight(64).longValue();
+                TABLE[i + 1] = v.and(mask).longValue();
+            }
+        }
+    }
+
+    /***********************************************************************************************/
+    // f 10^e, plain for 10^-3 <= v < 10^7 and scientific otherwise, like Double.toString()
+    private static int layout(long f, int e, char[] out, int p)
+    {
+        while(f % 10 == 0)
+        {
+            f /= 10;
+            e++;
+        }
+
+        // digits go to the tail of out first, they are moved into place below
+        int end = out.length;
+        int start = end;
+        do
+        {
+            out[--start] = (char) ('0' + (int) (f % 10));
+            f /= 10;
+        }
+        while(f != 0);
+
+        int n = end - start;
+        // exponent of the leading digit
+        int x = e + n - 1;
+
+        if(x >= 0 && x < 7)
+        {
+            int integral = x + 1;
+            for(int i = 0; i < integral; i++)
+            {
+                out[p++] = i < n ? out[start + i] : '0';
+            }
+            out[p++] = '.';
+            if(n > integral)
+            {
+                for(int i = integral; i < n; i++)
+                {
+                    out[p++] = out[start + i];
+                }
+            }
+            else
+            {
+                out[p++] = '0';
+            }
+        }
+        else if(x < 0 && x >= -3)
+        {
+            out[p++] = '0';
+            out[p++] = '.';
+            for(int i = x + 1; i < 0; i++)
+            {
+                out[p++] = '0';
+            }
+            for(int i = 0; i < n; i++)
+            {
+                out[p++] = out[start + i];
+            }
+        }
+        else
+        {
+            out[p++] = out[start];
+            out[p++] = '.';
+            if(n > 1)
+            {
+                for(int i = 1; i < n; i++)
+                {
+                    out[p++] = out[start + i];
+                }
+            }
+            else
+            {
+                out[p++] = '0';
+            }
+
+            out[p++] = 'E';
+            if(x < 0)
+            {
+                out[p++] = '-';
+                x = -x;
+            }
+            if(x >= 100)
+            {
+                out[p++] = (char) ('0' + x / 100);
+                x %= 100;
+                out[p++] = (char) ('0' + x / 10);
+            }
+            else if(x >= 10)
+            {
+                out[p++] = (char) ('0' + x / 10);
+            }
+            out[p++] = (char) ('0' + x % 10);
+        }
+
+        return p;
+    }
+
+    /***********************************************************************************************/
+    private static int zero(char[] out, int p)
+    {
+        out[p++] = '0';
+        out[p++] = '.';
+        out[p++] = '0';
+        return p;
+    }
+
+    /***********************************************************************************************/
+    private static int special(boolean nan, boolean negative, char[] out, int p)
+    {
+        char[] s = nan ? NAN : negative ? NEGATIVE_INFINITY : INFINITY;
+        System.arraycopy(s, 0, out, p, s.length);
+        return p + s.length;
+    }
+}
@@ -0,0 +1,899 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.io.IOException;
+
+// Single pass pull tokenizer. Values are read straight off the input buffer, there is no tree.
+// Subclasses own the buffer and know how to refill it, everything else lives here.
+abstract class JsonReader
+{
+    final static int EOF = -1;
+
+    // thrown for malformed input, as opposed to failures of the underlying stream
+    final static class SyntaxException extends IOException
+    {
+        private final static long serialVersionUID = 1L;
+
+        SyntaxException(String message)
+        {
+            super(message);
+        }
+    }
+
+    // window into the input, [pos, limit) is not consumed yet
+    int pos;
+    int limit;
+    // units dropped by previous refills, for error messages
+    private long offset;
+    // start of the raw capture in the current window, -1 when not capturing
+    private int captureFrom = -1;
+
+    // decoded string / number text
+    char[] scratch = new char[64];
+    int scratchLength;
+
+    // last parsed number
+    private boolean numberIntegral;
+    private long numberLong;
+    private double numberDouble;
+
+    /***********************************************************************************************/
+    // unit (char, or unsigned byte) at the given window position
+    abstract int at(int i);
+
+    /***********************************************************************************************/
+    // replaces the window with the next chunk of input, false at the end of input
+    abstract boolean load() throws IOException;
+
+    /***********************************************************************************************/
+    // appends units [from, to) of the window to the scratch, they contain no quotes or escapes
+    abstract void appendRun(int from, int to);
+
+    /***********************************************************************************************/
+    // first quote or backslash in the window [from, to), to when there is none
+    abstract int stringEnd(int from, int to);
+
+    /***********************************************************************************************/
+    // first quote or bracket in the window [from, to), to when there is none
+    abstract int structureNext(int from, int to);
+
+    /***********************************************************************************************/
+    private boolean fill() throws IOException
+    {
+        if(captureFrom >= 0)
+        {
+            appendRun(captureFrom, limit);
+        }
+
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        boolean loaded = load();
+
+        if(captureFrom >= 0)
+        {
+            captureFrom = pos;
+        }
+
+        return loaded;
+    }
+
+    /***********************************************************************************************/
+    // Input in memory only: starts of the elements of the array that is next, then the position
+    // after it, see JsonTape.elements(). The reader is moved past the array. Null for streamed
+    // input or when the next value is not an array.
+    int[] splitArray() throws IOException
+    {
+        return null;
+    }
+
+    /***********************************************************************************************/
+    // reader over the same input in memory, placed at a position from splitArray()
+    JsonReader readerAt(int p)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /***********************************************************************************************/
+    // units read so far, for streamed input
+    final long consumed()
+    {
+        return offset + pos;
+    }
+
+    /***********************************************************************************************/
+    final void append(char c)
+    {
+        if(scratchLength == scratch.length)
+        {
+            grow(1);
+        }
+
+        scratch[scratchLength++] = c;
+    }
+
+    /***********************************************************************************************/
+    final void grow(int extra)
+    {
+        char[] n = new char[Math.max(scratch.length * 2, scratchLength + extra)];
+        System.arraycopy(scratch, 0, n, 0, scratchLength);
+        scratch = n;
+    }
+
+    /***********************************************************************************************/
+    final IOException syntaxError(String message)
+    {
+        return new SyntaxException(message + " at offset " + (offset + pos));
+    }
+
+    /***********************************************************************************************/
+    // next significant unit without consuming it, EOF at the end of input
+    final int peek() throws IOException
+    {
+        for(;;)
+        {
+            while(pos < limit)
+            {
+                int c = at(pos);
+                if(c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                {
+                    return c;
+                }
+                pos++;
+            }
+
+            if(!fill())
+            {
+                return EOF;
+            }
+        }
+    }
+
+    /***********************************************************************************************/
+    private int read() throws IOException
+    {
+        if(pos == limit && !fill())
+        {
+            throw syntaxError("Unexpected end of input");
+        }
+
+        return at(pos++);
+    }
+
+    /***********************************************************************************************/
+    final void expect(char c) throws IOException
+    {
+        if(peek() != c)
+        {
+            throw syntaxError("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    /***********************************************************************************************/
+    // consumes c if it is the next significant unit
+    final boolean consume(char c) throws IOException
+    {
+        if(peek() == c)
+        {
+            pos++;
+            return true;
+        }
+
+        return false;
+    }
+
+    /***********************************************************************************************/
+    // after an element of an object or array: true if another one follows, false if it was the last
+    final boolean more(char close) throws IOException
+    {
+        int c = peek();
+        if(c == ',')
+        {
+            pos++;
+            return true;
+        }
+        else if(c == close)
+        {
+            pos++;
+            return false;
+        }
+
+        throw syntaxError("Expected ',' or '" + close + "'");
+    }
+
+    /***********************************************************************************************/
+    // consumes a null literal if it is the next value
+    final boolean consumeNull() throws IOException
+    {
+        if(peek() != 'n')
+        {
+            return false;
+        }
+
+        readLiteral("null");
+        return true;
+    }
+
+    /***********************************************************************************************/
+    private void readLiteral(String literal) throws IOException
+    {
+        for(int i = 0; i < literal.length(); i++)
+        {
+            if(read() != literal.charAt(i))
+            {
+                throw syntaxError("Expected '" + literal + "'");
+            }
+        }
+    }
+
+    /***********************************************************************************************/
+    // object key, including the following ':'
+    final String nextName() throws IOException
+    {
+        expect('"');
+        readString();
+        expect(':');
+        return new String(scratch, 0, scratchLength);
+    }
+
+    /***********************************************************************************************/
+    // object key, including the following ':', as its index in the names or -1 if it is not one
+    // of them. Plain keys are matched right in the input window, nothing is copied or allocated.
+    final int nextName(NameTable names) throws IOException
+    {
+        expect('"');
+        int h = 0;
+        for(int p = pos; p < limit; p++)
+        {
+            int c = at(p);
+            if(c == '"')
+            {
+                int index = names.find(this, pos, p, h);
+                pos = p + 1;
+                expect(':');
+                return index;
+            }
+            else if(c == '\\' || c >= 0x80)
+            {
+                break;
+            }
+            h = 31 * h + c;
+        }
+
+        // escaped, not ascii or cut by the window end: decode it first
+        readString();
+        expect(':');
+        return names.find(scratch, scratchLength);
+    }
+
+    /***********************************************************************************************/
+    // lenient string value: null stays null, scalars become their text and objects/arrays their
+    // raw json (that's how @DontQuote fields come back)
+    final String nextString() throws IOException
+    {
+        int c = peek();
+        switch(c)
+        {
+            case '"':
+                pos++;
+                readString();
+                return new String(scratch, 0, scratchLength);
+
+            case 'n':
+                readLiteral("null");
+                return null;
+
+            case 't':
+                readLiteral("true");
+                return "true";
+
+            case 'f':
+                readLiteral("false");
+                return "false";
+
+            case '{':
+            case '[':
+                return nextRaw();
+
+            default:
+                readNumber();
+                return new String(scratch, 0, scratchLength);
+        }
+    }
+
+    /***********************************************************************************************/
+    // raw json text of the next value
+    final String nextRaw() throws IOException
+    {
+        peek();
+        scratchLength = 0;
+        captureFrom = pos;
+        try
+        {
+            skipValue();
+            appendRun(captureFrom, pos);
+        }
+        finally
+        {
+            captureFrom = -1;
+        }
+
+        return new String(scratch, 0, scratchLength);
+    }
+
+    /***********************************************************************************************/
+    final boolean nextBoolean() throws IOException
+    {
+        int c = peek();
+        if(c == 't')
+        {
+            readLiteral("true");
+            return true;
+        }
+        else if(c == 'f')
+        {
+            readLiteral("false");
+            return false;
+        }
+        else if(c == '"')
+        {
+            pos++;
+            readString();
+            return scratchLength == 4 && "true".equalsIgnoreCase(new String(scratch, 0, 4));
+        }
+
+        skipValue();
+        return false;
+    }
+
+    /***********************************************************************************************/
+    // numbers out of range saturate, as they do for Java's floating point to integer conversions
+    final long nextLong() throws IOException
+    {
+        if(!readNumeric(false))
+        {
+            return 0;
+        }
+
+        return numberIntegral ? numberLong : (long) numberDouble;
+    }
+
+    /***********************************************************************************************/
+    final int nextInt() throws IOException
+    {
+        if(!readNumeric(false))
+        {
+            return 0;
+        }
+
+        if(numberIntegral)
+        {
+            long v = numberLong;
+            return v > Integer.MAX_VALUE ? Integer.MAX_VALUE : v < Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) v;
+        }
+
+        return (int) numberDouble;
+    }
+
+    /***********************************************************************************************/
+    final short nextShort() throws IOException
+    {
+        int v = nextInt();
+        return v > Short.MAX_VALUE ? Short.MAX_VALUE : v < Short.MIN_VALUE ? Short.MIN_VALUE : (short) v;
+    }
+
+    /***********************************************************************************************/
+    final byte nextByte() throws IOException
+    {
+        int v = nextInt();
+        return v > Byte.MAX_VALUE ? Byte.MAX_VALUE : v < Byte.MIN_VALUE ? Byte.MIN_VALUE : (byte) v;
+    }
+
+    /***********************************************************************************************/
+    final double nextDouble() throws IOException
+    {
+        if(!readNumeric(false))
+        {
+            return 0;
+        }
+
+        return numberIntegral ? (double) numberLong : numberDouble;
+    }
+
+    /***********************************************************************************************/
+    // rounded straight to float, going through double could round twice
+    final float nextFloat() throws IOException
+    {
+        if(!readNumeric(true))
+        {
+            return 0;
+        }
+
+        return numberIntegral ? (float) numberLong : (float) numberDouble;
+    }
+
+    /***********************************************************************************************/
+    // chars are written as one char strings, older versions wrote them as numbers
+    final char nextChar() throws IOException
+    {
+        int c = peek();
+        if(c == '"')
+        {
+            pos++;
+            readString();
+            return scratchLength > 0 ? scratch[0] : 0;
+        }
+
+        return (char) nextInt();
+    }
+
+    /***********************************************************************************************/
+    // number, or a string holding one; anything else is skipped and false returned. With single
+    // set a fractional result is rounded to float precision.
+    private boolean readNumeric(boolean single) throws IOException
+    {
+        int c = peek();
+        if(c == '"')
+        {
+            pos++;
+            readString();
+            return parseNumber(single);
+        }
+        else if(c == '-' || (c >= '0' && c <= '9'))
+        {
+            scanNumber(single);
+            return true;
+        }
+
+        skipValue();
+        return false;
+    }
+
+    /***********************************************************************************************/
+    // number text, for values that are not read as numbers
+    private void readNumber() throws IOException
+    {
+        scratchLength = 0;
+        for(;;)
+        {
+            if(pos == limit && !fill())
+            {
+                break;
+            }
+
+            int c = at(pos);
+            if((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')
+            {
+                append((char) c);
+                pos++;
+            }
+            else
+            {
+                break;
+            }
+        }
+
+        if(scratchLength == 0)
+        {
+            throw syntaxError("Unexpected character");
+        }
+    }
+
+    /***********************************************************************************************/
+    // unit at pos, EOF at the end of input
+    private int current() throws IOException
+    {
+        if(pos == limit && !fill())
+        {
+            return EOF;
+        }
+
+        return at(pos);
+    }
+
+    /***********************************************************************************************/
+    // number parsed straight off the input. The first 19 significant digits are gathered into an
+    // unsigned long, that is exact for every long and enough for the fast double paths. The text
+    // is captured on the side and only looked at when those can't decide.
+    private void scanNumber(boolean single) throws IOException
+    {
+        scratchLength = 0;
+        captureFrom = pos;
+        try
+        {
+            boolean negative = false;
+            long mantissa = 0;
+            int significant = 0;
+            int exp10 = 0;
+            boolean truncated = false;
+            boolean integral = true;
+            boolean digits = false;
+
+            int c = current();
+            if(c == '-')
+            {
+                negative = true;
+                pos++;
+                c = current();
+            }
+
+            for(; c >= '0' && c <= '9'; pos++, c = current())
+            {
+                digits = true;
+                if(significant < 19)
+                {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if(mantissa != 0)
+                    {
+                        significant++;
+                    }
+                }
+                else
+                {
+                    exp10++;
+                    truncated |= c != '0';
+                }
+            }
+
+            if(c == '.')
+            {
+                integral = false;
+                pos++;
+                c = current();
+                for(; c >= '0' && c <= '9'; pos++, c = current())
+                {
+                    digits = true;
+                    if(significant < 19)
+                    {
+                        mantissa = mantissa * 10 + (c - '0');
+                        if(mantissa != 0)
+                        {
+                            significant++;
+                        }
+                        exp10--;
+                    }
+                    else
+                    {
+                        truncated |= c != '0';
+                    }
+                }
+            }
+
+            if(digits && (c == 'e' || c == 'E'))
+            {
+                integral = false;
+                pos++;
+                c = current();
+                boolean negativeExponent = c == '-';
+                if(c == '-' || c == '+')
+                {
+                    pos++;
+                    c = current();
+                }
+
+                int exponent = 0;
+                digits = false;
+                for(; c >= '0' && c <= '9'; pos++, c = current())
+                {
+                    digits = true;
+                    // way past the range of double, the slow path sorts it out
+                    if(exponent < 100000)
+                    {
+                        exponent = exponent * 10 + (c - '0');
+                    }
+                }
+                exp10 += negativeExponent ? -exponent : exponent;
+            }
+
+            if(!digits || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')
+            {
+                throw syntaxError("Malformed number");
+            }
+
+            // integers are exact as long as they fit, the unsigned mantissa tells; -0 is left to
+            // the double path so that it keeps its sign
+            if(integral && exp10 == 0 && (mantissa > 0 || (!negative && mantissa == 0) ||
+                    (negative && mantissa == Long.MIN_VALUE)))
+            {
+                numberIntegral = true;
+                numberLong = negative ? -mantissa : mantissa;
+                return;
+            }
+
+            numberIntegral = false;
+            double d = JsonNumbers.parseDouble(mantissa, exp10, negative, truncated);
+            if(single && d == d)
+            {
+                d = JsonNumbers.toFloat(d);
+            }
+
+            if(d != d)
+            {
+                appendRun(captureFrom, pos);
+                String text = new String(scratch, 0, scratchLength);
+                d = single ? Float.parseFloat(text) : Double.parseDouble(text);
+            }
+            numberDouble = d;
+        }
+        finally
+        {
+            captureFrom = -1;
+        }
+    }
+
+    /***********************************************************************************************/
+    // the number in the scratch, for numbers that come quoted
+    private boolean parseNumber(boolean single)
+    {
+        char[] s = scratch;
+        int length = scratchLength;
+        int i = 0;
+        boolean negative = length > 0 && s[0] == '-';
+        if(negative)
+        {
+            i++;
+        }
+
+        // up to 18 digits always fit into a long
+        if(length > i && length - i <= 18)
+        {
+            long v = 0;
+            for(; i < length; i++)
+            {
+                char c = s[i];
+                if(c < '0' || c > '9')
+                {
+                    break;
+                }
+                v = v * 10 + (c - '0');
+            }
+
+            if(i == length)
+            {
+                numberIntegral = true;
+                numberLong = negative ? -v : v;
+                return true;
+            }
+        }
+
+        try
+        {
+            String text = new String(s, 0, length);
+            numberDouble = single ? Float.parseFloat(text) : Double.parseDouble(text);
+            numberIntegral = false;
+            return true;
+        }
+        catch(NumberFormatException e)
+        {
+            return false;
+        }
+    }
+
+    /***********************************************************************************************/
+    // string body after the opening quote, decoded into the scratch
+    private void readString() throws IOException
+    {
+        scratchLength = 0;
+        for(;;)
+        {
+            if(pos == limit && !fill())
+            {
+                throw syntaxError("Unterminated string");
+            }
+
+            int l = limit;
+            int p = stringEnd(pos, l);
+
+            if(p > pos)
+            {
+                appendRun(pos, p);
+                pos = p;
+            }
+
+            if(p == l)
+            {
+                continue;
+            }
+
+            pos = p + 1;
+            if(at(p) == '"')
+            {
+                return;
+            }
+
+            readEscape();
+        }
+    }
+
+    /***********************************************************************************************/
+    private void readEscape() throws IOException
+    {
+        int c = read();
+        switch(c)
+        {
+            case 'n':
+                append('\n');
+                break;
+            case 't':
+                append('\t');
+                break;
+            case 'r':
+                append('\r');
+                break;
+            case 'b':
+                append('\b');
+                break;
+            case 'f':
+                append('\f');
+                break;
+            case 'u':
+                int v = 0;
+                for(int i = 0; i < 4; i++)
+                {
+                    int h = read();
+                    int d = Character.digit(h, 16);
+                    if(d < 0)
+                    {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    v = (v << 4) | d;
+                }
+                append((char) v);
+                break;
+            default:
+                // '"', '\\', '/' and anything else escaped for no reason
+                append((char) c);
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    // skips the next value, whatever it is. Inside an object or array only quotes and brackets
+    // matter, so the window is searched for those with structureNext() and the rest jumped over.
+    final void skipValue() throws IOException
+    {
+        int c = peek();
+        switch(c)
+        {
+            case '{':
+            case '[':
+                pos++;
+                skipContainer();
+                break;
+
+            case '}':
+            case ']':
+            case ',':
+            case ':':
+                throw syntaxError("Unexpected '" + (char) c + "'");
+
+            case '"':
+                pos++;
+                skipString();
+                break;
+
+            case EOF:
+                throw syntaxError("Unexpected end of input");
+
+            default:
+                skipLiteral();
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    // past the bracket that closes the one just consumed
+    private void skipContainer() throws IOException
+    {
+        int depth = 1;
+        do
+        {
+            if(pos == limit && !fill())
+            {
+                throw syntaxError("Unexpected end of input");
+            }
+
+            int l = limit;
+            int p = structureNext(pos, l);
+            pos = p;
+            if(p == l)
+            {
+                continue;
+            }
+
+            pos = p + 1;
+            switch(at(p))
+            {
+                case '"':
+                    skipString();
+                    break;
+
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+
+                default:
+                    depth--;
+                    break;
+            }
+        }
+        while(depth > 0);
+    }
+
+    /***********************************************************************************************/
+    // runs through the window, only stepping out for refills and escapes
+    private void skipString() throws IOException
+    {
+        for(;;)
+        {
+            if(pos == limit && !fill())
+            {
+                throw syntaxError("Unterminated string");
+            }
+
+            int l = limit;
+            int p = stringEnd(pos, l);
+
+            pos = p;
+            if(p == l)
+            {
+                continue;
+            }
+
+            pos = p + 1;
+            if(at(p) == '"')
+            {
+                return;
+            }
+
+            read();
+        }
+    }
+
+    /***********************************************************************************************/
+    // numbers, true, false and null
+    private void skipLiteral() throws IOException
+    {
+        boolean any = false;
+        for(;;)
+        {
+            if(pos == limit && !fill())
+            {
+                break;
+            }
+
+            int c = at(pos);
+            if(c == ',' || c == ':' || c == '}' || c == ']' || c == '{' || c == '[' || c == '"' ||
+                    c == ' ' || c == '\n' || c == '\r' || c == '\t')
+            {
+                break;
+            }
+
+            pos++;
+            any = true;
+        }
+
+        if(!any)
+        {
+            throw syntaxError("Unexpected character");
+        }
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.io.IOException;
+
+// Structural index of an in-memory document, built in one pass without decoding anything. Every
+// value gets one entry, in document order: where it starts, the entry after its subtree (to jump
+// over it), how many children it has and where its key starts when it is an object member. Values
+// are decoded later, by a reader placed right at them.
+final class JsonTape
+{
+    private final static int STRIDE = 4;
+    private final static int START = 0;
+    private final static int NEXT = 1;
+    private final static int COUNT = 2;
+    private final static int KEY = 3;
+
+    // units that end a literal: structure, quotes and whitespace
+    private final static boolean[] DELIMITERS = new boolean[128];
+
+    static
+    {
+        for(char c: ",:{}[]\" \n\r\t".toCharArray())
+        {
+            DELIMITERS[c] = true;
+        }
+    }
+
+    // exactly one of the two is set
+    private final byte[] bytes;
+    private final char[] chars;
+    private final int end;
+
+    private int[] tape;
+    private int size;
+
+    /***********************************************************************************************/
+    private JsonTape(byte[] bytes, char[] chars, int end)
+    {
+        this.bytes = bytes;
+        this.chars = chars;
+        this.end = end;
+    }
+
+    /***********************************************************************************************/
+    // UTF-8 json in json[offset, offset + length)
+    static JsonTape index(byte[] json, int offset, int length) throws IOException
+    {
+        JsonTape t = new JsonTape(json, null, offset + length);
+        t.build(offset);
+        return t;
+    }
+
+    /***********************************************************************************************/
+    static JsonTape index(char[] json) throws IOException
+    {
+        JsonTape t = new JsonTape(null, json, json.length);
+        t.build(0);
+        return t;
+    }
+
+    /***********************************************************************************************/
+    // Starts of the elements of the array at json[offset] (after any whitespace), followed by the
+    // position after the array; null when there is no array there. Elements are only skipped over,
+    // their content is checked when they are read.
+    static int[] elements(byte[] json, int offset, int length) throws IOException
+    {
+        return new JsonTape(json, null, offset + length).split(offset);
+    }
+
+    /***********************************************************************************************/
+    // same for chars
+    static int[] elements(char[] json, int offset, int length) throws IOException
+    {
+        return new JsonTape(null, json, offset + length).split(offset);
+    }
+
+    /***********************************************************************************************/
+    private int[] split(int from) throws IOException
+    {
+        int p = skipSpace(from);
+        if(p >= end || unit(p) != '[')
+        {
+            return null;
+        }
+
+        int[] starts = new int[64];
+        int n = 0;
+        p = skipSpace(p + 1);
+        if(p < end && unit(p) == ']')
+        {
+            p++;
+        }
+        else
+        {
+            for(;;)
+            {
+                if(n == starts.length - 1)
+                {
+                    int[] t = new int[starts.length * 2];
+                    System.arraycopy(starts, 0, t, 0, n);
+                    starts = t;
+                }
+                starts[n++] = p;
+
+                p = skipSpace(skip(p));
+                int d = p < end ? unit(p) : JsonReader.EOF;
+                if(d == ',')
+                {
+                    p = skipSpace(p + 1);
+                }
+                else if(d == ']')
+                {
+                    p++;
+                    break;
+                }
+                else
+                {
+                    throw syntaxError("Expected ',' or ']'", p);
+                }
+            }
+        }
+
+        starts[n++] = p;
+        int[] result = new int[n];
+        System.arraycopy(starts, 0, result, 0, n);
+        return result;
+    }
+
+    /***********************************************************************************************/
+    // the value at p by bracket depth, strings aside; returns where it ends
+    private int skip(int p) throws IOException
+    {
+        if(p >= end)
+        {
+            throw syntaxError("Unexpected end of input", p);
+        }
+
+        int c = unit(p);
+        if(c == '"')
+        {
+            return skipString(p);
+        }
+        else if(c != '{' && c != '[')
+        {
+            return skipLiteral(p);
+        }
+
+        int depth = 0;
+        ByteScanner scanner = ByteScanner.INSTANCE;
+        while(p < end)
+        {
+            if(bytes != null)
+            {
+                // straight to the next quote or bracket
+                p = scanner.quoteOrBracket(bytes, p, end);
+                if(p == end)
+                {
+                    break;
+                }
+            }
+
+            c = unit(p);
+            if(c == '"')
+            {
+                p = skipString(p);
+                continue;
+            }
+
+            if(c == '{' || c == '[')
+            {
+                depth++;
+            }
+            else if((c == '}' || c == ']') && --depth == 0)
+            {
+                return p + 1;
+            }
+            p++;
+        }
+
+        throw syntaxError("Unexpected end of input", p);
+    }
+
+    /***********************************************************************************************/
+    // the scan works on the array directly, it is a lot less than what a reader does per unit
+    private void build(int from) throws IOException
+    {
+        // a value every 8 units is typical, but sized for that the tape alone takes twice the
+        // bytes of a utf-8 document; start at a quarter of it and double as values come
+        tape = new int[STRIDE * Math.max(16, (end - from) / 32)];
+        int p = skipSpace(add(skipSpace(from), -1));
+        if(p < end)
+        {
+            throw syntaxError("Unexpected content after the value", p);
+        }
+    }
+
+    /***********************************************************************************************/
+    // indexes the value at p and everything in it, returns where it ends
+    private int add(int p, int key) throws IOException
+    {
+        if(p >= end)
+        {
+            throw syntaxError("Unexpected end of input", p);
+        }
+
+        int n = size++;
+        if(tape.length < size * STRIDE)
+        {
+            int[] t = new int[tape.length * 2];
+            System.arraycopy(tape, 0, t, 0, n * STRIDE);
+            tape = t;
+        }
+
+        int count = 0;
+        tape[n * STRIDE + START] = p;
+        tape[n * STRIDE + KEY] = key;
+
+        int c = unit(p);
+        if(c == '{' || c == '[')
+        {
+            int close = c == '{' ? '}' : ']';
+            p = skipSpace(p + 1);
+            if(p < end && unit(p) == close)
+            {
+                p++;
+            }
+            else
+            {
+                for(;;)
+                {
+                    if(c == '{')
+                    {
+                        if(p >= end || unit(p) != '"')
+                        {
+                            throw syntaxError("Expected '\"'", p);
+                        }
+
+                        int k = p;
+                        p = skipSpace(skipString(p));
+                        if(p >= end || unit(p) != ':')
+                        {
+                            throw syntaxError("Expected ':'", p);
+                        }
+                        p = add(skipSpace(p + 1), k);
+                    }
+                    else
+                    {
+                        p = add(p, -1);
+                    }
+                    count++;
+
+                    p = skipSpace(p);
+                    int d = p < end ? unit(p) : JsonReader.EOF;
+                    if(d == ',')
+                    {
+                        p = skipSpace(p + 1);
+                    }
+                    else if(d == close)
+                    {
+                        p++;
+                        break;
+                    }
+                    else
+                    {
+                        throw syntaxError("Expected ',' or '" + (char) close + "'", p);
+                    }
+                }
+            }
+        }
+        else if(c == '"')
+        {
+            p = skipString(p);
+        }
+        else
+        {
+            p = skipLiteral(p);
+        }
+
+        // the children may have grown the tape, so it is not cached in a local
+        tape[n * STRIDE + NEXT] = size;
+        tape[n * STRIDE + COUNT] = count;
+        return p;
+    }
+
+    /***********************************************************************************************/
+    private int skipSpace(int p)
+    {
+        while(p < end)
+        {
+            int c = unit(p);
+            if(c != ' ' && c != '\n' && c != '\r' && c != '\t')
+            {
+                break;
+            }
+            p++;
+        }
+
+        return p;
+    }
+
+    /***********************************************************************************************/
+    // string starting with the quote at p, returns the position after the closing one
+    private int skipString(int p) throws IOException
+    {
+        p++;
+        if(bytes != null)
+        {
+            byte[] b = bytes;
+            ByteScanner scanner = ByteScanner.INSTANCE;
+            while(p < end)
+            {
+                p = scanner.quoteOrEscape(b, p, end);
+                if(p == end)
+                {
+                    break;
+                }
+                else if(b[p] == '"')
+                {
+                    return p + 1;
+                }
+                p += 2;
+            }
+        }
+        else
+        {
+            char[] b = chars;
+            while(p < end)
+            {
+                char c = b[p];
+                if(c == '"')
+                {
+                    return p + 1;
+                }
+                p += c == '\\' ? 2 : 1;
+            }
+        }
+
+        throw syntaxError("Unterminated string", p);
+    }
+
+    /***********************************************************************************************/
+    // numbers, true, false and null; checked when they are read
+    private int skipLiteral(int p) throws IOException
+    {
+        boolean[] delimiters = DELIMITERS;
+        int from = p;
+        while(p < end)
+        {
+            int c = unit(p);
+            if(c < 128 && delimiters[c])
+            {
+                break;
+            }
+            p++;
+        }
+
+        if(p == from)
+        {
+            throw syntaxError("Unexpected character", p);
+        }
+
+        return p;
+    }
+
+    /***********************************************************************************************/
+    private static IOException syntaxError(String message, int p)
+    {
+        return new JsonReader.SyntaxException(message + " at offset " + p);
+    }
+
+    /***********************************************************************************************/
+    int count(int node)
+    {
+        return tape[node * STRIDE + COUNT];
+    }
+
+    /***********************************************************************************************/
+    // first unit of the value: '{', '[', '"', 'n' and so on
+    int type(int node)
+    {
+        return unit(tape[node * STRIDE + START]);
+    }
+
+    /***********************************************************************************************/
+    // i-th child of an object or array, -1 if there is none
+    int child(int node, int i)
+    {
+        int count = count(node);
+        if(i < 0 || i >= count)
+        {
+            return -1;
+        }
+
+        // no nested containers, the children are one entry each
+        if(tape[node * STRIDE + NEXT] - node - 1 == count)
+        {
+            return node + 1 + i;
+        }
+
+        int c = node + 1;
+        for(; i > 0; i--)
+        {
+            c = tape[c * STRIDE + NEXT];
+        }
+
+        return c;
+    }
+
+    /***********************************************************************************************/
+    // member of an object by name, the last one if there are several, -1 if there is none
+    int member(int node, String name)
+    {
+        if(type(node) != '{')
+        {
+            return -1;
+        }
+
+        int found = -1;
+        int next = tape[node * STRIDE + NEXT];
+        for(int c = node + 1; c < next; c = tape[c * STRIDE + NEXT])
+        {
+            if(keyEquals(tape[c * STRIDE + KEY], name))
+            {
+                found = c;
+            }
+        }
+
+        return found;
+    }
+
+    /***********************************************************************************************/
+    // key starting with the quote at p against name; plain ascii keys are compared in place
+    private boolean keyEquals(int p, String name)
+    {
+        int n = name.length();
+        int i = p + 1;
+        for(int k = 0; ; k++, i++)
+        {
+            int c = unit(i);
+            if(c == '"')
+            {
+                return k == n;
+            }
+            else if(c == '\\' || c >= 0x80)
+            {
+                break;
+            }
+            else if(k == n || name.charAt(k) != c)
+            {
+                return false;
+            }
+        }
+
+        try
+        {
+            return name.equals(readerAt(p).nextString());
+        }
+        catch(IOException e)
+        {
+            // indexed already, can't be
+            return false;
+        }
+    }
+
+    /***********************************************************************************************/
+    private int unit(int p)
+    {
+        return bytes != null ? bytes[p] & 0xFF : chars[p];
+    }
+
+    /***********************************************************************************************/
+    // reader placed at the value
+    JsonReader reader(int node)
+    {
+        return readerAt(tape[node * STRIDE + START]);
+    }
+
+    /***********************************************************************************************/
+    private JsonReader readerAt(int p)
+    {
+        return bytes != null ? new ByteJsonReader(bytes, p, end - p) : new CharJsonReader(chars, p, end - p);
+    }
+}
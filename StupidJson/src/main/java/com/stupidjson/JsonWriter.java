@@ -0,0 +1,250 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.io.IOException;
+
+// Output of the serializer. Structural chars are always ascii, text is encoded by the subclass.
+abstract class JsonWriter
+{
+    private final static char[] MIN_INT = "-2147483648".toCharArray();
+    private final static char[] MIN_LONG = "-9223372036854775808".toCharArray();
+    private final static char[] TRUE = "true".toCharArray();
+    private final static char[] FALSE = "false".toCharArray();
+
+    // digit pairs "00".."99", tens then ones
+    private final static char[] DIGIT_TENS = new char[100];
+    private final static char[] DIGIT_ONES = new char[100];
+
+    static
+    {
+        for(int i = 0; i < 100; i++)
+        {
+            DIGIT_TENS[i] = (char) ('0' + i / 10);
+            DIGIT_ONES[i] = (char) ('0' + i % 10);
+        }
+    }
+
+    // what follows the backslash for the chars that have to be escaped, 'u' for the ones written in
+    // hex, 0 for the ones copied as they are
+    private final static char[] ESCAPES = new char[128];
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+    static
+    {
+        for(int i = 0; i < 0x20; i++)
+        {
+            ESCAPES[i] = 'u';
+        }
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+    }
+
+    // numbers are formatted here and copied out in one go; integers are right aligned
+    private final char[] digits = new char[JsonNumbers.MAX_CHARS];
+    private final char[] escape = {'\\', 'u', '0', '0', 0, 0};
+
+    // set on the buffers of a parallel store
+    boolean chunk;
+    // homogeneous arrays of objects go as a header of names and positional rows, see storeRows()
+    boolean positional;
+
+    /***********************************************************************************************/
+    abstract void write(char c) throws IOException;
+
+    /***********************************************************************************************/
+    // empty writer of the same kind collecting into its array, marked as a chunk
+    abstract JsonWriter newChunk(int capacity);
+
+    /***********************************************************************************************/
+    // everything written to a chunk from newChunk()
+    abstract void append(JsonWriter chunk) throws IOException;
+
+    /***********************************************************************************************/
+    // ascii only
+    abstract void write(char[] chars, int offset, int length) throws IOException;
+
+    /***********************************************************************************************/
+    // chars [from, to) of s
+    abstract void write(String s, int from, int to) throws IOException;
+
+    /***********************************************************************************************/
+    final void write(String s) throws IOException
+    {
+        write(s, 0, s.length());
+    }
+
+    /***********************************************************************************************/
+    // s quoted and escaped. Runs of chars that need no escaping are found with the table and
+    // copied out in one go.
+    final void writeString(String s) throws IOException
+    {
+        write('"');
+
+        char[] table = ESCAPES;
+        int n = s.length();
+        int run = 0;
+        for(int i = 0; i < n; i++)
+        {
+            char c = s.charAt(i);
+            if(c < 128 && table[c] != 0)
+            {
+                if(i > run)
+                {
+                    write(s, run, i);
+                }
+                run = i + 1;
+
+                char e = table[c];
+                if(e == 'u')
+                {
+                    escape[4] = HEX[c >> 4];
+                    escape[5] = HEX[c & 0xF];
+                    write(escape, 0, 6);
+                }
+                else
+                {
+                    write('\\');
+                    write(e);
+                }
+            }
+        }
+
+        if(run < n)
+        {
+            write(s, run, n);
+        }
+
+        write('"');
+    }
+
+    /***********************************************************************************************/
+    // ascii only
+    final void write(char[] chars) throws IOException
+    {
+        write(chars, 0, chars.length);
+    }
+
+    /***********************************************************************************************/
+    final void writeBoolean(boolean v) throws IOException
+    {
+        write(v ? TRUE : FALSE);
+    }
+
+    /***********************************************************************************************/
+    final void writeInt(int v) throws IOException
+    {
+        if(v == Integer.MIN_VALUE)
+        {
+            write(MIN_INT);
+            return;
+        }
+
+        char[] d = digits;
+        int p = d.length;
+        boolean negative = v < 0;
+        if(negative)
+        {
+            v = -v;
+        }
+
+        while(v >= 100)
+        {
+            int r = v % 100;
+            v /= 100;
+            d[--p] = DIGIT_ONES[r];
+            d[--p] = DIGIT_TENS[r];
+        }
+
+        d[--p] = DIGIT_ONES[v];
+        if(v >= 10)
+        {
+            d[--p] = DIGIT_TENS[v];
+        }
+
+        if(negative)
+        {
+            d[--p] = '-';
+        }
+
+        write(d, p, d.length - p);
+    }
+
+    /***********************************************************************************************/
+    final void writeLong(long v) throws IOException
+    {
+        if(v == (int) v)
+        {
+            writeInt((int) v);
+            return;
+        }
+        else if(v == Long.MIN_VALUE)
+        {
+            write(MIN_LONG);
+            return;
+        }
+
+        char[] d = digits;
+        int p = d.length;
+        boolean negative = v < 0;
+        if(negative)
+        {
+            v = -v;
+        }
+
+        while(v >= 100)
+        {
+            int r = (int) (v % 100);
+            v /= 100;
+            d[--p] = DIGIT_ONES[r];
+            d[--p] = DIGIT_TENS[r];
+        }
+
+        int r = (int) v;
+        d[--p] = DIGIT_ONES[r];
+        if(r >= 10)
+        {
+            d[--p] = DIGIT_TENS[r];
+        }
+
+        if(negative)
+        {
+            d[--p] = '-';
+        }
+
+        write(d, p, d.length - p);
+    }
+
+    /***********************************************************************************************/
+    // same text as Double.toString(), without the garbage
+    final void writeDouble(double v) throws IOException
+    {
+        write(digits, 0, JsonNumbers.formatDouble(v, digits, 0));
+    }
+
+    /***********************************************************************************************/
+    final void writeFloat(float v) throws IOException
+    {
+        write(digits, 0, JsonNumbers.formatFloat(v, digits, 0));
+    }
+}
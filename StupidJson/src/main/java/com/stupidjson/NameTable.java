@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+// Json names of one class, looked up by the raw units of a key so that keys never become Strings.
+// Open addressing on String.hashCode(), the table is grown until no two names share a slot (up to
+// a limit), so a lookup is one hash compare and one char compare in practice.
+final class NameTable
+{
+    // a table this many times the names is as far as we go to avoid collisions
+    private final static int MAX_SPREAD = 16;
+
+    private final char[][] names;
+    private final int[] hashes;
+    // index into names plus one, 0 is an empty slot
+    private final int[] slots;
+    private final int mask;
+
+    /***********************************************************************************************/
+    NameTable(String[] names)
+    {
+        int n = names.length;
+        this.names = new char[n][];
+        this.hashes = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            this.names[i] = names[i].toCharArray();
+            this.hashes[i] = names[i].hashCode();
+        }
+
+        int size = Integer.highestOneBit(Math.max(n, 1)) * 2;
+        while(size < n * MAX_SPREAD && collides(size))
+        {
+            size *= 2;
+        }
+
+        this.mask = size - 1;
+        this.slots = new int[size];
+        for (int i = 0; i < n; i++)
+        {
+            // same name twice, the later one wins
+            int existing = find(this.names[i], this.names[i].length);
+            if(existing >= 0)
+            {
+                slots[slotOf(existing)] = i + 1;
+                continue;
+            }
+
+            int s = spread(hashes[i]) & mask;
+            while(slots[s] != 0)
+            {
+                s = (s + 1) & mask;
+            }
+            slots[s] = i + 1;
+        }
+    }
+
+    /***********************************************************************************************/
+    private boolean collides(int size)
+    {
+        boolean[] used = new boolean[size];
+        for (int h: hashes)
+        {
+            int s = spread(h) & (size - 1);
+            if(used[s])
+            {
+                return true;
+            }
+            used[s] = true;
+        }
+
+        return false;
+    }
+
+    /***********************************************************************************************/
+    private int slotOf(int index)
+    {
+        int s = spread(hashes[index]) & mask;
+        while(slots[s] != index + 1)
+        {
+            s = (s + 1) & mask;
+        }
+
+        return s;
+    }
+
+    /***********************************************************************************************/
+    private static int spread(int h)
+    {
+        return h ^ (h >>> 16);
+    }
+
+    /***********************************************************************************************/
+    // index of the name in units [from, to) of the reader's window, -1 if there is none. The
+    // units are plain ascii and h is their String.hashCode().
+    int find(JsonReader r, int from, int to, int h)
+    {
+        int length = to - from;
+        for(int s = spread(h) & mask; slots[s] != 0; s = (s + 1) & mask)
+        {
+            int i = slots[s] - 1;
+            char[] name = names[i];
+            if(hashes[i] != h || name.length != length)
+            {
+                continue;
+            }
+
+            int k = 0;
+            while(k < length && name[k] == r.at(from + k))
+            {
+                k++;
+            }
+
+            if(k == length)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /***********************************************************************************************/
+    // index of the name in chars [0, length) of s, -1 if there is none
+    int find(char[] s, int length)
+    {
+        int h = 0;
+        for (int k = 0; k < length; k++)
+        {
+            h = 31 * h + s[k];
+        }
+
+        for(int slot = spread(h) & mask; slots[slot] != 0; slot = (slot + 1) & mask)
+        {
+            int i = slots[slot] - 1;
+            char[] name = names[i];
+            if(hashes[i] != h || name.length != length)
+            {
+                continue;
+            }
+
+            int k = 0;
+            while(k < length && name[k] == s[k])
+            {
+                k++;
+            }
+
+            if(k == length)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -17,40 +17,140 @@
 
 package com.stupidjson;
 
-import android.util.Log;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.lang.annotation.Annotation;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class StupidJson
 {
     private final static String TAG = "StupidJson";
+    private final static Logger LOG = Logger.getLogger(TAG);
 
     private final static char[] NULL = new char[] {'n', 'u', 'l', 'l'};
     private final static char QUOTE = '"';
-    private final static char QUOTE_ESCAPE = '\\';
     private final static char[] QUOTE_END = new char[] {'"', ':'};
     private final static char DELIMITER = ',';
+    private final static char NAME_DELIMITER = ':';
     private final static char OBJECT_START = '{';
     private final static char OBJECT_END = '}';
     private final static char ARRAY_START = '[';
     private final static char ARRAY_END = ']';
 
+    private final static String ADAPTER_SUFFIX = "_JsonAdapter";
+
+    private final static int STREAM_BUFFER_SIZE = 8192;
+    // toJson() / toJsonBytes() output buffers are kept per thread for the next call, up to this size
+    private final static int POOLED_BUFFER_LIMIT = 64 * 1024;
+    private final static int INITIAL_BUFFER_SIZE = 256;
+    private final static char LINE_END = '\n';
+    // json lines input is read in chunks of about this size and decoded in batches
+    private final static int LINES_CHUNK_SIZE = 1 << 20;
+    private final static int LINES_BATCH_SIZE = 64 * 1024;
+    private final static int PARALLEL_CHUNK_MIN = 4096;
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    // value kinds, resolved once per class/field and cached in the class plan
+    private final static int KIND_OBJECT = 0;
+    private final static int KIND_STRING = 1;
+    private final static int KIND_ANY = 2;          // declared as Object
+    private final static int KIND_NUMBER = 3;       // declared as Number or a non-boxed Number subclass
+    private final static int KIND_INT = 4;
+    private final static int KIND_INTEGER = 5;
+    private final static int KIND_BOOLEAN = 6;
+    private final static int KIND_BOOLEAN_OBJ = 7;
+    private final static int KIND_DOUBLE = 8;
+    private final static int KIND_DOUBLE_OBJ = 9;
+    private final static int KIND_FLOAT = 10;
+    private final static int KIND_FLOAT_OBJ = 11;
+    private final static int KIND_BYTE = 12;
+    private final static int KIND_BYTE_OBJ = 13;
+    private final static int KIND_LONG = 14;
+    private final static int KIND_LONG_OBJ = 15;
+    private final static int KIND_SHORT = 16;
+    private final static int KIND_SHORT_OBJ = 17;
+    private final static int KIND_CHAR = 18;
+    private final static int KIND_CHARACTER = 19;
+    private final static int KIND_ENUM = 20;
+    private final static int KIND_ARRAY = 21;
+    private final static int KIND_COLLECTION = 22;
+    private final static int KIND_MAP = 23;
+    private final static int KIND_ROW = 24;         // not a class kind: array elements stored by storeRow()
+
+    private final static ConcurrentHashMap<Class<?>, ClassPlan> PLANS = new ConcurrentHashMap<>();
+
+    // idle output buffers of this thread, taken out while in use so that a nested call gets its own
+    private final static ThreadLocal<CharJsonWriter> CHAR_WRITERS = new ThreadLocal<>();
+    private final static ThreadLocal<ByteJsonWriter> BYTE_WRITERS = new ThreadLocal<>();
+
+    // both 0 unless set, nothing runs in parallel then
+    private static volatile int parallelEncodeThreshold;
+    private static volatile int parallelDecodeThreshold;
+    // null unless set, the common ForkJoinPool is used then
+    private static volatile Executor parallelExecutor;
+    // the common ForkJoinPool, or a pool of our own where there is none; on first use
+    private static Executor defaultWorkers;
+    // ForkJoinWorkerThread, null before Android 5
+    private final static Class<?> FORK_JOIN_WORKER = forkJoinWorkerClass();
+    // runs every task on the thread that submits it
+    private final static Executor CALLER_RUNS = new Executor()
+    {
+        @Override
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    // null unless set, then every call pays for a couple of nanoTime() calls
+    private static volatile Metrics metrics;
+
     /***********************************************************************************************/
     @Target({ElementType.FIELD, ElementType.PARAMETER})
     @Retention(RetentionPolicy.RUNTIME)
@@ -76,634 +176,4230 @@ public class StupidJson
     }
 
     /***********************************************************************************************/
-    public static String toJson(Object src)
+    // StupidJsonProcessor generates an Adapter for classes marked with this one, they are then
+    // serialized without reflection. Without the processor the class is handled as any other.
+    @Target(ElementType.TYPE)
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface GenerateAdapter
     {
-        if(src == null)
+
+    }
+
+    /***********************************************************************************************/
+    // Base of the generated adapters: field metadata, construction and field access by index.
+    // Fields are numbered in declaration order, @Ignore'd ones are not there at all. Each getter
+    // and setter is overridden for the fields of its type only.
+    public abstract static class Adapter<T>
+    {
+        final String[] names;
+        final Class<?>[] types;
+        // generic argument of collection fields and value argument of map fields, null elsewhere
+        final Class<?>[] elementTypes;
+        // key argument of map fields, null elsewhere
+        final Class<?>[] keyTypes;
+        final boolean[] dontQuote;
+
+        protected Adapter(String[] names, Class<?>[] types, Class<?>[] elementTypes, Class<?>[] keyTypes, boolean[] dontQuote)
         {
-            return null;
+            this.names = names;
+            this.types = types;
+            this.elementTypes = elementTypes;
+            this.keyTypes = keyTypes;
+            this.dontQuote = dontQuote;
         }
 
-        StringBuilder sb = new StringBuilder(256);
+        protected abstract T newInstance();
 
-        try
+        // any field, primitives boxed
+        protected Object get(T o, int field)
         {
-            Class<?> fc = src.getClass();
-            if(fc.isArray())
-            {
-                storeArray(sb, src);
-            }
-            else if (Collection.class.isAssignableFrom(fc))
-            {
-                storeCollection(sb, (Collection)src);
-            }
-            else if (Hashtable.class.isAssignableFrom(fc))
-            {
-                storeHashtable(sb, (Hashtable)src);
-            }
-            else
-            {
-                storeObject(sb, src);
-            }
-
-            return sb.toString();
+            throw noSuchField(field);
         }
-        catch (Exception e)
+
+        // int, short, byte and char fields
+        protected int getInt(T o, int field)
         {
-            e.printStackTrace();
-            return null;
+            throw noSuchField(field);
         }
-    }
 
-    /***********************************************************************************************/
-    private static void storeObject(StringBuilder sb, Object src) throws IllegalAccessException, NoSuchFieldException
-    {
-        if(src == null)
+        protected long getLong(T o, int field)
         {
-            sb.append(NULL);
-            return;
+            throw noSuchField(field);
         }
 
-        // handle primitives
-        Class<?> sc = src.getClass();
-        if(sc.isPrimitive() || canAssign(String.class, sc) || sc.isEnum() ||
-                canAssign(Number.class, sc) || canAssign(Boolean.class, sc) ||
-                sc.isArray() || canAssign(Character.class, sc) ||
-                Collection.class.isAssignableFrom(sc) || Hashtable.class.isAssignableFrom(sc))
+        protected float getFloat(T o, int field)
         {
-            storeField(sb, null, sc, src);
-            return;
+            throw noSuchField(field);
         }
 
-        // composite object
-        sb.append(OBJECT_START);
+        protected double getDouble(T o, int field)
+        {
+            throw noSuchField(field);
+        }
 
-        int added = 0;
-        // TODO: this will not pull fields from extended classes
-        Field[] fields = sc.getDeclaredFields();
-        for (Field f: fields)
+        protected boolean getBoolean(T o, int field)
         {
-            int mods = f.getModifiers();
-            if(Modifier.isStatic(mods) || f.isSynthetic())
-            {
-                continue;
-            }
+            throw noSuchField(field);
+        }
 
-            if(f.isAnnotationPresent(Ignore.class))
-            {
-                continue;
-            }
+        // reference fields
+        protected void set(T o, int field, Object v)
+        {
+            throw noSuchField(field);
+        }
 
-            if(Modifier.isPrivate(mods) || Modifier.isProtected(mods))
-            {
-                f.setAccessible(true);
-            }
+        protected void setInt(T o, int field, int v)
+        {
+            throw noSuchField(field);
+        }
 
-            Object value = f.get(src);
-            Class<?> fc = f.getType();
-            String name = getFieldName(f);
+        protected void setShort(T o, int field, short v)
+        {
+            throw noSuchField(field);
+        }
 
-            if(added > 0)
-            {
-                sb.append(DELIMITER);
-            }
+        protected void setByte(T o, int field, byte v)
+        {
+            throw noSuchField(field);
+        }
 
-            sb.append(QUOTE);
-            sb.append(name);
-            sb.append(QUOTE_END);
-            storeField(sb, f, fc, value);
-            added++;
+        protected void setChar(T o, int field, char v)
+        {
+            throw noSuchField(field);
         }
 
-        sb.append(OBJECT_END);
-    }
+        protected void setLong(T o, int field, long v)
+        {
+            throw noSuchField(field);
+        }
 
-    /***********************************************************************************************/
-    private static void storeField(StringBuilder sb, Field f, Class<?> fc, Object value) throws NoSuchFieldException, IllegalAccessException
-    {
-        if(value == null)
+        protected void setFloat(T o, int field, float v)
         {
-            sb.append(NULL);
-            return;
+            throw noSuchField(field);
         }
 
-        if(fc.isPrimitive() || canAssign(Number.class, fc) ||
-                canAssign(Boolean.class, fc) || canAssign(Character.class, fc))
+        protected void setDouble(T o, int field, double v)
         {
-            String v = value.toString();
-            sb.append(v);
+            throw noSuchField(field);
         }
-        else if(canAssign(String.class, fc))
+
+        protected void setBoolean(T o, int field, boolean v)
         {
-            if(f != null && f.isAnnotationPresent(DontQuote.class))
-            {
-                sb.append((String)value);
-            }
-            else
-            {
-                sb.append(QUOTE);
-                sb.append(escapeString((String)value));
-                sb.append(QUOTE);
-            }
+            throw noSuchField(field);
         }
-        else if(fc.isEnum())
+
+        protected final IllegalArgumentException noSuchField(int field)
         {
-            String v = value.toString();
-            Field ff = fc.getField(v);
-            if(ff.isAnnotationPresent(NameOverride.class))
-            {
-                Annotation[] annotations = ff.getAnnotations();
-                for (Annotation a : annotations)
-                {
-                    if (a instanceof NameOverride)
-                    {
-                        v = ((NameOverride) a).value();
-                        break;
-                    }
-                }
-            }
+            return new IllegalArgumentException("No accessor for field " + field + " in " + getClass().getName());
+        }
+    }
 
-            sb.append(QUOTE);
-            sb.append(v);
-            sb.append(QUOTE);
+    /***********************************************************************************************/
+    // Listener for what the single value calls (toJson, toJsonBytes, fromJson and their stream
+    // variants) cost, see setMetrics(). Type is the class at the root, size is in chars for text and
+    // in bytes for UTF-8. Called on the calling thread, so keep it cheap; override what you need.
+    public abstract static class Metrics
+    {
+        public void onEncode(Class<?> type, long nanos, long size)
+        {
         }
-        else if(fc.isArray())
+
+        public void onDecode(Class<?> type, long nanos, long size)
         {
-            storeArray(sb, value);
         }
-        else if (Collection.class.isAssignableFrom(fc))
+
+        public void onEncodeFailure(Class<?> type, Throwable t)
         {
-            storeCollection(sb, (Collection)value);
         }
-        else if (Hashtable.class.isAssignableFrom(fc))
+
+        public void onDecodeFailure(Class<?> type, Throwable t)
         {
-            storeHashtable(sb, (Hashtable)value);
         }
-        else
+
+        // once per call for the class at the root, hit is false when its plan is not built yet
+        public void onPlanLookup(Class<?> type, boolean hit)
         {
-            storeObject(sb, value);
         }
     }
 
     /***********************************************************************************************/
-    private static String getFieldName(Field f)
+    // Metrics kept in memory: per root class counts, sizes, failures and latency histograms, and
+    // the plan cache hits and misses of the root classes. Lock free, fine to share between threads.
+    public static class MetricsRecorder extends Metrics
     {
-        String name = f.getName();
+        // bucket i counts durations in [2^i, 2^(i+1)) ns, the last one everything above ~9 minutes
+        public final static int BUCKETS = 40;
 
-        if(!f.isAnnotationPresent(NameOverride.class))
+        public final static class Stats
         {
-            return name;
-        }
+            public final AtomicLong encodes = new AtomicLong();
+            public final AtomicLong decodes = new AtomicLong();
+            public final AtomicLong encodedSize = new AtomicLong();
+            public final AtomicLong decodedSize = new AtomicLong();
+            public final AtomicLong encodeFailures = new AtomicLong();
+            public final AtomicLong decodeFailures = new AtomicLong();
+            public final AtomicLongArray encodeNanos = new AtomicLongArray(BUCKETS);
+            public final AtomicLongArray decodeNanos = new AtomicLongArray(BUCKETS);
 
-        Annotation[] annotations = f.getDeclaredAnnotations();
-        for(Annotation a: annotations)
-        {
-            if(a instanceof NameOverride)
+            // upper bound of the bucket holding the quantile, 0 when there is nothing recorded
+            public static long quantile(AtomicLongArray histogram, double q)
             {
-                name = ((NameOverride)a).value();
-                break;
+                long total = 0;
+                for (int i = 0; i < BUCKETS; i++)
+                {
+                    total += histogram.get(i);
+                }
+
+                long rank = (long) Math.ceil(total * q);
+                long seen = 0;
+                for (int i = 0; i < BUCKETS; i++)
+                {
+                    seen += histogram.get(i);
+                    if(seen > 0 && seen >= rank)
+                    {
+                        return 1L << (i + 1);
+                    }
+                }
+
+                return 0;
             }
         }
 
-        return name;
-    }
+        public final AtomicLong planHits = new AtomicLong();
+        public final AtomicLong planMisses = new AtomicLong();
+        private final ConcurrentHashMap<Class<?>, Stats> stats = new ConcurrentHashMap<>();
 
-    /***********************************************************************************************/
-    private static void storeArray(StringBuilder sb, Object fc) throws IllegalAccessException, NoSuchFieldException
-    {
-        if(fc == null)
+        // live, by root class
+        public Map<Class<?>, Stats> stats()
         {
-            sb.append(NULL);
-            return;
+            return stats;
         }
 
-        sb.append(ARRAY_START);
-
-        int length = Array.getLength(fc);
-        for (int j = 0; j < length; j++)
+        public Stats statsOf(Class<?> type)
         {
-            if (j > 0)
+            Stats s = stats.get(type);
+            if(s == null)
             {
-                sb.append(DELIMITER);
+                s = new Stats();
+                Stats prev = stats.putIfAbsent(type, s);
+                if(prev != null)
+                {
+                    s = prev;
+                }
             }
 
-            Object e = Array.get(fc, j);
-            storeObject(sb, e);
+            return s;
         }
 
-        sb.append(ARRAY_END);
-    }
-
-    /***********************************************************************************************/
-    private static void storeCollection(StringBuilder sb, Collection list) throws IllegalAccessException, NoSuchFieldException
-    {
-        if(list == null)
+        @Override
+        public void onEncode(Class<?> type, long nanos, long size)
         {
-            sb.append(NULL);
-            return;
+            Stats s = statsOf(type);
+            s.encodes.incrementAndGet();
+            s.encodedSize.addAndGet(size);
+            s.encodeNanos.incrementAndGet(bucket(nanos));
         }
 
-        sb.append(ARRAY_START);
-
-        int j = 0;
-        for (Object o: list)
+        @Override
+        public void onDecode(Class<?> type, long nanos, long size)
         {
-            if(j > 0)
-            {
-                sb.append(DELIMITER);
-            }
+            Stats s = statsOf(type);
+            s.decodes.incrementAndGet();
+            s.decodedSize.addAndGet(size);
+            s.decodeNanos.incrementAndGet(bucket(nanos));
+        }
 
-            storeObject(sb, o);
-            j++;
+        @Override
+        public void onEncodeFailure(Class<?> type, Throwable t)
+        {
+            statsOf(type).encodeFailures.incrementAndGet();
         }
 
-        sb.append(ARRAY_END);
-    }
+        @Override
+        public void onDecodeFailure(Class<?> type, Throwable t)
+        {
+            statsOf(type).decodeFailures.incrementAndGet();
+        }
 
-    /***********************************************************************************************/
-    private static void storeHashtable(StringBuilder sb, Hashtable hash) throws IllegalAccessException, NoSuchFieldException
-    {
-        if(hash == null)
+        @Override
+        public void onPlanLookup(Class<?> type, boolean hit)
         {
-            sb.append(NULL);
-            return;
+            (hit ? planHits : planMisses).incrementAndGet();
         }
 
-        sb.append(OBJECT_START);
+        private static int bucket(long nanos)
+        {
+            return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+        }
 
-        int j = 0;
-        for (Object k: hash.keySet())
+        // one line per root class, for logs
+        public String report()
         {
-            if(j > 0)
+            StringBuilder sb = new StringBuilder();
+            sb.append("plans hits=").append(planHits.get()).append(" misses=").append(planMisses.get());
+            for (Map.Entry<Class<?>, Stats> e: stats.entrySet())
             {
-                sb.append(DELIMITER);
+                Stats s = e.getValue();
+                sb.append('\n').append(e.getKey().getName())
+                        .append(" encodes=").append(s.encodes.get())
+                        .append(" size=").append(s.encodedSize.get())
+                        .append(" p50<").append(Stats.quantile(s.encodeNanos, 0.5)).append("ns")
+                        .append(" p99<").append(Stats.quantile(s.encodeNanos, 0.99)).append("ns")
+                        .append(" failures=").append(s.encodeFailures.get())
+                        .append(" decodes=").append(s.decodes.get())
+                        .append(" size=").append(s.decodedSize.get())
+                        .append(" p50<").append(Stats.quantile(s.decodeNanos, 0.5)).append("ns")
+                        .append(" p99<").append(Stats.quantile(s.decodeNanos, 0.99)).append("ns")
+                        .append(" failures=").append(s.decodeFailures.get());
             }
 
-            sb.append(QUOTE);
-            sb.append(k.toString());
-            sb.append(QUOTE_END);
-
-            storeObject(sb, hash.get(k));
-            j++;
+            return sb.toString();
         }
-
-        sb.append(OBJECT_END);
     }
 
     /***********************************************************************************************/
-    public static <T> T fromJson(byte[] json, Class<T> classOfT)
+    // everything we need to know about a field - resolved once, when the owning class plan is built
+    private final static class FieldPlan
     {
-        return fromJson(new String(json), classOfT);
-    }
+        // through the generated adapter when there is one, the fastest reflection otherwise
+        final FieldAccess access;
+        final int index;
+        final String name;
+        // the name as a CBOR text string, for toBinary()
+        final byte[] binaryName;
+        final Class<?> type;
+        final int kind;
+        final boolean dontQuote;
+        // raw type of the generic argument of a collection field or the value argument of a map
+        // field, null if it cannot be resolved
+        final Class<?> elementType;
+        // raw type of the key argument of a map field, null if it cannot be resolved
+        final Class<?> keyType;
+        // entries in the last map read into the field, to size the next one; racy, only a hint
+        int sizeHint;
 
-    /***********************************************************************************************/
-    @SuppressWarnings("unchecked")
-    public static <T> T fromJson(String json, Class<T> classOfT)
-    {
-        if(json == null)
+        FieldPlan(Field field, int index)
         {
-            return null;
-        }
+            this.access = new FieldAccess.Reflect(field);
+            this.index = index;
+            this.name = getFieldName(field);
+            this.binaryName = CborWriter.encode(name);
+            this.type = field.getType();
+            this.kind = kindOf(type);
+            this.dontQuote = field.isAnnotationPresent(DontQuote.class);
 
-        try
-        {
-            if(classOfT.isArray())
-            {
-                JSONArray a = new JSONArray(json);
-                return (T)parseArray(a, classOfT.getComponentType());
-            }
-            else if (Collection.class.isAssignableFrom(classOfT))
+            Class<?> et = null;
+            Class<?> kt = null;
+            if(kind == KIND_COLLECTION || kind == KIND_MAP)
             {
-                JSONArray a = new JSONArray(json);
-                ParameterizedType pt = (ParameterizedType)classOfT.getGenericSuperclass();
-                if(pt == null)
+                Type genericType = field.getGenericType();
+                if(genericType instanceof ParameterizedType)
                 {
-                    return null;
+                    Type[] actualTypeArguments = ((ParameterizedType) genericType).getActualTypeArguments();
+                    int value = kind == KIND_MAP ? 1 : 0;
+                    if(actualTypeArguments.length > value)
+                    {
+                        et = rawType(actualTypeArguments[value]);
+                    }
+                    if(kind == KIND_MAP)
+                    {
+                        kt = rawType(actualTypeArguments[0]);
+                    }
                 }
-
-                Type[] tt = pt.getActualTypeArguments();
-                Class<T> fcc = (Class<T>)tt[0];
-                return (T)parseList(a, fcc);
-            }
-            else if (Hashtable.class.isAssignableFrom(classOfT))
-            {
-                //TODO
-                return null;
             }
-            else
+            this.elementType = et;
+            this.keyType = kt;
+        }
+
+        // List<String> as List, so a Map<String, List<String>> does not read its values as strings;
+        // null for wildcards and type variables
+        private static Class<?> rawType(Type type)
+        {
+            if(type instanceof ParameterizedType)
             {
-                T instance = classOfT.newInstance();
-                JSONObject j = new JSONObject(json);
-                return fromJson(j, instance);
+                type = ((ParameterizedType) type).getRawType();
             }
+            return type instanceof Class ? (Class<?>) type : null;
         }
-        catch (Exception e)
+
+        FieldPlan(Adapter<Object> adapter, int index)
         {
-            Log.e(TAG, "Error fromJson on=(" + json + ") class= " + classOfT);
-            e.printStackTrace();
-            return null;
+            this.access = new FieldAccess.Adapted(adapter, index);
+            this.index = index;
+            this.name = adapter.names[index];
+            this.binaryName = CborWriter.encode(name);
+            this.type = adapter.types[index];
+            this.kind = kindOf(type);
+            this.dontQuote = adapter.dontQuote[index];
+            this.elementType = kind == KIND_COLLECTION || kind == KIND_MAP ? adapter.elementTypes[index] : null;
+            this.keyType = kind == KIND_MAP ? adapter.keyTypes[index] : null;
         }
     }
 
     /***********************************************************************************************/
-    private static <T> T fromJson(JSONObject j, T instance) throws JSONException, InstantiationException
+    // per-class serialization plan, built once and shared by toJson and fromJson
+    private final static class ClassPlan
     {
-        if(j == null)
-        {
-            return null;
-        }
+        final Class<?> type;
+        final int kind;
+        // generated adapter, null when the class is handled through reflection
+        final Adapter<Object> adapter;
+        // serializable fields in declaration order, empty unless it is a composite object
+        final FieldPlan[] fields;
+        // json names of the fields, same order
+        final NameTable names;
+        // json names indexed by ordinal and the reverse lookup, only for enums
+        final String[] enumNames;
+        final Map<String, Object> enumValues;
 
-        // TODO: this will not pull fields from extended classes
-        Field[] fields = instance.getClass().getDeclaredFields();
-        for (Field f: fields)
+        ClassPlan(Class<?> c)
         {
-            int mods = f.getModifiers();
-            if(f.isSynthetic() || Modifier.isStatic(mods))
+            this.type = c;
+            this.kind = kindOf(c);
+            this.adapter = kind == KIND_OBJECT ? adapterOf(c) : null;
+
+            if(adapter != null)
             {
-                continue;
+                this.fields = new FieldPlan[adapter.names.length];
+                for (int i = 0; i < fields.length; i++)
+                {
+                    fields[i] = new FieldPlan(adapter, i);
+                }
             }
+            else if(kind == KIND_OBJECT)
+            {
+                ArrayList<FieldPlan> list = new ArrayList<>();
+                // TODO: this will not pull fields from extended classes
+                Field[] declared = c.getDeclaredFields();
+                for (Field f: declared)
+                {
+                    int mods = f.getModifiers();
+                    if(Modifier.isStatic(mods) || f.isSynthetic())
+                    {
+                        continue;
+                    }
+
+                    if(f.isAnnotationPresent(Ignore.class))
+                    {
+                        continue;
+                    }
+
+                    if(Modifier.isPrivate(mods) || Modifier.isProtected(mods))
+                    {
+                        f.setAccessible(true);
+                    }
 
-            if(f.isAnnotationPresent(Ignore.class))
+                    list.add(new FieldPlan(f, list.size()));
+                }
+                this.fields = list.toArray(new FieldPlan[list.size()]);
+            }
+            else
             {
-                continue;
+                this.fields = new FieldPlan[0];
             }
 
-            if(Modifier.isPrivate(mods) || Modifier.isProtected(mods))
+            String[] fieldNames = new String[fields.length];
+            for (int i = 0; i < fields.length; i++)
             {
-                f.setAccessible(true);
+                fieldNames[i] = fields[i].name;
             }
+            this.names = new NameTable(fieldNames);
 
-            String name = getFieldName(f);
-            Class<?> fc = f.getType();
-
-            try
+            if(kind == KIND_ENUM)
             {
-                if (j.isNull(name) && !fc.isPrimitive())
-                {
-                    f.set(instance, null);
-                }
-                else if (canAssign(fc,String.class))
-                {
-                    f.set(instance, j.optString(name, null));
-                }
-                else if (canAssign(fc,int.class))
-                {
-                    f.setInt(instance, j.optInt(name, 0));
-                }
-                else if (canAssign(fc,Integer.class))
-                {
-                    f.set(instance, j.optInt(name, 0));
-                }
-                else if (canAssign(fc,boolean.class))
-                {
-                    f.setBoolean(instance, j.optBoolean(name, false));
-                }
-                else if (canAssign(fc,Boolean.class))
-                {
-                    f.set(instance, j.optBoolean(name, false) ? Boolean.TRUE : Boolean.FALSE);
-                }
-                else if (canAssign(fc,double.class))
-                {
-                    f.setDouble(instance, j.optDouble(name, 0));
-                }
-                else if (canAssign(fc,Double.class))
-                {
-                    f.set(instance, j.optDouble(name, 0));
-                }
-                else if (canAssign(fc,float.class))
-                {
-                    f.setFloat(instance, (float) j.optDouble(name, 0));
-                }
-                else if (canAssign(fc,Float.class))
+                Object[] constants = c.getEnumConstants();
+                this.enumNames = new String[constants.length];
+                this.enumValues = new HashMap<>(constants.length * 4);
+                for (Object e: constants)
                 {
-                    f.set(instance, (float) j.optDouble(name, 0));
+                    String name = ((Enum)e).name();
+                    try
+                    {
+                        name = getFieldName(c.getField(name));
+                    }
+                    catch (NoSuchFieldException ex)
+                    {
+                        // keep the plain name
+                    }
+
+                    enumNames[((Enum)e).ordinal()] = name;
+                    enumValues.put(name, e);
                 }
-                else if (canAssign(fc,byte.class))
+
+                // plain names win over overrides, same as Enum.valueOf() did
+                for (Object e: constants)
                 {
-                    f.setByte(instance, (byte) j.optInt(name, 0));
+                    enumValues.put(((Enum)e).name(), e);
                 }
-                else if (canAssign(fc,Byte.class))
+            }
+            else
+            {
+                this.enumNames = null;
+                this.enumValues = null;
+            }
+        }
+
+        // recent output size with this class at the root, racy on purpose: it's only a hint
+        int sizeHint = INITIAL_BUFFER_SIZE;
+
+        // the no-arg constructor, looked up and made accessible on first use; racy, every thread
+        // finds the same one
+        private Constructor<?> constructor;
+
+        Object newInstance() throws InstantiationException, IllegalAccessException
+        {
+            if(adapter != null)
+            {
+                return adapter.newInstance();
+            }
+
+            Constructor<?> c = constructor;
+            if(c == null)
+            {
+                try
                 {
-                    f.set(instance, (byte) j.optInt(name, 0));
+                    c = type.getDeclaredConstructor();
                 }
-                else if (canAssign(fc,long.class))
+                catch (NoSuchMethodException e)
                 {
-                    f.setLong(instance, j.optLong(name, 0));
+                    throw new InstantiationException(type.getName());
                 }
-                else if (canAssign(fc,Long.class))
+
+                try
                 {
-                    f.set(instance, j.optLong(name, 0));
+                    c.setAccessible(true);
                 }
-                else if (canAssign(fc,short.class))
+                catch (RuntimeException e)
                 {
-                    f.setShort(instance, (short) j.optInt(name, 0));
+                    // a security manager or a module says no, public ones still work
                 }
-                else if (canAssign(fc,Short.class))
+                constructor = c;
+            }
+
+            try
+            {
+                return c.newInstance();
+            }
+            catch (InvocationTargetException e)
+            {
+                Throwable cause = e.getCause();
+                if(cause instanceof RuntimeException)
                 {
-                    f.set(instance, (short) j.optInt(name, 0));
+                    throw (RuntimeException) cause;
                 }
-                else if (canAssign(fc,char.class))
+                else if(cause instanceof Error)
                 {
-                    f.setChar(instance, (char) j.optInt(name, 0));
+                    throw (Error) cause;
                 }
-                else if (canAssign(fc,Character.class))
-                {
-                    f.set(instance, (char) j.optInt(name, 0));
+
+                InstantiationException failure = new InstantiationException(type.getName());
+                failure.initCause(cause);
+                throw failure;
+            }
+        }
+
+        // follows growth right away and shrinks slowly, so one small output doesn't undo it
+        void observeSize(int size)
+        {
+            int h = sizeHint;
+            sizeHint = size >= h ? size : h - ((h - size) >> 3);
+        }
+
+        // buffer size to start with, a little over the hint
+        int bufferSize()
+        {
+            int h = sizeHint;
+            return h + (h >> 3);
+        }
+    }
+
+    /***********************************************************************************************/
+    // generated adapter of a @GenerateAdapter class: same package, nested class names joined
+    // with '_' and ADAPTER_SUFFIX appended. Null if the processor did not run.
+    @SuppressWarnings("unchecked")
+    private static Adapter<Object> adapterOf(Class<?> c)
+    {
+        if(!c.isAnnotationPresent(GenerateAdapter.class))
+        {
+            return null;
+        }
+
+        String name = c.getName();
+        int dot = name.lastIndexOf('.');
+        name = name.substring(0, dot + 1) + name.substring(dot + 1).replace('$', '_') + ADAPTER_SUFFIX;
+        try
+        {
+            return (Adapter<Object>) Class.forName(name, true, c.getClassLoader()).getDeclaredConstructor().newInstance();
+        }
+        catch (ClassNotFoundException e)
+        {
+            return null;
+        }
+        catch (Exception e)
+        {
+            LOG.log(Level.WARNING, "Cannot create " + name + ", falling back to reflection", e);
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    private static ClassPlan planOf(Class<?> c)
+    {
+        ClassPlan plan = PLANS.get(c);
+        if(plan == null)
+        {
+            // racing threads may build the same plan twice, but for the size hint it's immutable so
+            // either one is fine
+            plan = new ClassPlan(c);
+            ClassPlan prev = PLANS.putIfAbsent(c, plan);
+            if(prev != null)
+            {
+                plan = prev;
+            }
+        }
+
+        return plan;
+    }
+
+    /***********************************************************************************************/
+    private static int kindOf(Class<?> fc)
+    {
+        if(fc == String.class)
+        {
+            return KIND_STRING;
+        }
+        else if(fc == Object.class)
+        {
+            return KIND_ANY;
+        }
+        else if(fc == int.class)
+        {
+            return KIND_INT;
+        }
+        else if(fc == Integer.class)
+        {
+            return KIND_INTEGER;
+        }
+        else if(fc == boolean.class)
+        {
+            return KIND_BOOLEAN;
+        }
+        else if(fc == Boolean.class)
+        {
+            return KIND_BOOLEAN_OBJ;
+        }
+        else if(fc == double.class)
+        {
+            return KIND_DOUBLE;
+        }
+        else if(fc == Double.class)
+        {
+            return KIND_DOUBLE_OBJ;
+        }
+        else if(fc == float.class)
+        {
+            return KIND_FLOAT;
+        }
+        else if(fc == Float.class)
+        {
+            return KIND_FLOAT_OBJ;
+        }
+        else if(fc == byte.class)
+        {
+            return KIND_BYTE;
+        }
+        else if(fc == Byte.class)
+        {
+            return KIND_BYTE_OBJ;
+        }
+        else if(fc == long.class)
+        {
+            return KIND_LONG;
+        }
+        else if(fc == Long.class)
+        {
+            return KIND_LONG_OBJ;
+        }
+        else if(fc == short.class)
+        {
+            return KIND_SHORT;
+        }
+        else if(fc == Short.class)
+        {
+            return KIND_SHORT_OBJ;
+        }
+        else if(fc == char.class)
+        {
+            return KIND_CHAR;
+        }
+        else if(fc == Character.class)
+        {
+            return KIND_CHARACTER;
+        }
+        else if(canAssign(Number.class, fc))
+        {
+            return KIND_NUMBER;
+        }
+        else if(fc.isEnum())
+        {
+            return KIND_ENUM;
+        }
+        else if(fc.isArray())
+        {
+            return KIND_ARRAY;
+        }
+        else if(Collection.class.isAssignableFrom(fc))
+        {
+            return KIND_COLLECTION;
+        }
+        else if(Map.class.isAssignableFrom(fc))
+        {
+            return KIND_MAP;
+        }
+
+        return KIND_OBJECT;
+    }
+
+    /***********************************************************************************************/
+    public static String toJson(Object src)
+    {
+        return toJson(src, false);
+    }
+
+    /***********************************************************************************************/
+    // Same as toJson(), except for arrays and collections whose elements are all objects of one
+    // class: the field names are written once as a header, then every element as an array of
+    // its values in that order, e.g. [["id","name"],[1,"a"],[2,"b"]]. fromJson() reads both.
+    public static String toJsonCompact(Object src)
+    {
+        return toJson(src, true);
+    }
+
+    /***********************************************************************************************/
+    private static String toJson(Object src, boolean positional)
+    {
+        if(src == null)
+        {
+            return null;
+        }
+
+        Metrics m = metrics;
+        long start = started(m, src.getClass());
+        ClassPlan plan = planOf(src.getClass());
+        CharJsonWriter w = charWriter(plan.bufferSize());
+        w.positional = positional;
+
+        try
+        {
+            store(w, src);
+            plan.observeSize(w.size());
+            String json = w.toString();
+            if(m != null)
+            {
+                m.onEncode(src.getClass(), System.nanoTime() - start, w.size());
+            }
+            return json;
+        }
+        catch (Exception e)
+        {
+            encodeFailed(src.getClass(), e);
+            e.printStackTrace();
+            return null;
+        }
+        finally
+        {
+            release(w);
+        }
+    }
+
+    /***********************************************************************************************/
+    // same as toJson(), encoded as UTF-8
+    public static byte[] toJsonBytes(Object src)
+    {
+        return toJsonBytes(src, false);
+    }
+
+    /***********************************************************************************************/
+    // same as toJsonCompact(), encoded as UTF-8
+    public static byte[] toJsonCompactBytes(Object src)
+    {
+        return toJsonBytes(src, true);
+    }
+
+    /***********************************************************************************************/
+    private static byte[] toJsonBytes(Object src, boolean positional)
+    {
+        if(src == null)
+        {
+            return null;
+        }
+
+        Metrics m = metrics;
+        long start = started(m, src.getClass());
+        ClassPlan plan = planOf(src.getClass());
+        ByteJsonWriter w = byteWriter(plan.bufferSize());
+        w.positional = positional;
+
+        try
+        {
+            store(w, src);
+            plan.observeSize(w.size());
+            byte[] json = w.toByteArray();
+            if(m != null)
+            {
+                m.onEncode(src.getClass(), System.nanoTime() - start, w.size());
+            }
+            return json;
+        }
+        catch (Exception e)
+        {
+            encodeFailed(src.getClass(), e);
+            e.printStackTrace();
+            return null;
+        }
+        finally
+        {
+            release(w);
+        }
+    }
+
+    /***********************************************************************************************/
+    // this thread's idle writer if there is one and the output is expected to fit the pool
+    private static CharJsonWriter charWriter(int size)
+    {
+        CharJsonWriter w = CHAR_WRITERS.get();
+        if(w == null || size > POOLED_BUFFER_LIMIT)
+        {
+            return new CharJsonWriter(size);
+        }
+
+        CHAR_WRITERS.set(null);
+        w.reset(size);
+        return w;
+    }
+
+    /***********************************************************************************************/
+    private static void release(CharJsonWriter w)
+    {
+        // huge buffers are not kept around
+        if(w.capacity() <= POOLED_BUFFER_LIMIT)
+        {
+            CHAR_WRITERS.set(w);
+        }
+    }
+
+    /***********************************************************************************************/
+    private static ByteJsonWriter byteWriter(int size)
+    {
+        ByteJsonWriter w = BYTE_WRITERS.get();
+        if(w == null || size > POOLED_BUFFER_LIMIT)
+        {
+            return new ByteJsonWriter(size);
+        }
+
+        BYTE_WRITERS.set(null);
+        w.reset(size);
+        return w;
+    }
+
+    /***********************************************************************************************/
+    private static void release(ByteJsonWriter w)
+    {
+        if(w.capacity() <= POOLED_BUFFER_LIMIT)
+        {
+            BYTE_WRITERS.set(w);
+        }
+    }
+
+    /***********************************************************************************************/
+    // writes UTF-8 json to the stream, nothing for null; the stream is neither flushed nor closed
+    public static void toJson(Object src, OutputStream out) throws IOException
+    {
+        toJson(src, out, false);
+    }
+
+    /***********************************************************************************************/
+    // same as toJsonCompact(), to the stream
+    public static void toJsonCompact(Object src, OutputStream out) throws IOException
+    {
+        toJson(src, out, true);
+    }
+
+    /***********************************************************************************************/
+    private static void toJson(Object src, OutputStream out, boolean positional) throws IOException
+    {
+        if(src == null)
+        {
+            return;
+        }
+
+        Metrics m = metrics;
+        long start = started(m, src.getClass());
+        ByteJsonWriter w = new ByteJsonWriter(out, STREAM_BUFFER_SIZE);
+        w.positional = positional;
+
+        try
+        {
+            store(w, src);
+            w.flush();
+        }
+        catch (IllegalAccessException e)
+        {
+            encodeFailed(src.getClass(), e);
+            throw new IOException(e);
+        }
+        catch (Throwable t)
+        {
+            // unchecked ones and errors too, rethrown as they are
+            encodeFailed(src.getClass(), t);
+            throw t;
+        }
+
+        if(m != null)
+        {
+            m.onEncode(src.getClass(), System.nanoTime() - start, w.written());
+        }
+    }
+
+    /***********************************************************************************************/
+    // metrics collection, null to stop it. Meant to be set once at startup.
+    public static void setMetrics(Metrics m)
+    {
+        metrics = m;
+    }
+
+    /***********************************************************************************************/
+    // start time of a call with metrics on, 0 without. The plan cache is reported here for the
+    // class at the root, once per call, so that the lookups further down never check the metrics.
+    private static long started(Metrics m, Class<?> type)
+    {
+        if(m == null)
+        {
+            return 0;
+        }
+
+        boolean hit = PLANS.containsKey(type);
+        if(!hit)
+        {
+            // decoding an array only looks up its elements, built here the next call is a hit
+            planOf(type);
+        }
+        m.onPlanLookup(type, hit);
+        return System.nanoTime();
+    }
+
+    /***********************************************************************************************/
+    private static void encodeFailed(Class<?> type, Throwable t)
+    {
+        Metrics m = metrics;
+        if(m != null)
+        {
+            m.onEncodeFailure(type, t);
+        }
+    }
+
+    /***********************************************************************************************/
+    private static void decodeFailed(Class<?> type, Throwable t)
+    {
+        Metrics m = metrics;
+        if(m != null)
+        {
+            m.onDecodeFailure(type, t);
+        }
+    }
+
+    /***********************************************************************************************/
+    private static void store(JsonWriter w, Object src) throws IOException, IllegalAccessException
+    {
+        Class<?> fc = src.getClass();
+        if(fc.isArray())
+        {
+            storeArray(w, src);
+        }
+        else if (Collection.class.isAssignableFrom(fc))
+        {
+            storeCollection(w, (Collection)src);
+        }
+        else if (Map.class.isAssignableFrom(fc))
+        {
+            storeMap(w, (Map<?, ?>)src);
+        }
+        else
+        {
+            storeObject(w, src);
+        }
+    }
+
+    /***********************************************************************************************/
+    private static void storeObject(JsonWriter w, Object src) throws IOException, IllegalAccessException
+    {
+        if(src == null)
+        {
+            w.write(NULL);
+            return;
+        }
+
+        // handle primitives
+        ClassPlan plan = planOf(src.getClass());
+        if(plan.kind != KIND_OBJECT)
+        {
+            storeField(w, plan.kind, false, src);
+            return;
+        }
+
+        // composite object
+        w.write(OBJECT_START);
+
+        FieldPlan[] fields = plan.fields;
+        for (int i = 0; i < fields.length; i++)
+        {
+            FieldPlan f = fields[i];
+
+            if(i > 0)
+            {
+                w.write(DELIMITER);
+            }
+
+            w.write(QUOTE);
+            w.write(f.name);
+            w.write(QUOTE_END);
+            storeValue(w, f, src);
+        }
+
+        w.write(OBJECT_END);
+    }
+
+    /***********************************************************************************************/
+    private static void storeValue(JsonWriter w, FieldPlan f, Object src) throws IOException, IllegalAccessException
+    {
+        // primitives are read and written without boxing
+        switch(f.kind)
+        {
+            case KIND_INT:
+            case KIND_SHORT:
+            case KIND_BYTE:
+                w.writeInt(f.access.getInt(src));
+                break;
+
+            case KIND_LONG:
+                w.writeLong(f.access.getLong(src));
+                break;
+
+            case KIND_DOUBLE:
+                w.writeDouble(f.access.getDouble(src));
+                break;
+
+            case KIND_FLOAT:
+                w.writeFloat(f.access.getFloat(src));
+                break;
+
+            case KIND_BOOLEAN:
+                w.writeBoolean(f.access.getBoolean(src));
+                break;
+
+            default:
+                storeField(w, f.kind, f.dontQuote, f.access.get(src));
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    private static void storeField(JsonWriter w, int kind, boolean dontQuote, Object value) throws IOException, IllegalAccessException
+    {
+        if(value == null)
+        {
+            w.write(NULL);
+            return;
+        }
+
+        switch (kind)
+        {
+            case KIND_STRING:
+                if(dontQuote)
+                {
+                    w.write((String)value);
+                }
+                else
+                {
+                    w.writeString((String)value);
+                }
+                break;
+
+            case KIND_CHAR:
+            case KIND_CHARACTER:
+                w.writeString(value.toString());
+                break;
+
+            case KIND_ENUM:
+                w.write(QUOTE);
+                w.write(enumName((Enum)value));
+                w.write(QUOTE);
+                break;
+
+            case KIND_ARRAY:
+                storeArray(w, value);
+                break;
+
+            case KIND_COLLECTION:
+                storeCollection(w, (Collection)value);
+                break;
+
+            case KIND_MAP:
+                storeMap(w, (Map<?, ?>)value);
+                break;
+
+            case KIND_ANY:
+            case KIND_OBJECT:
+                storeObject(w, value);
+                break;
+
+            case KIND_INT:
+            case KIND_INTEGER:
+            case KIND_SHORT:
+            case KIND_SHORT_OBJ:
+            case KIND_BYTE:
+            case KIND_BYTE_OBJ:
+                w.writeInt(((Number)value).intValue());
+                break;
+
+            case KIND_LONG:
+            case KIND_LONG_OBJ:
+                w.writeLong((Long)value);
+                break;
+
+            case KIND_DOUBLE:
+            case KIND_DOUBLE_OBJ:
+                w.writeDouble((Double)value);
+                break;
+
+            case KIND_FLOAT:
+            case KIND_FLOAT_OBJ:
+                w.writeFloat((Float)value);
+                break;
+
+            case KIND_BOOLEAN:
+            case KIND_BOOLEAN_OBJ:
+                w.writeBoolean((Boolean)value);
+                break;
+
+            default:
+                // other numbers
+                String v = value.toString();
+                w.write(v);
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    private static String getFieldName(Field f)
+    {
+        String name = f.getName();
+
+        if(!f.isAnnotationPresent(NameOverride.class))
+        {
+            return name;
+        }
+
+        Annotation[] annotations = f.getDeclaredAnnotations();
+        for(Annotation a: annotations)
+        {
+            if(a instanceof NameOverride)
+            {
+                name = ((NameOverride)a).value();
+                break;
+            }
+        }
+
+        return name;
+    }
+
+    /***********************************************************************************************/
+    private static void storeArray(JsonWriter w, Object fc) throws IOException, IllegalAccessException
+    {
+        if(fc == null)
+        {
+            w.write(NULL);
+            return;
+        }
+
+        w.write(ARRAY_START);
+
+        int kind = planOf(fc.getClass().getComponentType()).kind;
+        int length = Array.getLength(fc);
+        if(kind == KIND_OBJECT && storeRows(w, Arrays.asList((Object[]) fc)))
+        {
+            kind = KIND_ROW;
+        }
+
+        if(storeInParallel(w, length))
+        {
+            storeChunks(w, fc, kind, length);
+        }
+        else
+        {
+            storeArrayRange(w, fc, kind, 0, length);
+        }
+
+        w.write(ARRAY_END);
+    }
+
+    /***********************************************************************************************/
+    // elements [from, to) of the array, comma separated
+    private static void storeArrayRange(JsonWriter w, Object fc, int kind, int from, int to) throws IOException, IllegalAccessException
+    {
+        // primitive arrays are walked directly, nothing is boxed
+        switch (kind)
+        {
+            case KIND_INT:
+            {
+                int[] a = (int[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    w.writeInt(a[j]);
+                }
+                break;
+            }
+
+            case KIND_LONG:
+            {
+                long[] a = (long[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    w.writeLong(a[j]);
+                }
+                break;
+            }
+
+            case KIND_DOUBLE:
+            {
+                double[] a = (double[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    w.writeDouble(a[j]);
+                }
+                break;
+            }
+
+            case KIND_FLOAT:
+            {
+                float[] a = (float[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    w.writeFloat(a[j]);
+                }
+                break;
+            }
+
+            case KIND_SHORT:
+            {
+                short[] a = (short[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    w.writeInt(a[j]);
+                }
+                break;
+            }
+
+            case KIND_BYTE:
+            {
+                byte[] a = (byte[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    w.writeInt(a[j]);
+                }
+                break;
+            }
+
+            case KIND_BOOLEAN:
+            {
+                boolean[] a = (boolean[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    w.writeBoolean(a[j]);
+                }
+                break;
+            }
+
+            case KIND_CHAR:
+            {
+                char[] a = (char[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    storeField(w, KIND_CHAR, false, a[j]);
+                }
+                break;
+            }
+
+            case KIND_INTEGER:
+            case KIND_LONG_OBJ:
+            case KIND_DOUBLE_OBJ:
+            case KIND_FLOAT_OBJ:
+            case KIND_SHORT_OBJ:
+            case KIND_BYTE_OBJ:
+            case KIND_BOOLEAN_OBJ:
+            case KIND_CHARACTER:
+            case KIND_STRING:
+            case KIND_ENUM:
+            {
+                // final element types, the component kind holds for every element
+                Object[] a = (Object[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    storeField(w, kind, false, a[j]);
+                }
+                break;
+            }
+
+            case KIND_ROW:
+            {
+                Object[] a = (Object[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    storeRow(w, a[j]);
+                }
+                break;
+            }
+
+            default:
+            {
+                Object[] a = (Object[]) fc;
+                for (int j = from; j < to; j++)
+                {
+                    if (j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+                    storeObject(w, a[j]);
+                }
+                break;
+            }
+        }
+    }
+
+    /***********************************************************************************************/
+    private static void storeCollection(JsonWriter w, Collection list) throws IOException, IllegalAccessException
+    {
+        if(list == null)
+        {
+            w.write(NULL);
+            return;
+        }
+
+        w.write(ARRAY_START);
+
+        int kind = storeRows(w, list) ? KIND_ROW : KIND_OBJECT;
+        if(list instanceof RandomAccess && storeInParallel(w, list.size()))
+        {
+            storeChunks(w, list, kind, list.size());
+        }
+        else
+        {
+            int j = 0;
+            for (Object o: list)
+            {
+                if(j > 0)
+                {
+                    w.write(DELIMITER);
+                }
+
+                if(kind == KIND_ROW)
+                {
+                    storeRow(w, o);
+                }
+                else
+                {
+                    storeObject(w, o);
+                }
+                j++;
+            }
+        }
+
+        w.write(ARRAY_END);
+    }
+
+    /***********************************************************************************************/
+    // In positional mode, when every element that is not null is an object of one class: writes
+    // the header of field names and its delimiter, the elements then go through storeRow().
+    // Subclasses and other element types are left to storeObject().
+    private static boolean storeRows(JsonWriter w, Iterable<?> elements) throws IOException
+    {
+        if(!w.positional)
+        {
+            return false;
+        }
+
+        Class<?> type = null;
+        for (Object o: elements)
+        {
+            if(o == null)
+            {
+                continue;
+            }
+            else if(type == null)
+            {
+                type = o.getClass();
+            }
+            else if(o.getClass() != type)
+            {
+                return false;
+            }
+        }
+
+        if(type == null || planOf(type).kind != KIND_OBJECT)
+        {
+            return false;
+        }
+
+        FieldPlan[] fields = planOf(type).fields;
+        w.write(ARRAY_START);
+        for (int i = 0; i < fields.length; i++)
+        {
+            if(i > 0)
+            {
+                w.write(DELIMITER);
+            }
+
+            w.write(QUOTE);
+            w.write(fields[i].name);
+            w.write(QUOTE);
+        }
+        w.write(ARRAY_END);
+        w.write(DELIMITER);
+        return true;
+    }
+
+    /***********************************************************************************************/
+    // the values of an object in the order of its header
+    private static void storeRow(JsonWriter w, Object src) throws IOException, IllegalAccessException
+    {
+        if(src == null)
+        {
+            w.write(NULL);
+            return;
+        }
+
+        w.write(ARRAY_START);
+
+        FieldPlan[] fields = planOf(src.getClass()).fields;
+        for (int i = 0; i < fields.length; i++)
+        {
+            if(i > 0)
+            {
+                w.write(DELIMITER);
+            }
+            storeValue(w, fields[i], src);
+        }
+
+        w.write(ARRAY_END);
+    }
+
+    /***********************************************************************************************/
+    // Arrays and random access lists of at least that many elements (64k is a good start) are
+    // cut into chunks that are stored on the workers, each into its own buffer, and then appended
+    // in order. The output is the same as a sequential store. 0, the default, turns it off.
+    public static void setParallelEncodeThreshold(int elements)
+    {
+        parallelEncodeThreshold = elements;
+    }
+
+    /***********************************************************************************************/
+    // Top level arrays of in memory input of at least that many chars or bytes (1MB is a good
+    // start) are split up and their elements bound on the workers. 0, the default, turns it off.
+    public static void setParallelDecodeThreshold(int length)
+    {
+        parallelDecodeThreshold = length;
+    }
+
+    /***********************************************************************************************/
+    // where parallel stores and decodes run, and fromJsonLines() without an executor; null for
+    // the common ForkJoinPool
+    public static void setParallelExecutor(Executor executor)
+    {
+        parallelExecutor = executor;
+    }
+
+    /***********************************************************************************************/
+    // chunks are never split again, whatever they hold is stored sequentially; neither is anything
+    // stored on a ForkJoinPool worker
+    private static boolean storeInParallel(JsonWriter w, int size)
+    {
+        int threshold = parallelEncodeThreshold;
+        return threshold > 0 && size >= threshold && !w.chunk && Runtime.getRuntime().availableProcessors() > 1 &&
+                !onForkJoinWorker();
+    }
+
+    /***********************************************************************************************/
+    // elements [0, size) of an array or a random access list, stored on the workers. A couple of
+    // chunks per worker are in flight, the rest is submitted as the first ones are appended.
+    private static void storeChunks(JsonWriter w, Object src, int kind, int size) throws IOException, IllegalAccessException
+    {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int chunkSize = Math.max(PARALLEL_CHUNK_MIN, size / (processors * 4));
+        Executor executor = workers();
+        ArrayDeque<Future<JsonWriter>> pending = new ArrayDeque<>();
+        int next = 0;
+        try
+        {
+            while(next < size || !pending.isEmpty())
+            {
+                while(next < size && pending.size() < processors * 2)
+                {
+                    int end = Math.min(size, next + chunkSize);
+                    pending.add(submit(executor, new StoreTask(w, src, kind, next, end)));
+                    next = end;
+                }
+
+                // every chunk but the first starts with its delimiter
+                w.append(pending.peek().get());
+                pending.poll();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            cancel(pending);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e)
+        {
+            cancel(pending);
+            throw chunkFailure(e);
+        }
+    }
+
+    /***********************************************************************************************/
+    // a plain Executor has no submit()
+    private static <V> Future<V> submit(Executor executor, Callable<V> task)
+    {
+        FutureTask<V> f = new FutureTask<>(task);
+        executor.execute(f);
+        return f;
+    }
+
+    /***********************************************************************************************/
+    private static void cancel(Collection<? extends Future<?>> chunks)
+    {
+        for (Future<?> f: chunks)
+        {
+            f.cancel(true);
+        }
+    }
+
+    /***********************************************************************************************/
+    // what a chunk on the workers failed with, unchecked ones are rethrown as they are
+    private static IOException chunkFailure(ExecutionException e)
+    {
+        Throwable cause = e.getCause();
+        if(cause instanceof RuntimeException)
+        {
+            throw (RuntimeException) cause;
+        }
+        else if(cause instanceof Error)
+        {
+            throw (Error) cause;
+        }
+
+        return cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+
+    /***********************************************************************************************/
+    // one chunk of storeChunks(), into a fresh buffer
+    private final static class StoreTask implements Callable<JsonWriter>
+    {
+        private final JsonWriter parent;
+        private final Object src;
+        private final int kind;
+        private final int from;
+        private final int to;
+
+        StoreTask(JsonWriter parent, Object src, int kind, int from, int to)
+        {
+            this.parent = parent;
+            this.src = src;
+            this.kind = kind;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public JsonWriter call() throws IOException, IllegalAccessException
+        {
+            JsonWriter w = parent.newChunk((to - from) * 8);
+            if(from > 0)
+            {
+                w.write(DELIMITER);
+            }
+
+            if(src instanceof List)
+            {
+                List<?> list = (List<?>) src;
+                for (int j = from; j < to; j++)
+                {
+                    if(j > from)
+                    {
+                        w.write(DELIMITER);
+                    }
+
+                    if(kind == KIND_ROW)
+                    {
+                        storeRow(w, list.get(j));
+                    }
+                    else
+                    {
+                        storeObject(w, list.get(j));
+                    }
+                }
+            }
+            else
+            {
+                storeArrayRange(w, src, kind, from, to);
+            }
+
+            return w;
+        }
+    }
+
+    /***********************************************************************************************/
+    // keys are written as strings, enums by their json name so that they come back
+    private static void storeMap(JsonWriter w, Map<?, ?> map) throws IOException, IllegalAccessException
+    {
+        if(map == null)
+        {
+            w.write(NULL);
+            return;
+        }
+
+        w.write(OBJECT_START);
+
+        int j = 0;
+        for (Map.Entry<?, ?> e: map.entrySet())
+        {
+            if(j > 0)
+            {
+                w.write(DELIMITER);
+            }
+
+            Object k = e.getKey();
+            w.writeString(k instanceof Enum ? enumName((Enum)k) : String.valueOf(k));
+            w.write(NAME_DELIMITER);
+
+            storeObject(w, e.getValue());
+            j++;
+        }
+
+        w.write(OBJECT_END);
+    }
+
+    /***********************************************************************************************/
+    public static <T> T fromJson(byte[] json, Class<T> classOfT)
+    {
+        if(json == null)
+        {
+            return null;
+        }
+
+        return fromJson(json, 0, json.length, classOfT);
+    }
+
+    /***********************************************************************************************/
+    // UTF-8 json in json[offset, offset + length), decoded in place
+    public static <T> T fromJson(byte[] json, int offset, int length, Class<T> classOfT)
+    {
+        if(json == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return decode(new ByteJsonReader(json, offset, length), classOfT, null, length);
+        }
+        catch (Exception e)
+        {
+            decodeFailed(classOfT, e);
+            LOG.severe("Error fromJson on=(" + new String(json, offset, length, UTF_8) + ") class= " + classOfT);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    public static <T> T fromJson(String json, Class<T> classOfT)
+    {
+        if(json == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return decode(textReader(json, classOfT), classOfT, null, json.length());
+        }
+        catch (Exception e)
+        {
+            decodeFailed(classOfT, e);
+            LOG.severe("Error fromJson on=(" + json + ") class= " + classOfT);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    // only the fields in the projection are read, everything else is skipped over without being
+    // decoded. A view class that declares just the fields needed does the same for plain fromJson().
+    public static <T> T fromJson(byte[] json, Class<T> classOfT, Projection projection)
+    {
+        if(json == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return decode(new ByteJsonReader(json, 0, json.length), classOfT, projection, json.length);
+        }
+        catch (Exception e)
+        {
+            decodeFailed(classOfT, e);
+            LOG.severe("Error fromJson on=(" + new String(json, UTF_8) + ") class= " + classOfT);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    // same as fromJson(byte[], Class, Projection) for text
+    public static <T> T fromJson(String json, Class<T> classOfT, Projection projection)
+    {
+        if(json == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return decode(textReader(json, classOfT), classOfT, projection, json.length());
+        }
+        catch (Exception e)
+        {
+            decodeFailed(classOfT, e);
+            LOG.severe("Error fromJson on=(" + json + ") class= " + classOfT);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    // Fields to read, as dotted paths of json names: "id", "owner.name", "items.price". Paths go
+    // through arrays and lists to their elements. A field on a path is read as a whole when the
+    // path ends at it, otherwise only the fields below it are. Fields outside of the projection
+    // are left as the constructor set them. Built once per class and paths, can be shared.
+    public final static class Projection
+    {
+        // the field is read as a whole
+        private final static Projection ALL = new Projection(0);
+
+        // by field index in the class plan, null for fields that are skipped
+        private final Projection[] fields;
+
+        private Projection(int fieldCount)
+        {
+            this.fields = new Projection[fieldCount];
+        }
+
+        // throws IllegalArgumentException for paths that don't resolve to fields
+        public static Projection of(Class<?> classOfT, String... paths)
+        {
+            Class<?> c = elementClass(classOfT);
+            Projection p = new Projection(planOf(c).fields.length);
+            for (String path: paths)
+            {
+                p.add(c, path.split("\\."), 0, path);
+            }
+
+            return p;
+        }
+
+        private void add(Class<?> c, String[] steps, int i, String path)
+        {
+            ClassPlan plan = planOf(c);
+            String step = steps[i];
+            int index = plan.names.find(step.toCharArray(), step.length());
+            if(index < 0)
+            {
+                throw new IllegalArgumentException("No field " + step + " in " + c.getName() + " for " + path);
+            }
+
+            if(i == steps.length - 1 || fields[index] == ALL)
+            {
+                fields[index] = ALL;
+                return;
+            }
+
+            FieldPlan fp = plan.fields[index];
+            Class<?> next = elementClass(fp.kind == KIND_COLLECTION ? fp.elementType : fp.type);
+            if(next == null || planOf(next).kind != KIND_OBJECT)
+            {
+                throw new IllegalArgumentException("No fields below " + step + " in " + c.getName() + " for " + path);
+            }
+
+            if(fields[index] == null)
+            {
+                fields[index] = new Projection(planOf(next).fields.length);
+            }
+            fields[index].add(next, steps, i + 1, path);
+        }
+
+        // what the fields are looked up in: the elements for arrays
+        private static Class<?> elementClass(Class<?> c)
+        {
+            while(c != null && c.isArray())
+            {
+                c = c.getComponentType();
+            }
+
+            return c;
+        }
+    }
+
+    /***********************************************************************************************/
+    // UTF-8 json, read through a small buffer so the text is never held as a whole. Malformed
+    // json gives null like the other variants, failures of the stream are thrown. Not closed.
+    public static <T> T fromJson(InputStream in, Class<T> classOfT) throws IOException
+    {
+        if(in == null)
+        {
+            return null;
+        }
+
+        return parseStream(new ByteJsonReader(in), classOfT);
+    }
+
+    /***********************************************************************************************/
+    // same as fromJson(InputStream, Class) for a blocking channel
+    public static <T> T fromJson(ReadableByteChannel in, Class<T> classOfT) throws IOException
+    {
+        if(in == null)
+        {
+            return null;
+        }
+
+        return parseStream(new ByteJsonReader(in), classOfT);
+    }
+
+    /***********************************************************************************************/
+    // same as fromJson(InputStream, Class) for text
+    public static <T> T fromJson(Reader in, Class<T> classOfT) throws IOException
+    {
+        if(in == null)
+        {
+            return null;
+        }
+
+        return parseStream(new CharJsonReader(in), classOfT);
+    }
+
+    /***********************************************************************************************/
+    // indexes the UTF-8 json without decoding it, values are only decoded when they are asked for
+    // through the returned view. Null for malformed json, the same as fromJson().
+    public static Node parseLazy(byte[] json)
+    {
+        if(json == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return new Node(JsonTape.index(json, 0, json.length), 0);
+        }
+        catch (Exception e)
+        {
+            LOG.severe("Error parseLazy on=(" + new String(json, UTF_8) + ")");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    // same as parseLazy(byte[]) for text
+    public static Node parseLazy(String json)
+    {
+        if(json == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return new Node(JsonTape.index(json.toCharArray()), 0);
+        }
+        catch (Exception e)
+        {
+            LOG.severe("Error parseLazy on=(" + json + ")");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    // A value in a document indexed by parseLazy(). Members and elements are found through the
+    // index, nothing is decoded until one of the as...() calls. A missing member or element is a
+    // node too, so calls can be chained: it reads as null, or zero, the same as a missing field in
+    // fromJson(). Immutable, can be shared between threads.
+    public final static class Node
+    {
+        private final JsonTape tape;
+        // -1 when missing
+        private final int index;
+
+        private Node(JsonTape tape, int index)
+        {
+            this.tape = tape;
+            this.index = index;
+        }
+
+        public boolean exists()
+        {
+            return index >= 0;
+        }
+
+        public boolean isNull()
+        {
+            return index < 0 || tape.type(index) == 'n';
+        }
+
+        public boolean isObject()
+        {
+            return index >= 0 && tape.type(index) == OBJECT_START;
+        }
+
+        public boolean isArray()
+        {
+            return index >= 0 && tape.type(index) == ARRAY_START;
+        }
+
+        // members of an object or elements of an array, 0 for anything else
+        public int size()
+        {
+            return index < 0 ? 0 : tape.count(index);
+        }
+
+        // member of an object, the last one if the name repeats
+        public Node get(String name)
+        {
+            return new Node(tape, index < 0 ? -1 : tape.member(index, name));
+        }
+
+        // element of an array, or member of an object in document order
+        public Node get(int i)
+        {
+            return new Node(tape, index < 0 ? -1 : tape.child(index, i));
+        }
+
+        // scalars as their text, objects and arrays as their json, like @DontQuote fields
+        public String asString()
+        {
+            if(index < 0)
+            {
+                return null;
+            }
+
+            try
+            {
+                return tape.reader(index).nextString();
+            }
+            catch (IOException e)
+            {
+                LOG.log(Level.SEVERE, "Error reading string", e);
+                return null;
+            }
+        }
+
+        public long asLong()
+        {
+            if(index < 0)
+            {
+                return 0;
+            }
+
+            try
+            {
+                return tape.reader(index).nextLong();
+            }
+            catch (IOException e)
+            {
+                LOG.log(Level.SEVERE, "Error reading long", e);
+                return 0;
+            }
+        }
+
+        public int asInt()
+        {
+            if(index < 0)
+            {
+                return 0;
+            }
+
+            try
+            {
+                return tape.reader(index).nextInt();
+            }
+            catch (IOException e)
+            {
+                LOG.log(Level.SEVERE, "Error reading int", e);
+                return 0;
+            }
+        }
+
+        public double asDouble()
+        {
+            if(index < 0)
+            {
+                return 0;
+            }
+
+            try
+            {
+                return tape.reader(index).nextDouble();
+            }
+            catch (IOException e)
+            {
+                LOG.log(Level.SEVERE, "Error reading double", e);
+                return 0;
+            }
+        }
+
+        public boolean asBoolean()
+        {
+            if(index < 0)
+            {
+                return false;
+            }
+
+            try
+            {
+                return tape.reader(index).nextBoolean();
+            }
+            catch (IOException e)
+            {
+                LOG.log(Level.SEVERE, "Error reading boolean", e);
+                return false;
+            }
+        }
+
+        // binds the value the same way fromJson() does
+        public <T> T as(Class<T> classOfT)
+        {
+            if(index < 0)
+            {
+                return null;
+            }
+
+            try
+            {
+                return parse(tape.reader(index), classOfT);
+            }
+            catch (Exception e)
+            {
+                LOG.severe("Error binding lazy value class= " + classOfT);
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        // json of the value as it is in the document
+        @Override
+        public String toString()
+        {
+            if(index < 0)
+            {
+                return "null";
+            }
+
+            try
+            {
+                return tape.reader(index).nextRaw();
+            }
+            catch (IOException e)
+            {
+                return "null";
+            }
+        }
+    }
+
+    /***********************************************************************************************/
+    // walks a top level json array one element at a time, each one can be collected as soon as
+    // the caller is done with it. Errors, malformed json included, come as IllegalStateException
+    // from the iterator. The stream is not closed.
+    public static <T> Iterator<T> iterate(InputStream in, Class<T> classOfT)
+    {
+        return new ElementIterator<>(new ByteJsonReader(in), classOfT);
+    }
+
+    /***********************************************************************************************/
+    // same as iterate(InputStream, Class) for text
+    public static <T> Iterator<T> iterate(Reader in, Class<T> classOfT)
+    {
+        return new ElementIterator<>(new CharJsonReader(in), classOfT);
+    }
+
+    /***********************************************************************************************/
+    // json lines (ndjson): one toJson() record per line, all in one buffer
+    public static byte[] toJsonLines(Iterable<?> src)
+    {
+        if(src == null)
+        {
+            return null;
+        }
+
+        ByteJsonWriter w = byteWriter(4096);
+
+        try
+        {
+            storeLines(w, src);
+            return w.toByteArray();
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+        finally
+        {
+            release(w);
+        }
+    }
+
+    /***********************************************************************************************/
+    // same as toJsonLines(Iterable) written to the stream; the stream is neither flushed nor closed
+    public static void toJsonLines(Iterable<?> src, OutputStream out) throws IOException
+    {
+        if(src == null)
+        {
+            return;
+        }
+
+        ByteJsonWriter w = new ByteJsonWriter(out, STREAM_BUFFER_SIZE);
+
+        try
+        {
+            storeLines(w, src);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IOException(e);
+        }
+
+        w.flush();
+    }
+
+    /***********************************************************************************************/
+    private static void storeLines(JsonWriter w, Iterable<?> src) throws IOException, IllegalAccessException
+    {
+        for (Object o: src)
+        {
+            if(o == null)
+            {
+                w.write(NULL);
+            }
+            else
+            {
+                store(w, o);
+            }
+
+            w.write(LINE_END);
+        }
+    }
+
+    /***********************************************************************************************/
+    // json lines decoded in parallel on the workers, in input order. Blank lines are skipped,
+    // malformed ones give a null element.
+    public static <T> List<T> fromJsonLines(byte[] json, Class<T> classOfT)
+    {
+        return fromJsonLines(json, classOfT, workers(), true);
+    }
+
+    /***********************************************************************************************/
+    // same as fromJsonLines(byte[], Class) on the given executor (a ForkJoinPool works fine);
+    // without keepOrder batches are appended in the order they complete
+    public static <T> List<T> fromJsonLines(byte[] json, Class<T> classOfT, Executor executor, boolean keepOrder)
+    {
+        if(json == null)
+        {
+            return null;
+        }
+
+        LinesCollector<T> collector = new LinesCollector<>(classOfT, executor, keepOrder);
+        try
+        {
+            collector.submit(json, 0, json.length);
+            return collector.collect();
+        }
+        catch (InterruptedIOException e)
+        {
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    // same as fromJsonLines(byte[], Class, Executor, boolean), the stream is read in large
+    // chunks cut at line boundaries and each chunk is decoded while the next one is read
+    public static <T> List<T> fromJsonLines(InputStream in, Class<T> classOfT, Executor executor, boolean keepOrder) throws IOException
+    {
+        if(in == null)
+        {
+            return null;
+        }
+
+        LinesCollector<T> collector = new LinesCollector<>(classOfT, executor, keepOrder);
+        byte[] chunk = new byte[LINES_CHUNK_SIZE];
+        int filled = 0;
+        for(;;)
+        {
+            int n = in.read(chunk, filled, chunk.length - filled);
+            if(n < 0)
+            {
+                collector.submit(chunk, 0, filled);
+                break;
+            }
+
+            filled += n;
+            if(filled < chunk.length)
+            {
+                continue;
+            }
+
+            int cut = filled;
+            while(cut > 0 && chunk[cut - 1] != LINE_END)
+            {
+                cut--;
+            }
+
+            byte[] next;
+            if(cut == 0)
+            {
+                // a single line longer than the chunk, keep reading it
+                next = new byte[chunk.length * 2];
+                System.arraycopy(chunk, 0, next, 0, filled);
+            }
+            else
+            {
+                collector.submit(chunk, 0, cut);
+                next = new byte[Math.max(LINES_CHUNK_SIZE, (filled - cut) * 2)];
+                System.arraycopy(chunk, cut, next, 0, filled - cut);
+                filled -= cut;
+            }
+            chunk = next;
+        }
+
+        return collector.collect();
+    }
+
+    /***********************************************************************************************/
+    private static Executor workers()
+    {
+        Executor executor = parallelExecutor;
+        return executor != null ? executor : defaultWorkers();
+    }
+
+    /***********************************************************************************************/
+    // ForkJoinPool.commonPool() is Java 8 and Android 5, so it is looked up by name
+    private static synchronized Executor defaultWorkers()
+    {
+        if(defaultWorkers == null)
+        {
+            try
+            {
+                defaultWorkers = (Executor) Class.forName("java.util.concurrent.ForkJoinPool").getMethod("commonPool").invoke(null);
+            }
+            catch (Exception e)
+            {
+                defaultWorkers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+                {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, TAG + "-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            }
+        }
+
+        return defaultWorkers;
+    }
+
+    /***********************************************************************************************/
+    private static Class<?> forkJoinWorkerClass()
+    {
+        try
+        {
+            return Class.forName("java.util.concurrent.ForkJoinWorkerThread");
+        }
+        catch (ClassNotFoundException e)
+        {
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    // A ForkJoinPool worker that blocks on our chunks can starve its own pool, or deadlock it when
+    // every worker is waiting, so calls made from one of them do not go parallel.
+    private static boolean onForkJoinWorker()
+    {
+        return FORK_JOIN_WORKER != null && FORK_JOIN_WORKER.isInstance(Thread.currentThread());
+    }
+
+    /***********************************************************************************************/
+    // cuts json lines into batches, decodes them on the executor and gathers the results
+    private final static class LinesCollector<T>
+    {
+        private final Class<T> classOfT;
+        private final Executor executor;
+        private final CompletionService<List<T>> completion;
+        private final ArrayList<Future<List<T>>> batches = new ArrayList<>();
+
+        LinesCollector(Class<T> classOfT, Executor executor, boolean keepOrder)
+        {
+            // on a ForkJoinPool worker the batches are decoded right away, see onForkJoinWorker()
+            if(onForkJoinWorker())
+            {
+                executor = CALLER_RUNS;
+            }
+            this.classOfT = classOfT;
+            this.executor = executor;
+            this.completion = keepOrder ? null : new ExecutorCompletionService<List<T>>(executor);
+        }
+
+        // json[from, to) holds whole lines only
+        void submit(byte[] json, int from, int to)
+        {
+            int batch = Math.max(LINES_BATCH_SIZE, (to - from) / (Runtime.getRuntime().availableProcessors() * 4));
+            while(from < to)
+            {
+                int end = Math.min(to, from + batch);
+                while(end < to && json[end - 1] != LINE_END)
+                {
+                    end++;
+                }
+
+                LinesTask<T> task = new LinesTask<>(json, from, end, classOfT);
+                batches.add(completion != null ? completion.submit(task) : StupidJson.submit(executor, task));
+                from = end;
+            }
+        }
+
+        List<T> collect() throws InterruptedIOException
+        {
+            ArrayList<T> result = new ArrayList<>();
+            try
+            {
+                for (Future<List<T>> f: batches)
+                {
+                    result.addAll(completion != null ? completion.take().get() : f.get());
+                }
+            }
+            catch (InterruptedException e)
+            {
+                for (Future<List<T>> f: batches)
+                {
+                    f.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            catch (ExecutionException e)
+            {
+                // fromJson() does not throw
+                throw new IllegalStateException(e.getCause());
+            }
+
+            return result;
+        }
+    }
+
+    /***********************************************************************************************/
+    private final static class LinesTask<T> implements Callable<List<T>>
+    {
+        private final byte[] json;
+        private final int from;
+        private final int to;
+        private final Class<T> classOfT;
+
+        LinesTask(byte[] json, int from, int to, Class<T> classOfT)
+        {
+            this.json = json;
+            this.from = from;
+            this.to = to;
+            this.classOfT = classOfT;
+        }
+
+        @Override
+        public List<T> call()
+        {
+            ArrayList<T> result = new ArrayList<>();
+            int start = from;
+            while(start < to)
+            {
+                int end = start;
+                while(end < to && json[end] != LINE_END)
+                {
+                    end++;
+                }
+
+                if(!isBlank(json, start, end))
+                {
+                    result.add(fromJson(json, start, end - start, classOfT));
+                }
+                start = end + 1;
+            }
+
+            return result;
+        }
+
+        private static boolean isBlank(byte[] json, int from, int to)
+        {
+            for(int i = from; i < to; i++)
+            {
+                byte b = json[i];
+                if(b != ' ' && b != '\t' && b != '\r')
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /***********************************************************************************************/
+    private static <T> T parseStream(JsonReader r, Class<T> classOfT) throws IOException
+    {
+        try
+        {
+            return decode(r, classOfT, null, -1);
+        }
+        catch (JsonReader.SyntaxException e)
+        {
+            decodeFailed(classOfT, e);
+            LOG.severe("Error fromJson on stream class= " + classOfT);
+            e.printStackTrace();
+            return null;
+        }
+        catch (IOException e)
+        {
+            decodeFailed(classOfT, e);
+            throw e;
+        }
+        catch (Exception e)
+        {
+            decodeFailed(classOfT, e);
+            LOG.severe("Error fromJson on stream class= " + classOfT);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    // A String is read a window at a time, which splitArray() cannot hand out to other readers,
+    // so the input is copied out only when parse() is going to split a top level array in it
+    private static JsonReader textReader(String json, Class<?> classOfT)
+    {
+        int threshold = parallelDecodeThreshold;
+        if(threshold <= 0 || json.length() < threshold || Runtime.getRuntime().availableProcessors() < 2 ||
+                !(classOfT.isArray() || Collection.class.isAssignableFrom(classOfT)) || !startsWithArray(json) ||
+                onForkJoinWorker())
+        {
+            return new CharJsonReader(json);
+        }
+
+        return new CharJsonReader(json.toCharArray(), 0, json.length());
+    }
+
+    /***********************************************************************************************/
+    private static boolean startsWithArray(String json)
+    {
+        for(int i = 0; i < json.length(); i++)
+        {
+            char c = json.charAt(i);
+            if(c != ' ' && c != '\t' && c != '\n' && c != '\r')
+            {
+                return c == ARRAY_START;
+            }
+        }
+
+        return false;
+    }
+
+    /***********************************************************************************************/
+    // parse() reported to the metrics; size is the input length, -1 for what the reader consumed
+    private static <T> T decode(JsonReader r, Class<T> classOfT, Projection projection, long size) throws IOException, InstantiationException, IllegalAccessException
+    {
+        Metrics m = metrics;
+        if(m == null)
+        {
+            return parse(r, classOfT, projection);
+        }
+
+        long start = started(m, classOfT);
+        T result = parse(r, classOfT, projection);
+        m.onDecode(classOfT, System.nanoTime() - start, size >= 0 ? size : r.consumed());
+        return result;
+    }
+
+    /***********************************************************************************************/
+    private static <T> T parse(JsonReader r, Class<T> classOfT) throws IOException, InstantiationException, IllegalAccessException
+    {
+        return parse(r, classOfT, null);
+    }
+
+    /***********************************************************************************************/
+    // projection null for all the fields
+    @SuppressWarnings("unchecked")
+    private static <T> T parse(JsonReader r, Class<T> classOfT, Projection projection) throws IOException, InstantiationException, IllegalAccessException
+    {
+        if(classOfT.isArray())
+        {
+            int[] starts = splitInParallel(r);
+            if(starts != null)
+            {
+                return (T)parseInParallel(r, starts, classOfT.getComponentType(), false, projection);
+            }
+            return (T)parseArray(r, classOfT.getComponentType(), projection);
+        }
+        else if (Collection.class.isAssignableFrom(classOfT))
+        {
+            ParameterizedType pt = (ParameterizedType)classOfT.getGenericSuperclass();
+            if(pt == null)
+            {
+                return null;
+            }
+
+            Type[] tt = pt.getActualTypeArguments();
+            Class<T> fcc = (Class<T>)tt[0];
+            int[] starts = splitInParallel(r);
+            if(starts != null)
+            {
+                Object[] elements = (Object[])parseInParallel(r, starts, fcc, true, projection);
+                ArrayList<Object> result = new ArrayList<>(elements.length);
+                for (Object o: elements)
+                {
+                    result.add(o);
+                }
+                return (T)result;
+            }
+            return (T)parseList(r, fcc, projection);
+        }
+        else if (Map.class.isAssignableFrom(classOfT))
+        {
+            // typed by a subclass like "class Scores extends HashMap<String, Integer>", else the
+            // keys and values are strings
+            Class<?> keyType = null;
+            Class<?> valueType = null;
+            Type st = classOfT.getGenericSuperclass();
+            if(st instanceof ParameterizedType)
+            {
+                Type[] tt = ((ParameterizedType)st).getActualTypeArguments();
+                if(tt.length == 2 && tt[0] instanceof Class && tt[1] instanceof Class)
+                {
+                    keyType = (Class<?>)tt[0];
+                    valueType = (Class<?>)tt[1];
+                }
+            }
+            return (T)parseMap(r, classOfT, keyType, valueType, 0);
+        }
+        else
+        {
+            T instance = (T) planOf(classOfT).newInstance();
+            return fromJson(r, instance, projection);
+        }
+    }
+
+    /***********************************************************************************************/
+    // fields outside the projection are skipped in the input and left alone in the instance
+    private static <T> T fromJson(JsonReader r, T instance, Projection projection) throws IOException, InstantiationException
+    {
+        // anything but an object binds to null
+        if(r.peek() != OBJECT_START)
+        {
+            r.skipValue();
+            return null;
+        }
+
+        r.expect(OBJECT_START);
+
+        ClassPlan plan = planOf(instance.getClass());
+        FieldPlan[] fields = plan.fields;
+        // fields we got a value for, the rest are reset below
+        long seen = 0;
+        boolean[] seenWide = fields.length > 64 ? new boolean[fields.length] : null;
+
+        if(!r.consume(OBJECT_END))
+        {
+            do
+            {
+                int index = r.nextName(plan.names);
+                Projection sub = projection != null && index >= 0 ? projection.fields[index] : null;
+                if(index < 0 || (projection != null && sub == null))
+                {
+                    r.skipValue();
+                    continue;
+                }
+
+                FieldPlan fp = fields[index];
+
+                if(seenWide != null)
+                {
+                    seenWide[fp.index] = true;
+                }
+                else
+                {
+                    seen |= 1L << fp.index;
+                }
+
+                try
+                {
+                    readField(r, instance, fp, sub == Projection.ALL ? null : sub);
+                }
+                catch(IllegalAccessException ex)
+                {
+                    LOG.log(Level.FINE, "Exception=" + ex, ex);
+                    // field was optimized out? NO-OP
+                }
+            }
+            while(r.more(OBJECT_END));
+        }
+
+        resetMissing(instance, fields, seen, seenWide, projection);
+        return instance;
+    }
+
+    /***********************************************************************************************/
+    // missing fields are null (or zero) as if they were there
+    private static void resetMissing(Object instance, FieldPlan[] fields, long seen, boolean[] seenWide, Projection projection)
+    {
+        for (FieldPlan fp: fields)
+        {
+            if(seenWide != null ? seenWide[fp.index] : (seen & (1L << fp.index)) != 0)
+            {
+                continue;
+            }
+
+            if(projection != null && projection.fields[fp.index] == null)
+            {
+                continue;
+            }
+
+            try
+            {
+                resetField(instance, fp);
+            }
+            catch(IllegalAccessException ex)
+            {
+                LOG.log(Level.FINE, "Exception=" + ex, ex);
+                // field was optimized out? NO-OP
+            }
+        }
+    }
+
+    /***********************************************************************************************/
+    // The header of a positional array of objects (see toJsonCompact()) as field indexes, -1 for
+    // names the class does not have. Null when the array is a plain one, the reader is just past
+    // its '[' and has not moved then.
+    private static int[] readColumns(JsonReader r, int kind, Class<?> fcc) throws IOException
+    {
+        if(kind != KIND_OBJECT || r.peek() != ARRAY_START)
+        {
+            return null;
+        }
+
+        r.expect(ARRAY_START);
+
+        ClassPlan plan = planOf(fcc);
+        int[] columns = new int[plan.fields.length];
+        int n = 0;
+
+        if(!r.consume(ARRAY_END))
+        {
+            do
+            {
+                if(n == columns.length)
+                {
+                    columns = Arrays.copyOf(columns, n * 2 + 1);
+                }
+
+                String name = r.nextString();
+                columns[n++] = name == null ? -1 : plan.names.find(name.toCharArray(), name.length());
+            }
+            while(r.more(ARRAY_END));
+        }
+
+        return n == columns.length ? columns : Arrays.copyOf(columns, n);
+    }
+
+    /***********************************************************************************************/
+    // One element of a positional array, the values in the order of the columns. Fields of the
+    // class the header does not name are reset, same as missing ones in fromJson().
+    private static Object readRow(JsonReader r, Class<?> fcc, int[] columns, Projection projection) throws IOException, InstantiationException, IllegalAccessException
+    {
+        // anything but an array binds to null
+        if(r.peek() != ARRAY_START)
+        {
+            r.skipValue();
+            return null;
+        }
+
+        Object instance = newInstance(r, fcc);
+        r.expect(ARRAY_START);
+
+        FieldPlan[] fields = planOf(fcc).fields;
+        long seen = 0;
+        boolean[] seenWide = fields.length > 64 ? new boolean[fields.length] : null;
+
+        if(!r.consume(ARRAY_END))
+        {
+            int i = 0;
+            do
+            {
+                int index = i < columns.length ? columns[i] : -1;
+                i++;
+                Projection sub = projection != null && index >= 0 ? projection.fields[index] : null;
+                if(index < 0 || (projection != null && sub == null))
+                {
+                    r.skipValue();
+                    continue;
+                }
+
+                FieldPlan fp = fields[index];
+
+                if(seenWide != null)
+                {
+                    seenWide[fp.index] = true;
+                }
+                else
+                {
+                    seen |= 1L << fp.index;
+                }
+
+                try
+                {
+                    readField(r, instance, fp, sub == Projection.ALL ? null : sub);
+                }
+                catch(IllegalAccessException ex)
+                {
+                    LOG.log(Level.FINE, "Exception=" + ex, ex);
+                    // field was optimized out? NO-OP
+                }
+            }
+            while(r.more(ARRAY_END));
+        }
+
+        resetMissing(instance, fields, seen, seenWide, projection);
+        return instance;
+    }
+
+    /***********************************************************************************************/
+    // projection applies to the objects in the value, null for all of their fields
+    private static void readField(JsonReader r, Object instance, FieldPlan fp, Projection projection) throws IOException, InstantiationException, IllegalAccessException
+    {
+        Class<?> fc = fp.type;
+
+        if (!fc.isPrimitive() && r.consumeNull())
+        {
+            fp.access.set(instance, null);
+            return;
+        }
+
+        switch (fp.kind)
+        {
+            case KIND_STRING:
+            case KIND_ANY:
+                fp.access.set(instance, r.nextString());
+                break;
+            case KIND_INT:
+                fp.access.setInt(instance, r.nextInt());
+                break;
+            case KIND_INTEGER:
+                fp.access.set(instance, r.nextInt());
+                break;
+            case KIND_BOOLEAN:
+                fp.access.setBoolean(instance, r.nextBoolean());
+                break;
+            case KIND_BOOLEAN_OBJ:
+                fp.access.set(instance, r.nextBoolean() ? Boolean.TRUE : Boolean.FALSE);
+                break;
+            case KIND_DOUBLE:
+                fp.access.setDouble(instance, r.nextDouble());
+                break;
+            case KIND_DOUBLE_OBJ:
+                fp.access.set(instance, r.nextDouble());
+                break;
+            case KIND_FLOAT:
+                fp.access.setFloat(instance, r.nextFloat());
+                break;
+            case KIND_FLOAT_OBJ:
+                fp.access.set(instance, r.nextFloat());
+                break;
+            case KIND_BYTE:
+                fp.access.setByte(instance, r.nextByte());
+                break;
+            case KIND_BYTE_OBJ:
+                fp.access.set(instance, r.nextByte());
+                break;
+            case KIND_LONG:
+                fp.access.setLong(instance, r.nextLong());
+                break;
+            case KIND_LONG_OBJ:
+                fp.access.set(instance, r.nextLong());
+                break;
+            case KIND_SHORT:
+                fp.access.setShort(instance, r.nextShort());
+                break;
+            case KIND_SHORT_OBJ:
+                fp.access.set(instance, r.nextShort());
+                break;
+            case KIND_CHAR:
+                fp.access.setChar(instance, r.nextChar());
+                break;
+            case KIND_CHARACTER:
+                fp.access.set(instance, r.nextChar());
+                break;
+            case KIND_ENUM:
+                fp.access.set(instance, enumValueFromString(fc, r.nextString()));
+                break;
+            case KIND_ARRAY:
+                fp.access.set(instance, parseArray(r, fc.getComponentType(), projection));
+                break;
+            case KIND_COLLECTION:
+                if(fp.elementType == null)
+                {
+                    throw new ClassCastException("Cannot resolve element type of " + fp.name);
+                }
+                fp.access.set(instance, parseList(r, fp.elementType, projection));
+                break;
+            case KIND_MAP:
+                Map<?, ?> map = parseMap(r, fc, fp.keyType, fp.elementType, fp.sizeHint);
+                if(map != null)
+                {
+                    fp.sizeHint = map.size();
+                }
+                fp.access.set(instance, map);
+                break;
+            case KIND_NUMBER:
+                fp.access.set(instance, numberFromString(fc, r.nextString()));
+                break;
+            default:
+                fp.access.set(instance, fromJson(r, newInstance(r, fc), projection));
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    private static void resetField(Object instance, FieldPlan fp) throws IllegalAccessException
+    {
+        switch (fp.kind)
+        {
+            case KIND_INT:
+                fp.access.setInt(instance, 0);
+                break;
+            case KIND_BOOLEAN:
+                fp.access.setBoolean(instance, false);
+                break;
+            case KIND_DOUBLE:
+                fp.access.setDouble(instance, 0);
+                break;
+            case KIND_FLOAT:
+                fp.access.setFloat(instance, 0);
+                break;
+            case KIND_BYTE:
+                fp.access.setByte(instance, (byte) 0);
+                break;
+            case KIND_LONG:
+                fp.access.setLong(instance, 0);
+                break;
+            case KIND_SHORT:
+                fp.access.setShort(instance, (short) 0);
+                break;
+            case KIND_CHAR:
+                fp.access.setChar(instance, (char) 0);
+                break;
+            default:
+                fp.access.set(instance, null);
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    // the value is skipped if the instance cannot be created, so the reader stays in sync
+    private static Object newInstance(JsonReader r, Class<?> fc) throws IOException, InstantiationException, IllegalAccessException
+    {
+        try
+        {
+            return planOf(fc).newInstance();
+        }
+        catch (IllegalAccessException e)
+        {
+            r.skipValue();
+            throw e;
+        }
+    }
+
+    /***********************************************************************************************/
+    // starts of the elements of a big top level array read in memory, when it is worth binding
+    // them on the workers and this is not one of a ForkJoinPool; null otherwise, the reader has
+    // not moved then
+    private static int[] splitInParallel(JsonReader r) throws IOException
+    {
+        int threshold = parallelDecodeThreshold;
+        if(threshold <= 0 || r.peek() != ARRAY_START || r.limit - r.pos < threshold ||
+                Runtime.getRuntime().availableProcessors() < 2 || onForkJoinWorker())
+        {
+            return null;
+        }
+
+        return r.splitArray();
+    }
+
+    /***********************************************************************************************/
+    // The elements at the starts from splitInParallel(), bound in chunks on the workers straight
+    // into the presized result: a typed array of fcc, or Object[] of list elements.
+    private static Object parseInParallel(JsonReader r, int[] starts, Class<?> fcc, boolean list, Projection projection) throws IOException
+    {
+        int kind = planOf(fcc).kind;
+        // a header of a positional array is read here, the rows are bound like any element
+        int[] columns = starts.length > 1 ? readColumns(r.readerAt(starts[0]), kind, fcc) : null;
+        if(columns != null)
+        {
+            starts = Arrays.copyOfRange(starts, 1, starts.length);
+        }
+
+        int n = starts.length - 1;
+        Object arr = list ? new Object[n] : Array.newInstance(fcc, n);
+        int chunkSize = Math.max(16, n / (Runtime.getRuntime().availableProcessors() * 4));
+        Executor executor = workers();
+        ArrayList<Future<Void>> chunks = new ArrayList<>();
+        try
+        {
+            for (int from = 0; from < n; from += chunkSize)
+            {
+                ParseTask task = new ParseTask(r, starts, from, Math.min(n, from + chunkSize), arr, kind, fcc, list, columns, projection);
+                chunks.add(submit(executor, task));
+            }
+
+            for (Future<Void> f: chunks)
+            {
+                f.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            cancel(chunks);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e)
+        {
+            cancel(chunks);
+            throw chunkFailure(e);
+        }
+
+        return arr;
+    }
+
+    /***********************************************************************************************/
+    // elements [from, to) of parseInParallel(), read one after the other by one reader
+    private final static class ParseTask implements Callable<Void>
+    {
+        private final JsonReader source;
+        private final int[] starts;
+        private final int from;
+        private final int to;
+        private final Object arr;
+        private final int kind;
+        private final Class<?> fcc;
+        private final boolean list;
+        private final int[] columns;
+        private final Projection projection;
+
+        ParseTask(JsonReader source, int[] starts, int from, int to, Object arr, int kind, Class<?> fcc, boolean list, int[] columns, Projection projection)
+        {
+            this.source = source;
+            this.starts = starts;
+            this.from = from;
+            this.to = to;
+            this.arr = arr;
+            this.kind = kind;
+            this.fcc = fcc;
+            this.list = list;
+            this.columns = columns;
+            this.projection = projection;
+        }
+
+        @Override
+        public Void call() throws IOException, InstantiationException, IllegalAccessException
+        {
+            JsonReader r = source.readerAt(starts[from]);
+            for (int k = from; k < to; k++)
+            {
+                if(k > from)
+                {
+                    r.expect(DELIMITER);
+                }
+
+                if(columns != null)
+                {
+                    ((Object[]) arr)[k] = readRow(r, fcc, columns, projection);
+                }
+                else if(list)
+                {
+                    ((Object[]) arr)[k] = readElement(r, kind, fcc, projection);
+                }
+                else
+                {
+                    readArrayElement(r, arr, k, kind, fcc, projection);
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    private static Object parseArray(JsonReader r, Class<?> fcc, Projection projection) throws IOException, InstantiationException, IllegalAccessException
+    {
+        // anything but an array binds to null
+        if(r.peek() != ARRAY_START)
+        {
+            r.skipValue();
+            return null;
+        }
+
+        r.expect(ARRAY_START);
+
+        int kind = planOf(fcc).kind;
+        // we don't know the length upfront, grow as we go and trim at the end
+        Object arr = Array.newInstance(fcc, 16);
+        int capacity = 16;
+        int k = 0;
+
+        int[] columns = null;
+        if(!r.consume(ARRAY_END) && ((columns = readColumns(r, kind, fcc)) == null || r.more(ARRAY_END)))
+        {
+            do
+            {
+                if(k == capacity)
+                {
+                    capacity *= 2;
+                    Object n = Array.newInstance(fcc, capacity);
+                    System.arraycopy(arr, 0, n, 0, k);
+                    arr = n;
+                }
+
+                if(columns != null)
+                {
+                    ((Object[]) arr)[k] = readRow(r, fcc, columns, projection);
+                }
+                else
+                {
+                    readArrayElement(r, arr, k, kind, fcc, projection);
+                }
+                k++;
+            }
+            while(r.more(ARRAY_END));
+        }
+
+        if(k == capacity)
+        {
+            return arr;
+        }
+
+        Object trimmed = Array.newInstance(fcc, k);
+        System.arraycopy(arr, 0, trimmed, 0, k);
+        return trimmed;
+    }
+
+    /***********************************************************************************************/
+    // element k of a typed array, nulls are left as they are
+    private static void readArrayElement(JsonReader r, Object arr, int k, int kind, Class<?> fcc, Projection projection) throws IOException, InstantiationException, IllegalAccessException
+    {
+        if(!fcc.isPrimitive() && r.consumeNull())
+        {
+            return;
+        }
+
+        // plain stores into the typed array, Array.set() checks and boxes every element
+        switch (kind)
+        {
+            case KIND_STRING:
+            case KIND_ANY:
+                ((Object[]) arr)[k] = r.nextString();
+                break;
+            case KIND_BOOLEAN:
+                ((boolean[]) arr)[k] = r.nextBoolean();
+                break;
+            case KIND_BOOLEAN_OBJ:
+                ((Object[]) arr)[k] = r.nextBoolean();
+                break;
+            case KIND_INT:
+                ((int[]) arr)[k] = r.nextInt();
+                break;
+            case KIND_INTEGER:
+                ((Object[]) arr)[k] = r.nextInt();
+                break;
+            case KIND_ENUM:
+                ((Object[]) arr)[k] = enumValueFromString(fcc, r.nextString());
+                break;
+            case KIND_DOUBLE:
+                ((double[]) arr)[k] = r.nextDouble();
+                break;
+            case KIND_DOUBLE_OBJ:
+                ((Object[]) arr)[k] = r.nextDouble();
+                break;
+            case KIND_FLOAT:
+                ((float[]) arr)[k] = r.nextFloat();
+                break;
+            case KIND_FLOAT_OBJ:
+                ((Object[]) arr)[k] = r.nextFloat();
+                break;
+            case KIND_BYTE:
+                ((byte[]) arr)[k] = r.nextByte();
+                break;
+            case KIND_BYTE_OBJ:
+                ((Object[]) arr)[k] = r.nextByte();
+                break;
+            case KIND_LONG:
+                ((long[]) arr)[k] = r.nextLong();
+                break;
+            case KIND_LONG_OBJ:
+                ((Object[]) arr)[k] = r.nextLong();
+                break;
+            case KIND_SHORT:
+                ((short[]) arr)[k] = r.nextShort();
+                break;
+            case KIND_SHORT_OBJ:
+                ((Object[]) arr)[k] = r.nextShort();
+                break;
+            case KIND_CHAR:
+                ((char[]) arr)[k] = r.nextChar();
+                break;
+            case KIND_CHARACTER:
+                ((Object[]) arr)[k] = r.nextChar();
+                break;
+            case KIND_NUMBER:
+                ((Object[]) arr)[k] = numberFromString(fcc, r.nextString());
+                break;
+            case KIND_ARRAY:
+                // nested arrays, positional rows included
+                ((Object[]) arr)[k] = parseArray(r, fcc.getComponentType(), projection);
+                break;
+            case KIND_COLLECTION:
+                // a nested collection has no element type to go by
+                throw new ClassCastException("Cannot resolve element type of " + fcc.getName());
+            case KIND_MAP:
+                ((Object[]) arr)[k] = parseMap(r, fcc, null, null, 0);
+                break;
+            default:
+                ((Object[]) arr)[k] = fromJson(r, newInstance(r, fcc), projection);
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    @SuppressWarnings("unchecked")
+    private static Collection parseList(JsonReader r, Class<?> fcc, Projection projection) throws IOException, InstantiationException, IllegalAccessException
+    {
+        // anything but an array binds to null
+        if(r.peek() != ARRAY_START)
+        {
+            r.skipValue();
+            return null;
+        }
+
+        r.expect(ARRAY_START);
+
+        int kind = planOf(fcc).kind;
+        Collection list = new ArrayList<>();
+
+        int[] columns = null;
+        if(!r.consume(ARRAY_END) && ((columns = readColumns(r, kind, fcc)) == null || r.more(ARRAY_END)))
+        {
+            do
+            {
+                list.add(columns != null ? readRow(r, fcc, columns, projection) : readElement(r, kind, fcc, projection));
+            }
+            while(r.more(ARRAY_END));
+        }
+
+        return list;
+    }
+
+    /***********************************************************************************************/
+    // single boxed element of a list
+    private static Object readElement(JsonReader r, int kind, Class<?> fcc, Projection projection) throws IOException, InstantiationException, IllegalAccessException
+    {
+        if(r.consumeNull())
+        {
+            return null;
+        }
+
+        // list cannot have primitives as templated value
+        switch (kind)
+        {
+            case KIND_STRING:
+            case KIND_ANY:
+                return r.nextString();
+            case KIND_INTEGER:
+                return r.nextInt();
+            case KIND_BOOLEAN_OBJ:
+                return r.nextBoolean();
+            case KIND_ENUM:
+                return enumValueFromString(fcc, r.nextString());
+            case KIND_DOUBLE_OBJ:
+                return r.nextDouble();
+            case KIND_FLOAT_OBJ:
+                return r.nextFloat();
+            case KIND_BYTE_OBJ:
+                return r.nextByte();
+            case KIND_LONG_OBJ:
+                return r.nextLong();
+            case KIND_SHORT_OBJ:
+                return r.nextShort();
+            case KIND_CHARACTER:
+                return r.nextChar();
+            case KIND_ARRAY:
+                return parseArray(r, fcc.getComponentType(), projection);
+            case KIND_COLLECTION:
+                // a nested collection has no element type to go by
+                throw new ClassCastException("Cannot resolve element type of " + fcc.getName());
+            case KIND_MAP:
+                return parseMap(r, fcc, null, null, 0);
+            case KIND_NUMBER:
+                return numberFromString(fcc, r.nextString());
+            default:
+                return fromJson(r, newInstance(r, fcc), projection);
+        }
+    }
+
+    /***********************************************************************************************/
+    // json object as a map of the given type. Null key or value types read as strings, same as
+    // Object fields. Numeric keys are parsed straight off the input.
+    @SuppressWarnings("unchecked")
+    private static Map<?, ?> parseMap(JsonReader r, Class<?> type, Class<?> keyType, Class<?> valueType, int expected) throws IOException, InstantiationException, IllegalAccessException
+    {
+        // anything but an object binds to null
+        if(r.peek() != OBJECT_START)
+        {
+            r.skipValue();
+            return null;
+        }
+
+        r.expect(OBJECT_START);
+
+        Map map = newMap(type, expected);
+        // these two throw on null values
+        boolean nullable = !(map instanceof Hashtable) && !(map instanceof ConcurrentMap);
+        int keyKind = keyType == null ? KIND_STRING : planOf(keyType).kind;
+        int valueKind = valueType == null ? KIND_ANY : planOf(valueType).kind;
+
+        if(!r.consume(OBJECT_END))
+        {
+            do
+            {
+                Object key = readKey(r, keyKind, keyType);
+                Object value = readElement(r, valueKind, valueType, null);
+                if(value != null || nullable)
+                {
+                    map.put(key, value);
+                }
+            }
+            while(r.more(OBJECT_END));
+        }
+
+        return map;
+    }
+
+    /***********************************************************************************************/
+    // map key, including the following ':'
+    private static Object readKey(JsonReader r, int kind, Class<?> keyType) throws IOException
+    {
+        if(r.peek() != QUOTE)
+        {
+            throw r.syntaxError("Expected '\"'");
+        }
+
+        Object key;
+        switch (kind)
+        {
+            case KIND_STRING:
+            case KIND_ANY:
+                return r.nextName();
+            case KIND_ENUM:
+                return enumValueFromString(keyType, r.nextName());
+            case KIND_INTEGER:
+                key = r.nextInt();
+                break;
+            case KIND_LONG_OBJ:
+                key = r.nextLong();
+                break;
+            case KIND_DOUBLE_OBJ:
+                key = r.nextDouble();
+                break;
+            case KIND_FLOAT_OBJ:
+                key = r.nextFloat();
+                break;
+            case KIND_SHORT_OBJ:
+                key = r.nextShort();
+                break;
+            case KIND_BYTE_OBJ:
+                key = r.nextByte();
+                break;
+            case KIND_BOOLEAN_OBJ:
+                key = r.nextBoolean();
+                break;
+            case KIND_CHARACTER:
+                key = r.nextChar();
+                break;
+            default:
+                throw new ClassCastException("Cannot bind map keys to " + keyType.getName());
+        }
+
+        r.expect(NAME_DELIMITER);
+        return key;
+    }
+
+    /***********************************************************************************************/
+    // the declared type when it can be created, the closest common one for interfaces. Sized for
+    // the expected entries, 0 when unknown.
+    private static Map<?, ?> newMap(Class<?> type, int expected) throws InstantiationException, IllegalAccessException
+    {
+        int capacity = expected > 0 ? (int) (expected / 0.75f) + 1 : 16;
+        if(type == HashMap.class)
+        {
+            return new HashMap<>(capacity);
+        }
+        else if(type.isAssignableFrom(LinkedHashMap.class))
+        {
+            // Map and AbstractMap, keeps the order of the document
+            return new LinkedHashMap<>(capacity);
+        }
+        else if(type == Hashtable.class)
+        {
+            return new Hashtable<>(capacity);
+        }
+        else if(type.isAssignableFrom(ConcurrentHashMap.class))
+        {
+            return new ConcurrentHashMap<>(capacity);
+        }
+        else if(type.isAssignableFrom(TreeMap.class))
+        {
+            return new TreeMap<>();
+        }
+
+        return (Map<?, ?>) planOf(type).newInstance();
+    }
+
+    /***********************************************************************************************/
+    // Same as toJson(), as CBOR (RFC 8949): objects are maps keyed by their json names, arrays and
+    // collections are arrays (byte[] a byte string), integers take as few bytes as they need and
+    // floating point values keep their IEEE bits. Any CBOR reader can read it.
+    public static byte[] toBinary(Object src)
+    {
+        if(src == null)
+        {
+            return null;
+        }
+
+        Metrics m = metrics;
+        long start = started(m, src.getClass());
+        try
+        {
+            CborWriter w = new CborWriter(planOf(src.getClass()).bufferSize());
+            storeBinary(w, src);
+            if(m != null)
+            {
+                m.onEncode(src.getClass(), System.nanoTime() - start, w.size());
+            }
+            return w.toByteArray();
+        }
+        catch (Exception e)
+        {
+            encodeFailed(src.getClass(), e);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    // Same as fromJson(), from toBinary() output or any CBOR of the same shape. Values convert as
+    // leniently as json text does, tags are ignored.
+    public static <T> T fromBinary(byte[] data, Class<T> classOfT)
+    {
+        if(data == null)
+        {
+            return null;
+        }
+
+        Metrics m = metrics;
+        long start = started(m, classOfT);
+        try
+        {
+            CborReader r = new CborReader(data, 0, data.length);
+            T result = parseBinary(r, classOfT);
+            if(m != null)
+            {
+                m.onDecode(classOfT, System.nanoTime() - start, r.consumed());
+            }
+            return result;
+        }
+        catch (Exception e)
+        {
+            decodeFailed(classOfT, e);
+            LOG.severe("Error fromBinary on " + data.length + " bytes class= " + classOfT);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /***********************************************************************************************/
+    private static void storeBinary(CborWriter w, Object src) throws IllegalAccessException
+    {
+        Class<?> fc = src.getClass();
+        if(fc.isArray())
+        {
+            storeBinaryArray(w, src);
+        }
+        else if (Collection.class.isAssignableFrom(fc))
+        {
+            storeBinaryCollection(w, (Collection)src);
+        }
+        else if (Map.class.isAssignableFrom(fc))
+        {
+            storeBinaryMap(w, (Map<?, ?>)src);
+        }
+        else
+        {
+            storeBinaryObject(w, src);
+        }
+    }
+
+    /***********************************************************************************************/
+    private static void storeBinaryObject(CborWriter w, Object src) throws IllegalAccessException
+    {
+        if(src == null)
+        {
+            w.write(CborWriter.NULL);
+            return;
+        }
+
+        ClassPlan plan = planOf(src.getClass());
+        if(plan.kind != KIND_OBJECT)
+        {
+            storeBinaryField(w, plan.kind, src);
+            return;
+        }
+
+        FieldPlan[] fields = plan.fields;
+        w.writeHead(CborWriter.MAP, fields.length);
+        for (FieldPlan f: fields)
+        {
+            w.writeRaw(f.binaryName);
+
+            switch(f.kind)
+            {
+                case KIND_INT:
+                case KIND_SHORT:
+                case KIND_BYTE:
+                    w.writeLong(f.access.getInt(src));
+                    break;
+
+                case KIND_LONG:
+                    w.writeLong(f.access.getLong(src));
+                    break;
+
+                case KIND_DOUBLE:
+                    w.writeDouble(f.access.getDouble(src));
+                    break;
+
+                case KIND_FLOAT:
+                    w.writeFloat(f.access.getFloat(src));
+                    break;
+
+                case KIND_BOOLEAN:
+                    w.writeBoolean(f.access.getBoolean(src));
+                    break;
+
+                default:
+                    storeBinaryField(w, f.kind, f.access.get(src));
+                    break;
+            }
+        }
+    }
+
+    /***********************************************************************************************/
+    // @DontQuote strings hold json text, here they are text like any other string
+    private static void storeBinaryField(CborWriter w, int kind, Object value) throws IllegalAccessException
+    {
+        if(value == null)
+        {
+            w.write(CborWriter.NULL);
+            return;
+        }
+
+        switch (kind)
+        {
+            case KIND_STRING:
+                w.writeString((String)value);
+                break;
+
+            case KIND_CHAR:
+            case KIND_CHARACTER:
+                w.writeString(value.toString());
+                break;
+
+            case KIND_ENUM:
+                w.writeString(enumName((Enum)value));
+                break;
+
+            case KIND_ARRAY:
+                storeBinaryArray(w, value);
+                break;
+
+            case KIND_COLLECTION:
+                storeBinaryCollection(w, (Collection)value);
+                break;
+
+            case KIND_MAP:
+                storeBinaryMap(w, (Map<?, ?>)value);
+                break;
+
+            case KIND_ANY:
+            case KIND_OBJECT:
+                storeBinaryObject(w, value);
+                break;
+
+            case KIND_INT:
+            case KIND_INTEGER:
+            case KIND_SHORT:
+            case KIND_SHORT_OBJ:
+            case KIND_BYTE:
+            case KIND_BYTE_OBJ:
+            case KIND_LONG:
+            case KIND_LONG_OBJ:
+                w.writeLong(((Number)value).longValue());
+                break;
+
+            case KIND_DOUBLE:
+            case KIND_DOUBLE_OBJ:
+                w.writeDouble((Double)value);
+                break;
+
+            case KIND_FLOAT:
+            case KIND_FLOAT_OBJ:
+                w.writeFloat((Float)value);
+                break;
+
+            case KIND_BOOLEAN:
+            case KIND_BOOLEAN_OBJ:
+                w.writeBoolean((Boolean)value);
+                break;
+
+            default:
+                // other numbers: the ones that may not fit a long or a double go as CBOR bignums
+                // and decimal fractions
+                if(value instanceof BigInteger)
+                {
+                    w.writeBigInteger((BigInteger) value);
+                }
+                else if(value instanceof BigDecimal)
+                {
+                    w.writeBigDecimal((BigDecimal) value);
+                }
+                else if(value instanceof Double)
+                {
+                    w.writeDouble((Double) value);
+                }
+                else if(value instanceof Float)
+                {
+                    w.writeFloat((Float) value);
+                }
+                else
+                {
+                    w.writeLong(((Number)value).longValue());
+                }
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    private static void storeBinaryArray(CborWriter w, Object fc) throws IllegalAccessException
+    {
+        if(fc == null)
+        {
+            w.write(CborWriter.NULL);
+            return;
+        }
+
+        int kind = planOf(fc.getClass().getComponentType()).kind;
+        if(kind == KIND_BYTE)
+        {
+            w.writeBytes((byte[]) fc);
+            return;
+        }
+
+        int length = Array.getLength(fc);
+        w.writeHead(CborWriter.ARRAY, length);
+
+        // primitive arrays are walked directly, nothing is boxed
+        switch (kind)
+        {
+            case KIND_INT:
+                for (int v: (int[]) fc)
+                {
+                    w.writeLong(v);
+                }
+                break;
+
+            case KIND_LONG:
+                for (long v: (long[]) fc)
+                {
+                    w.writeLong(v);
+                }
+                break;
+
+            case KIND_SHORT:
+                for (short v: (short[]) fc)
+                {
+                    w.writeLong(v);
+                }
+                break;
+
+            case KIND_DOUBLE:
+                for (double v: (double[]) fc)
+                {
+                    w.writeDouble(v);
+                }
+                break;
+
+            case KIND_FLOAT:
+                for (float v: (float[]) fc)
+                {
+                    w.writeFloat(v);
                 }
+                break;
+
+            case KIND_BOOLEAN:
+                for (boolean v: (boolean[]) fc)
+                {
+                    w.writeBoolean(v);
+                }
+                break;
+
+            case KIND_CHAR:
+                for (char v: (char[]) fc)
+                {
+                    w.writeString(String.valueOf(v));
+                }
+                break;
+
+            case KIND_INTEGER:
+            case KIND_LONG_OBJ:
+            case KIND_DOUBLE_OBJ:
+            case KIND_FLOAT_OBJ:
+            case KIND_SHORT_OBJ:
+            case KIND_BYTE_OBJ:
+            case KIND_BOOLEAN_OBJ:
+            case KIND_CHARACTER:
+            case KIND_STRING:
+            case KIND_ENUM:
+                // final element types, the component kind holds for every element
+                for (Object v: (Object[]) fc)
+                {
+                    storeBinaryField(w, kind, v);
+                }
+                break;
+
+            default:
+                for (Object v: (Object[]) fc)
+                {
+                    storeBinaryObject(w, v);
+                }
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    // lists that can be indexed have a stable size, other collections end with a break instead
+    private static void storeBinaryCollection(CborWriter w, Collection list) throws IllegalAccessException
+    {
+        if(list == null)
+        {
+            w.write(CborWriter.NULL);
+            return;
+        }
+
+        boolean sized = list instanceof RandomAccess;
+        if(sized)
+        {
+            w.writeHead(CborWriter.ARRAY, list.size());
+        }
+        else
+        {
+            w.write(CborWriter.ARRAY | CborWriter.INDEFINITE);
+        }
 
-                else if (fc.isEnum())
-                {
-                    f.set(instance, enumValueFromString(fc, j.optString(name, null)));
-                }
-                else if (fc.isArray())
-                {
-                    JSONArray a = j.optJSONArray(name);
-                    f.set(instance, parseArray(a, fc.getComponentType()));
-                }
-                else if (Collection.class.isAssignableFrom(fc))
-                {
-                    JSONArray a = j.optJSONArray(name);
-                    Type genericType = f.getGenericType();
-                    ParameterizedType parameterizedType = (ParameterizedType) genericType;
-                    Type[] actualTypeArguments = parameterizedType.getActualTypeArguments();
-                    Class<?> fcc = (Class<?>) actualTypeArguments[0];
+        for (Object o: list)
+        {
+            storeBinaryObject(w, o);
+        }
 
-                    f.set(instance, parseList(a, fcc));
-                }
-                else
-                {
-                    JSONObject jj = j.optJSONObject(name);
-                    Object ii = fc.newInstance();
-                    f.set(instance, fromJson(jj, ii));
-                }
+        if(!sized)
+        {
+            w.write(CborWriter.BREAK);
+        }
+    }
+
+    /***********************************************************************************************/
+    // keys are text, same as in json; concurrent maps may change size while written
+    private static void storeBinaryMap(CborWriter w, Map<?, ?> map) throws IllegalAccessException
+    {
+        if(map == null)
+        {
+            w.write(CborWriter.NULL);
+            return;
+        }
+
+        boolean sized = !(map instanceof ConcurrentMap);
+        if(sized)
+        {
+            w.writeHead(CborWriter.MAP, map.size());
+        }
+        else
+        {
+            w.write(CborWriter.MAP | CborWriter.INDEFINITE);
+        }
+
+        for (Map.Entry<?, ?> e: map.entrySet())
+        {
+            Object k = e.getKey();
+            w.writeString(k instanceof Enum ? enumName((Enum)k) : String.valueOf(k));
+            storeBinaryObject(w, e.getValue());
+        }
+
+        if(!sized)
+        {
+            w.write(CborWriter.BREAK);
+        }
+    }
+
+    /***********************************************************************************************/
+    // the root, resolved the same way as parse()
+    @SuppressWarnings("unchecked")
+    private static <T> T parseBinary(CborReader r, Class<T> classOfT) throws IOException, InstantiationException, IllegalAccessException
+    {
+        if(classOfT.isArray())
+        {
+            return (T)readBinaryArray(r, classOfT.getComponentType());
+        }
+        else if (Collection.class.isAssignableFrom(classOfT))
+        {
+            ParameterizedType pt = (ParameterizedType)classOfT.getGenericSuperclass();
+            if(pt == null)
+            {
+                return null;
             }
-            catch(IllegalAccessException ex)
+
+            return (T)readBinaryList(r, (Class<?>)pt.getActualTypeArguments()[0]);
+        }
+        else if (Map.class.isAssignableFrom(classOfT))
+        {
+            Class<?> keyType = null;
+            Class<?> valueType = null;
+            Type st = classOfT.getGenericSuperclass();
+            if(st instanceof ParameterizedType)
             {
-                Log.d(TAG, "Exception=" + ex, ex);
-                // field was optimized out? NO-OP
+                Type[] tt = ((ParameterizedType)st).getActualTypeArguments();
+                if(tt.length == 2 && tt[0] instanceof Class && tt[1] instanceof Class)
+                {
+                    keyType = (Class<?>)tt[0];
+                    valueType = (Class<?>)tt[1];
+                }
             }
+            return (T)readBinaryMap(r, classOfT, keyType, valueType, 0);
         }
 
-        return instance;
+        return readBinaryObject(r, classOfT);
     }
 
     /***********************************************************************************************/
-    private static Object parseArray(JSONArray a, Class<?> fcc) throws JSONException, InstantiationException, IllegalAccessException
+    // anything but a map binds to null; missing fields are reset as in fromJson()
+    @SuppressWarnings("unchecked")
+    private static <T> T readBinaryObject(CborReader r, Class<T> c) throws IOException, InstantiationException, IllegalAccessException
     {
-        if(a == null)
+        if(r.peek() != CborReader.MAP)
         {
+            r.skipValue();
             return null;
         }
 
-        Object arr = Array.newInstance(fcc, a.length());
-        for(int k = 0; k < a.length(); ++k)
+        T instance;
+        try
         {
-            if(canAssign(fcc,String.class))
-            {
-                Array.set(arr, k, a.optString(k, null));
-            }
-            else if(canAssign(fcc,boolean.class))
-            {
-                Array.setBoolean(arr, k, a.optBoolean(k, false));
-            }
-            else if(canAssign(fcc,Boolean.class))
-            {
-                Array.set(arr, k, a.optBoolean(k, false));
-            }
-            else if(canAssign(fcc,int.class) )
-            {
-                Array.setInt(arr, k, a.optInt(k, 0));
-            }
-            else if(canAssign(fcc,Integer.class))
-            {
-                Array.set(arr, k, a.optInt(k, 0));
-            }
-            else if(fcc.isEnum())
-            {
-                Array.set(arr, k, enumValueFromString(fcc, a.optString(k, null)));
-            }
-            else if(canAssign(fcc,double.class))
-            {
-                Array.setDouble(arr, k, a.optDouble(k, 0));
-            }
-            else if(canAssign(fcc,Double.class))
-            {
-                Array.set(arr, k, a.optDouble(k, 0));
-            }
-            else if(canAssign(fcc,float.class))
-            {
-                Array.setFloat(arr, k, (float)a.optDouble(k, 0));
-            }
-            else if(canAssign(fcc,Float.class))
-            {
-                Array.set(arr, k, (float)a.optDouble(k, 0));
-            }
-            else if(canAssign(fcc,byte.class))
-            {
-                Array.setByte(arr, k, (byte)a.optInt(k, 0));
-            }
-            else if(canAssign(fcc,Byte.class))
-            {
-                Array.set(arr, k, (byte)a.optInt(k, 0));
-            }
-            else if(canAssign(fcc,long.class))
+            instance = (T) planOf(c).newInstance();
+        }
+        catch (IllegalAccessException e)
+        {
+            r.skipValue();
+            throw e;
+        }
+
+        int count = r.containerStart();
+        ClassPlan plan = planOf(c);
+        FieldPlan[] fields = plan.fields;
+        long seen = 0;
+        boolean[] seenWide = fields.length > 64 ? new boolean[fields.length] : null;
+
+        for (int i = 0; count >= 0 ? i < count : !r.consumeBreak(); i++)
+        {
+            int index = r.nextName(plan.names);
+            if(index < 0)
             {
-                Array.setLong(arr, k, a.optLong(k, 0));
+                r.skipValue();
+                continue;
             }
-            else if(canAssign(fcc,Long.class))
+
+            FieldPlan fp = fields[index];
+            if(seenWide != null)
             {
-                Array.set(arr, k,  a.optLong(k, 0));
+                seenWide[fp.index] = true;
             }
-            else if(canAssign(fcc,short.class))
+            else
             {
-                Array.setShort(arr, k, (short)a.optInt(k, 0));
+                seen |= 1L << fp.index;
             }
-            else if(canAssign(fcc,Short.class))
+
+            try
             {
-                Array.set(arr, k, (short)a.optInt(k, 0));
+                readBinaryField(r, instance, fp);
             }
-            else if(canAssign(fcc,char.class))
+            catch(IllegalAccessException ex)
             {
-                Array.setChar(arr, k, (char)a.optInt(k, 0));
+                LOG.log(Level.FINE, "Exception=" + ex, ex);
+                // field was optimized out? NO-OP
             }
-            else if(canAssign(fcc,Character.class))
+        }
+
+        resetMissing(instance, fields, seen, seenWide, null);
+        return instance;
+    }
+
+    /***********************************************************************************************/
+    private static void readBinaryField(CborReader r, Object instance, FieldPlan fp) throws IOException, InstantiationException, IllegalAccessException
+    {
+        Class<?> fc = fp.type;
+
+        if (!fc.isPrimitive() && r.consumeNull())
+        {
+            fp.access.set(instance, null);
+            return;
+        }
+
+        switch (fp.kind)
+        {
+            case KIND_INT:
+                fp.access.setInt(instance, r.nextInt());
+                break;
+            case KIND_BOOLEAN:
+                fp.access.setBoolean(instance, r.nextBoolean());
+                break;
+            case KIND_DOUBLE:
+                fp.access.setDouble(instance, r.nextDouble());
+                break;
+            case KIND_FLOAT:
+                fp.access.setFloat(instance, r.nextFloat());
+                break;
+            case KIND_BYTE:
+                fp.access.setByte(instance, r.nextByte());
+                break;
+            case KIND_LONG:
+                fp.access.setLong(instance, r.nextLong());
+                break;
+            case KIND_SHORT:
+                fp.access.setShort(instance, r.nextShort());
+                break;
+            case KIND_CHAR:
+                fp.access.setChar(instance, r.nextChar());
+                break;
+            case KIND_COLLECTION:
+                if(fp.elementType == null)
+                {
+                    throw new ClassCastException("Cannot resolve element type of " + fp.name);
+                }
+                fp.access.set(instance, readBinaryList(r, fp.elementType));
+                break;
+            case KIND_MAP:
+                Map<?, ?> map = readBinaryMap(r, fc, fp.keyType, fp.elementType, fp.sizeHint);
+                if(map != null)
+                {
+                    fp.sizeHint = map.size();
+                }
+                fp.access.set(instance, map);
+                break;
+            default:
+                fp.access.set(instance, readBinaryElement(r, fp.kind, fc));
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    // single boxed value of the given kind, for fields, list elements and map values
+    private static Object readBinaryElement(CborReader r, int kind, Class<?> fcc) throws IOException, InstantiationException, IllegalAccessException
+    {
+        if(r.consumeNull())
+        {
+            return null;
+        }
+
+        switch (kind)
+        {
+            case KIND_STRING:
+            case KIND_ANY:
+                return r.nextString();
+            case KIND_INT:
+            case KIND_INTEGER:
+                return r.nextInt();
+            case KIND_BOOLEAN:
+            case KIND_BOOLEAN_OBJ:
+                return r.nextBoolean() ? Boolean.TRUE : Boolean.FALSE;
+            case KIND_ENUM:
+                return enumValueFromString(fcc, r.nextString());
+            case KIND_DOUBLE:
+            case KIND_DOUBLE_OBJ:
+                return r.nextDouble();
+            case KIND_FLOAT:
+            case KIND_FLOAT_OBJ:
+                return r.nextFloat();
+            case KIND_BYTE:
+            case KIND_BYTE_OBJ:
+                return r.nextByte();
+            case KIND_LONG:
+            case KIND_LONG_OBJ:
+                return r.nextLong();
+            case KIND_SHORT:
+            case KIND_SHORT_OBJ:
+                return r.nextShort();
+            case KIND_CHAR:
+            case KIND_CHARACTER:
+                return r.nextChar();
+            case KIND_ARRAY:
+                return readBinaryArray(r, fcc.getComponentType());
+            case KIND_COLLECTION:
+                // a nested collection has no element type to go by
+                throw new ClassCastException("Cannot resolve element type of " + fcc.getName());
+            case KIND_MAP:
+                return readBinaryMap(r, fcc, null, null, 0);
+            case KIND_NUMBER:
+                if(fcc == Number.class)
+                {
+                    return r.nextNumber();
+                }
+                return numberOf(fcc, r.nextDecimal());
+            default:
+                return readBinaryObject(r, fcc);
+        }
+    }
+
+    /***********************************************************************************************/
+    // exactly sized when the array says how long it is
+    private static Object readBinaryArray(CborReader r, Class<?> fcc) throws IOException, InstantiationException, IllegalAccessException
+    {
+        int major = r.peek();
+        if(major == CborReader.BYTES && fcc == byte.class)
+        {
+            return r.nextBytes();
+        }
+        else if(major != CborReader.ARRAY)
+        {
+            // anything but an array binds to null
+            r.skipValue();
+            return null;
+        }
+
+        int kind = planOf(fcc).kind;
+        int count = r.containerStart();
+        int capacity = count >= 0 ? count : 16;
+        Object arr = Array.newInstance(fcc, capacity);
+        int k = 0;
+
+        for (; count >= 0 ? k < count : !r.consumeBreak(); k++)
+        {
+            if(k == capacity)
             {
-                Array.set(arr, k, (char)a.optInt(k, 0));
+                capacity *= 2;
+                Object n = Array.newInstance(fcc, capacity);
+                System.arraycopy(arr, 0, n, 0, k);
+                arr = n;
             }
-            else
+
+            // plain stores into the typed array for primitives, nothing is boxed
+            switch (kind)
             {
-                Object ii = fcc.newInstance();
-                Array.set(arr, k, fromJson(a.optJSONObject(k), ii));
+                case KIND_INT:
+                    ((int[]) arr)[k] = r.nextInt();
+                    break;
+                case KIND_LONG:
+                    ((long[]) arr)[k] = r.nextLong();
+                    break;
+                case KIND_DOUBLE:
+                    ((double[]) arr)[k] = r.nextDouble();
+                    break;
+                case KIND_FLOAT:
+                    ((float[]) arr)[k] = r.nextFloat();
+                    break;
+                case KIND_SHORT:
+                    ((short[]) arr)[k] = r.nextShort();
+                    break;
+                case KIND_BYTE:
+                    ((byte[]) arr)[k] = r.nextByte();
+                    break;
+                case KIND_BOOLEAN:
+                    ((boolean[]) arr)[k] = r.nextBoolean();
+                    break;
+                case KIND_CHAR:
+                    ((char[]) arr)[k] = r.nextChar();
+                    break;
+                default:
+                    ((Object[]) arr)[k] = readBinaryElement(r, kind, fcc);
+                    break;
             }
         }
 
-        return arr;
+        if(k == capacity)
+        {
+            return arr;
+        }
+
+        Object trimmed = Array.newInstance(fcc, k);
+        System.arraycopy(arr, 0, trimmed, 0, k);
+        return trimmed;
     }
 
     /***********************************************************************************************/
     @SuppressWarnings("unchecked")
-    private static Collection parseList(JSONArray a, Class<?> fcc) throws JSONException, InstantiationException, IllegalAccessException
+    private static Collection readBinaryList(CborReader r, Class<?> fcc) throws IOException, InstantiationException, IllegalAccessException
     {
-        if(a == null)
+        if(r.peek() != CborReader.ARRAY)
         {
+            r.skipValue();
             return null;
         }
 
-        Collection list = new ArrayList<>();
-        for(int k = 0; k < a.length(); ++k)
+        int kind = planOf(fcc).kind;
+        int count = r.containerStart();
+        Collection list = new ArrayList<>(count >= 0 ? count : 16);
+        for (int i = 0; count >= 0 ? i < count : !r.consumeBreak(); i++)
         {
-            // list cannot have primitives as templated value
-            if(canAssign(fcc,String.class))
-            {
-                list.add(a.optString(k, null));
-            }
-            else if(canAssign(fcc,Integer.class))
-            {
-                list.add(a.optInt(k, 0));
-            }
-            else if(canAssign(fcc,Boolean.class))
-            {
-                list.add(a.optBoolean(k, false));
-            }
-            else if(fcc.isEnum())
-            {
-                list.add(enumValueFromString(fcc, a.optString(k, null)));
-            }
-            else if(canAssign(fcc,Double.class))
+            list.add(readBinaryElement(r, kind, fcc));
+        }
+
+        return list;
+    }
+
+    /***********************************************************************************************/
+    // keys are text, converted the same way as json keys
+    @SuppressWarnings("unchecked")
+    private static Map<?, ?> readBinaryMap(CborReader r, Class<?> type, Class<?> keyType, Class<?> valueType, int expected) throws IOException, InstantiationException, IllegalAccessException
+    {
+        if(r.peek() != CborReader.MAP)
+        {
+            r.skipValue();
+            return null;
+        }
+
+        int count = r.containerStart();
+        Map map = newMap(type, count >= 0 ? count : expected);
+        // these two throw on null values
+        boolean nullable = !(map instanceof Hashtable) && !(map instanceof ConcurrentMap);
+        int keyKind = keyType == null ? KIND_STRING : planOf(keyType).kind;
+        int valueKind = valueType == null ? KIND_ANY : planOf(valueType).kind;
+
+        for (int i = 0; count >= 0 ? i < count : !r.consumeBreak(); i++)
+        {
+            Object key = readBinaryKey(r, keyKind, keyType);
+            Object value = readBinaryElement(r, valueKind, valueType);
+            if(value != null || nullable)
             {
-                list.add(a.optDouble(k, 0));
+                map.put(key, value);
             }
-            else if(canAssign(fcc,Float.class))
+        }
+
+        return map;
+    }
+
+    /***********************************************************************************************/
+    private static Object readBinaryKey(CborReader r, int kind, Class<?> keyType) throws IOException
+    {
+        switch (kind)
+        {
+            case KIND_STRING:
+            case KIND_ANY:
+                return r.nextString();
+            case KIND_ENUM:
+                return enumValueFromString(keyType, r.nextString());
+            case KIND_INTEGER:
+                return r.nextInt();
+            case KIND_LONG_OBJ:
+                return r.nextLong();
+            case KIND_DOUBLE_OBJ:
+                return r.nextDouble();
+            case KIND_FLOAT_OBJ:
+                return r.nextFloat();
+            case KIND_SHORT_OBJ:
+                return r.nextShort();
+            case KIND_BYTE_OBJ:
+                return r.nextByte();
+            case KIND_BOOLEAN_OBJ:
+                return r.nextBoolean();
+            case KIND_CHARACTER:
+                return r.nextChar();
+            default:
+                throw new ClassCastException("Cannot bind map keys to " + keyType.getName());
+        }
+    }
+
+    /***********************************************************************************************/
+    // lazily decodes the elements of a top level json array, see iterate()
+    private final static class ElementIterator<T> implements Iterator<T>
+    {
+        private final static int UNKNOWN = 0;
+        private final static int READY = 1;
+        private final static int DONE = 2;
+
+        private final JsonReader r;
+        private final Class<T> classOfT;
+        private final int kind;
+        private boolean started;
+        // header of a positional array, see toJsonCompact()
+        private int[] columns;
+        private int state = UNKNOWN;
+
+        ElementIterator(JsonReader r, Class<T> classOfT)
+        {
+            this.r = r;
+            this.classOfT = classOfT;
+            this.kind = planOf(classOfT).kind;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if(state != UNKNOWN)
             {
-                list.add((float)a.optDouble(k, 0));
+                return state == READY;
             }
-            else if(canAssign(fcc,Byte.class))
+
+            try
             {
-                list.add((byte)a.optInt(k, 0));
+                boolean more;
+                if(!started)
+                {
+                    started = true;
+                    r.expect(ARRAY_START);
+                    more = !r.consume(ARRAY_END) && ((columns = readColumns(r, kind, classOfT)) == null || r.more(ARRAY_END));
+                }
+                else
+                {
+                    more = r.more(ARRAY_END);
+                }
+
+                state = more ? READY : DONE;
+                return more;
             }
-            else if(canAssign(fcc,Long.class))
+            catch (IOException e)
             {
-                list.add(a.optLong(k, 0));
+                state = DONE;
+                throw new IllegalStateException("Error iterating class= " + classOfT, e);
             }
-            else if(canAssign(fcc, Short.class))
+        }
+
+        @Override
+        public T next()
+        {
+            if(!hasNext())
             {
-                list.add((short)a.optInt(k, 0));
+                throw new NoSuchElementException();
             }
-            else if(canAssign(fcc,Character.class))
+
+            state = UNKNOWN;
+            try
             {
-                list.add((char)a.optInt(k, 0));
+                return classOfT.cast(columns != null ? readRow(r, classOfT, columns, null) : readElement(r, kind, classOfT, null));
             }
-            else
+            catch (Exception e)
             {
-                Object ii = fcc.newInstance();
-                list.add(fromJson(a.optJSONObject(k), ii));
+                state = DONE;
+                throw new IllegalStateException("Error iterating class= " + classOfT, e);
             }
         }
 
-        return list;
+        @Override
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /***********************************************************************************************/
+    private static String enumName(Enum value)
+    {
+        // constants with a body are subclasses of the enum
+        return planOf(value.getDeclaringClass()).enumNames[value.ordinal()];
     }
 
     /***********************************************************************************************/
-    @SuppressWarnings("unchecked")
     private static Enum enumValueFromString(Class<?> fc, String name)
     {
         if(name == null)
@@ -711,84 +4407,76 @@ public class StupidJson
             return (Enum)fc.getEnumConstants()[0];
         }
 
+        // both plain and overridden names are in the plan
+        return (Enum)planOf(fc).enumValues.get(name);
+    }
+
+    /***********************************************************************************************/
+    // Number subclasses that are not boxed primitives, from the text of the value; Number itself
+    // gets the type the text calls for. Anything that is not a number reads as zero like for the
+    // other numbers, unknown subclasses bind to null.
+    private static Number numberFromString(Class<?> fc, String text)
+    {
+        if(text == null)
+        {
+            return null;
+        }
+        else if(fc == Number.class)
+        {
+            return JsonNumbers.valueOf(text);
+        }
+
+        BigDecimal value;
         try
         {
-            return Enum.valueOf((Class<Enum>)fc, name);
+            value = new BigDecimal(text.trim());
         }
-        catch (IllegalArgumentException e)
+        catch (NumberFormatException e)
         {
-            Field[] fs = fc.getFields();
-            for(Field f: fs)
-            {
-                Annotation[] annotations = f.getAnnotations();
-                for(Annotation a: annotations)
-                {
-                    if(a instanceof NameOverride)
-                    {
-                        String override = ((NameOverride)a).value();
-                        if(name.equals(override))
-                        {
-                            return Enum.valueOf((Class<Enum>)fc, f.getName());
-                        }
-                    }
-                }
-            }
+            value = BigDecimal.ZERO;
         }
 
-        return null;
+        return numberOf(fc, value);
     }
 
     /***********************************************************************************************/
-    private static boolean canAssign(Class<?> a, Class<?> b)
+    private static Number numberOf(Class<?> fc, BigDecimal value)
     {
-        if(a == b)
+        if(fc == BigDecimal.class)
         {
-            return true;
+            return value;
         }
-
-        for (b = b.getSuperclass(); b != null; b = b.getSuperclass())
+        else if(fc == BigInteger.class)
         {
-            if (a == b) {
-                return true;
-            }
+            return value.toBigInteger();
+        }
+        else if(fc == AtomicLong.class)
+        {
+            return new AtomicLong(value.longValue());
+        }
+        else if(fc == AtomicInteger.class)
+        {
+            return new AtomicInteger(value.intValue());
         }
 
-        return false;
+        return null;
     }
 
     /***********************************************************************************************/
-    private static String escapeString(String v)
+    private static boolean canAssign(Class<?> a, Class<?> b)
     {
-        int idx = v.indexOf(QUOTE);
-        if(idx < 0)
+        if(a == b)
         {
-            return v;
+            return true;
         }
 
-        StringBuilder sbb = new StringBuilder(v.length() + 40);
-        sbb.append(v);
-
-        int added = 0;
-        char prev = 0;
-        while(idx < v.length() + added)
+        for (b = b.getSuperclass(); b != null; b = b.getSuperclass())
         {
-            char c = sbb.charAt(idx);
-            if((QUOTE == c || QUOTE_ESCAPE == c) && QUOTE_ESCAPE != prev)
-            {
-                sbb.insert(idx++, QUOTE_ESCAPE);
-                added++;
-
-                if(QUOTE_ESCAPE == c)
-                {
-                    sbb.insert(idx++, QUOTE_ESCAPE);
-                    added++;
-                }
+            if (a == b) {
+                return true;
             }
-
-            idx++;
-            prev = c;
         }
 
-        return sbb.toString();
+        return false;
     }
 }
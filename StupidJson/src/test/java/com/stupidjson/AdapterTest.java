@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// @GenerateAdapter classes go through their adapter when it is there, AdapterTest_Point_JsonAdapter
+// stands in for what the processor writes; without one they fall back to reflection
+public class AdapterTest
+{
+    @StupidJson.GenerateAdapter
+    public static class Point
+    {
+        public int x = 1;
+        public double weight = 0.5;
+        public String name = "p";
+        public List<String> tags = Arrays.asList("a", "b");
+    }
+
+    @StupidJson.GenerateAdapter
+    public static class Plain
+    {
+        public int x = 1;
+        public String name = "p";
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void writtenThroughTheAdapter()
+    {
+        int calls = AdapterTest_Point_JsonAdapter.calls;
+        String json = StupidJson.toJson(new Point());
+
+        assertEquals("{\"x\":1,\"weight\":0.5,\"name\":\"p\",\"tags\":[\"a\",\"b\"]}", json);
+        assertTrue(AdapterTest_Point_JsonAdapter.calls > calls);
+        assertEquals(json, new String(StupidJson.toJsonBytes(new Point())));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void readThroughTheAdapter()
+    {
+        int calls = AdapterTest_Point_JsonAdapter.calls;
+        Point p = StupidJson.fromJson("{\"name\":\"q\",\"x\":7,\"unknown\":[1],\"weight\":2.25,\"tags\":[\"c\"]}", Point.class);
+
+        assertEquals(7, p.x);
+        assertEquals(2.25, p.weight, 0);
+        assertEquals("q", p.name);
+        assertEquals(Arrays.asList("c"), p.tags);
+        assertTrue(AdapterTest_Point_JsonAdapter.calls > calls);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void roundTripInContainers()
+    {
+        Point[] points = {new Point(), new Point()};
+        points[1].x = -3;
+        points[1].tags = Arrays.asList("z");
+
+        Point[] back = StupidJson.fromJson(StupidJson.toJsonBytes(points), Point[].class);
+        assertEquals(2, back.length);
+        assertEquals(-3, back[1].x);
+        assertEquals(Arrays.asList("z"), back[1].tags);
+        assertEquals(StupidJson.toJson(points), StupidJson.toJson(back));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void reflectionWithoutAnAdapter()
+    {
+        assertEquals("{\"x\":1,\"name\":\"p\"}", StupidJson.toJson(new Plain()));
+        assertEquals(4, StupidJson.fromJson("{\"x\":4}", Plain.class).x);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import java.util.List;
+
+// written the way StupidJsonProcessor writes adapters, counting the calls
+@SuppressWarnings({"unchecked", "rawtypes"})
+public final class AdapterTest_Point_JsonAdapter extends StupidJson.Adapter<AdapterTest.Point>
+{
+    static volatile int calls;
+
+    public AdapterTest_Point_JsonAdapter()
+    {
+        super(new String[] {"x", "weight", "name", "tags"},
+                new Class<?>[] {int.class, double.class, String.class, List.class},
+                new Class<?>[] {null, null, null, String.class},
+                new Class<?>[] {null, null, null, null},
+                new boolean[] {false, false, false, false});
+    }
+
+    @Override
+    protected AdapterTest.Point newInstance()
+    {
+        calls++;
+        return new AdapterTest.Point();
+    }
+
+    @Override
+    protected Object get(AdapterTest.Point o, int field)
+    {
+        calls++;
+        switch (field)
+        {
+            case 0:
+                return o.x;
+            case 1:
+                return o.weight;
+            case 2:
+                return o.name;
+            case 3:
+                return o.tags;
+            default:
+                throw noSuchField(field);
+        }
+    }
+
+    @Override
+    protected int getInt(AdapterTest.Point o, int field)
+    {
+        calls++;
+        switch (field)
+        {
+            case 0:
+                return o.x;
+            default:
+                throw noSuchField(field);
+        }
+    }
+
+    @Override
+    protected double getDouble(AdapterTest.Point o, int field)
+    {
+        calls++;
+        switch (field)
+        {
+            case 1:
+                return o.weight;
+            default:
+                throw noSuchField(field);
+        }
+    }
+
+    @Override
+    protected void set(AdapterTest.Point o, int field, Object v)
+    {
+        calls++;
+        switch (field)
+        {
+            case 2:
+                o.name = (String) v;
+                break;
+            case 3:
+                o.tags = (List) v;
+                break;
+            default:
+                throw noSuchField(field);
+        }
+    }
+
+    @Override
+    protected void setInt(AdapterTest.Point o, int field, int v)
+    {
+        calls++;
+        switch (field)
+        {
+            case 0:
+                o.x = v;
+                break;
+            default:
+                throw noSuchField(field);
+        }
+    }
+
+    @Override
+    protected void setDouble(AdapterTest.Point o, int field, double v)
+    {
+        calls++;
+        switch (field)
+        {
+            case 1:
+                o.weight = v;
+                break;
+            default:
+                throw noSuchField(field);
+        }
+    }
+}
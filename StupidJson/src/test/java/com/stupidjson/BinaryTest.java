@@ -0,0 +1,254 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// toBinary() / fromBinary(): CBOR as RFC 8949 spells it, and the same binding as json
+public class BinaryTest
+{
+    public enum Kind
+    {
+        A,
+        @StupidJson.NameOverride("bee")
+        B
+    }
+
+    public static class Inner
+    {
+        public double d = 0.6;
+    }
+
+    public static class Everything
+    {
+        public int i = -500;
+        public long l = Long.MIN_VALUE;
+        public short s = 300;
+        public byte b = -1;
+        public double d = 1e300;
+        public float f = 1.5f;
+        public boolean flag = true;
+        public char c = 'é';
+        public String text = "hé世😀";
+        public String nothing = null;
+        public Integer boxed = 70000;
+        public Kind kind = Kind.B;
+        public Kind[] kinds = {Kind.A, null, Kind.B};
+        public byte[] bytes = {1, 2, -3};
+        public long[] longs = {Long.MIN_VALUE, -1, 0, 23, 24, 255, 256, 65536, 1L << 32, Long.MAX_VALUE};
+        public float[] floats = {Float.NaN, -0f, Float.POSITIVE_INFINITY};
+        public List<String> list = new LinkedList<>(Arrays.asList("x", "y"));
+        public List<Inner> inners = new ArrayList<>(Arrays.asList(new Inner(), null));
+        public Map<String, Integer> map = new HashMap<>();
+        public Hashtable<Kind, String> enumKeys = new Hashtable<>();
+        public ConcurrentHashMap<Integer, Double> concurrent = new ConcurrentHashMap<>();
+        public BigInteger bigInteger = new BigInteger("-123456789012345678901234567890");
+        public BigInteger smallInteger = BigInteger.valueOf(42);
+        public BigDecimal bigDecimal = new BigDecimal("-98765432109876543210.0123456789");
+        public BigDecimal[] decimals = {new BigDecimal("273.15"), new BigDecimal("1E+400"), null};
+        public AtomicLong atomic = new AtomicLong(7);
+        public Number number = 3;
+
+        @StupidJson.Ignore
+        public int ignored = 5;
+
+        @StupidJson.NameOverride("renamed")
+        public int original = 6;
+    }
+
+    public static class Narrow
+    {
+        public int i = 1;
+        public String extra = "default";
+    }
+
+    public static class Numbers
+    {
+        public Number number;
+        public Number[] numbers;
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void rfc8949Examples() throws IOException
+    {
+        assertEncoded("1a000f4240", 1000000L);
+        assertEncoded("1b000000e8d4a51000", 1000000000000L);
+        assertEncoded("3903e7", -1000L);
+        assertEncoded("3b7fffffffffffffff", Long.MIN_VALUE);
+        assertEncoded("fb3ff199999999999a", 1.1);
+        assertEncoded("fa47c35000", 100000.0f);
+        assertEncoded("6449455446", "IETF");
+        assertEncoded("62c3bc", "ü");
+        assertEncoded("64f0908591", "𐅑");
+        assertEncoded("c249010000000000000000", new BigInteger("18446744073709551616"));
+        assertEncoded("c349010000000000000000", new BigInteger("-18446744073709551617"));
+        assertEncoded("c48221196ab3", new BigDecimal("273.15"));
+
+        assertEquals(new BigDecimal("273.15"), decode("c48221196ab3").nextDecimal());
+        assertEquals(new BigDecimal("18446744073709551615"), decode("1bffffffffffffffff").nextDecimal());
+        assertEquals(new BigDecimal("-18446744073709551616"), decode("3bffffffffffffffff").nextDecimal());
+        assertEquals(1.5, decode("f93e00").nextDouble(), 0);
+        assertEquals(Long.MAX_VALUE, decode("1bffffffffffffffff").nextLong());
+        assertEquals("streaming", decode("7f657374726561646d696e67ff").nextString());
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void roundTripMatchesJson()
+    {
+        Everything src = new Everything();
+        src.map.put("k", 3);
+        src.map.put("z", null);
+        src.enumKeys.put(Kind.B, "v");
+        src.concurrent.put(5, 2.5);
+
+        byte[] binary = StupidJson.toBinary(src);
+        Everything back = StupidJson.fromBinary(binary, Everything.class);
+
+        assertEquals(StupidJson.toJson(src), StupidJson.toJson(back));
+        assertEquals(src.bigInteger, back.bigInteger);
+        assertEquals(src.smallInteger, back.smallInteger);
+        assertEquals(src.bigDecimal, back.bigDecimal);
+        assertArrayEquals(src.decimals, back.decimals);
+        assertEquals(7, back.atomic.get());
+        assertArrayEquals(src.bytes, back.bytes);
+        assertEquals(5, back.ignored);
+        assertEquals(6, back.original);
+        assertTrue(binary.length < StupidJson.toJsonBytes(src).length);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void roots()
+    {
+        assertArrayEquals(new int[] {1, -500, 70000}, StupidJson.fromBinary(StupidJson.toBinary(new int[] {1, -500, 70000}), int[].class));
+        assertArrayEquals(new String[] {"a", null}, StupidJson.fromBinary(StupidJson.toBinary(new String[] {"a", null}), String[].class));
+        assertNull(StupidJson.toBinary(null));
+        assertNull(StupidJson.fromBinary(null, Narrow.class));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void missingFieldsAndLenientValues() throws IOException
+    {
+        Narrow n = StupidJson.fromBinary(StupidJson.toBinary(new Everything()), Narrow.class);
+        assertEquals(-500, n.i);
+        assertNull(n.extra);
+
+        // indefinite length map {"i": "42", "extra": 7}
+        n = StupidJson.fromBinary(hex("bf616962343265657874726107ff"), Narrow.class);
+        assertEquals(42, n.i);
+        assertEquals("7", n.extra);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void numberFieldsKeepTheirType()
+    {
+        Number[] values = {7, 10000000000L, new BigInteger("123456789012345678901234567890"), 1.5, 2.5f,
+                new BigDecimal("273.15")};
+        for (Number value: values)
+        {
+            Numbers src = new Numbers();
+            src.number = value;
+            assertEquals(value, StupidJson.fromBinary(StupidJson.toBinary(src), Numbers.class).number);
+        }
+
+        Numbers src = new Numbers();
+        src.numbers = values;
+        assertArrayEquals(values, StupidJson.fromBinary(StupidJson.toBinary(src), Numbers.class).numbers);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void malformedInputIsNull() throws IOException
+    {
+        assertNull(StupidJson.fromBinary(hex("85"), Narrow.class));
+        assertNull(StupidJson.fromBinary(hex("a261690a"), Narrow.class));
+        assertNull(StupidJson.fromBinary(hex("7a7fffffff"), Narrow.class));
+    }
+
+    /***********************************************************************************************/
+    private static void assertEncoded(String expected, Object value)
+    {
+        CborWriter w = new CborWriter(16);
+        if(value instanceof Long)
+        {
+            w.writeLong((Long) value);
+        }
+        else if(value instanceof Double)
+        {
+            w.writeDouble((Double) value);
+        }
+        else if(value instanceof Float)
+        {
+            w.writeFloat((Float) value);
+        }
+        else if(value instanceof BigInteger)
+        {
+            w.writeBigInteger((BigInteger) value);
+        }
+        else if(value instanceof BigDecimal)
+        {
+            w.writeBigDecimal((BigDecimal) value);
+        }
+        else
+        {
+            w.writeString((String) value);
+        }
+
+        assertArrayEquals(expected, hex(expected), w.toByteArray());
+    }
+
+    /***********************************************************************************************/
+    private static CborReader decode(String hex)
+    {
+        byte[] b = hex(hex);
+        return new CborReader(b, 0, b.length);
+    }
+
+    /***********************************************************************************************/
+    private static byte[] hex(String s)
+    {
+        byte[] b = new byte[s.length() / 2];
+        for (int i = 0; i < b.length; i++)
+        {
+            b[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+        }
+        return b;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+// the per thread output buffers are reused between calls: what one call returns never shares
+// storage with the next one, a call made while the buffer is taken gets its own, and outputs
+// past the pool limit still come out whole
+public class BufferPoolTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Sized
+    {
+        public String text;
+        public int[] numbers;
+
+        Sized(int size)
+        {
+            StringBuilder s = new StringBuilder();
+            for (int i = 0; i < size; i++)
+            {
+                s.append((char) ('a' + i % 26));
+            }
+            text = s.toString();
+            numbers = new int[size / 10];
+            Arrays.fill(numbers, size);
+        }
+    }
+
+    /***********************************************************************************************/
+    @After
+    public void noMetrics()
+    {
+        StupidJson.setMetrics(null);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void consecutiveResultsAreIndependent()
+    {
+        int[] sizes = {10, 100000, 5, 300, 200000, 1, 70000, 50};
+        List<byte[]> bytes = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (int size: sizes)
+        {
+            bytes.add(StupidJson.toJsonBytes(new Sized(size)));
+            texts.add(StupidJson.toJson(new Sized(size)));
+        }
+
+        for (int i = 0; i < sizes.length; i++)
+        {
+            String expected = expected(sizes[i]);
+            assertEquals(expected, texts.get(i));
+            assertArrayEquals(expected.getBytes(UTF_8), bytes.get(i));
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void nestedCallsWhileTheBufferIsTaken()
+    {
+        final List<String> nested = new ArrayList<>();
+        StupidJson.setMetrics(new StupidJson.Metrics()
+        {
+            private boolean inside;
+
+            @Override
+            public void onEncode(Class<?> type, long nanos, long size)
+            {
+                if(!inside)
+                {
+                    // runs before the outer call hands its buffer back
+                    inside = true;
+                    nested.add(StupidJson.toJson(new Sized(7)));
+                    nested.add(new String(StupidJson.toJsonBytes(new Sized(9)), UTF_8));
+                }
+            }
+        });
+
+        assertEquals(expected(1000), StupidJson.toJson(new Sized(1000)));
+        assertEquals(Arrays.asList(expected(7), expected(9)), nested);
+        assertEquals(expected(11), StupidJson.toJson(new Sized(11)));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void threadsKeepTheirOwn() throws Exception
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++)
+            {
+                final int seed = t;
+                results.add(pool.submit(new Callable<Boolean>()
+                {
+                    @Override
+                    public Boolean call()
+                    {
+                        for (int i = 0; i < 200; i++)
+                        {
+                            int size = (seed * 31 + i * 97) % 3000;
+                            String expected = expected(size);
+                            if(!expected.equals(StupidJson.toJson(new Sized(size))) ||
+                                    !Arrays.equals(expected.getBytes(UTF_8), StupidJson.toJsonBytes(new Sized(size))))
+                            {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result: results)
+            {
+                assertEquals(true, result.get());
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /***********************************************************************************************/
+    private static String expected(int size)
+    {
+        Sized s = new Sized(size);
+        StringBuilder json = new StringBuilder("{\"text\":\"").append(s.text).append("\",\"numbers\":[");
+        for (int i = 0; i < s.numbers.length; i++)
+        {
+            json.append(i > 0 ? "," : "").append(size);
+        }
+        return json.append("]}").toString();
+    }
+}
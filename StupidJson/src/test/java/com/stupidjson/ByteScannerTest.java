@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// the scanner in use (a vector one when it is there) finds what the scalar one finds, and skipping
+// with it lands where the char readers land, across window boundaries too
+public class ByteScannerTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+    private final static byte[] ALPHABET = "\"\\{}[]ab:, {[é世".getBytes(UTF_8);
+
+    /***********************************************************************************************/
+    @Test
+    public void sameAsScalar()
+    {
+        ByteScanner scanner = ByteScanner.INSTANCE;
+        ByteScanner scalar = new ByteScanner();
+        Random random = new Random(7);
+        for (int k = 0; k < 2000; k++)
+        {
+            byte[] b = new byte[random.nextInt(300)];
+            for (int i = 0; i < b.length; i++)
+            {
+                // mostly filler, including bytes with the high bit and ones next to the brackets
+                b[i] = random.nextInt(8) == 0 ? ALPHABET[random.nextInt(ALPHABET.length)] : (byte) random.nextInt(256);
+            }
+
+            int from = b.length == 0 ? 0 : random.nextInt(b.length);
+            assertEquals(scalar.quoteOrEscape(b, from, b.length), scanner.quoteOrEscape(b, from, b.length));
+            assertEquals(scalar.quoteOrBracket(b, from, b.length), scanner.quoteOrBracket(b, from, b.length));
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void skipLandsOnTheSameValue() throws IOException
+    {
+        Random random = new Random(11);
+        for (int k = 0; k < 200; k++)
+        {
+            StringBuilder sb = new StringBuilder("{\"skip\":");
+            randomValue(random, sb, 0);
+            sb.append(",\"keep\":\"x").append(k).append("\"}");
+            String json = sb.toString();
+            byte[] bytes = json.getBytes(UTF_8);
+
+            JsonReader[] readers = {
+                    new CharJsonReader(json),
+                    new CharJsonReader(new OneByOneReader(json)),
+                    new ByteJsonReader(bytes, 0, bytes.length),
+                    new ByteJsonReader(new OneByOneStream(bytes))
+            };
+
+            for (JsonReader r: readers)
+            {
+                r.expect('{');
+                assertEquals("skip", r.nextName());
+                r.skipValue();
+                r.expect(',');
+                assertEquals("keep", r.nextName());
+                assertEquals(json, "x" + k, r.nextString());
+            }
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test(expected = JsonReader.SyntaxException.class)
+    public void unclosedContainer() throws IOException
+    {
+        byte[] bytes = "[{\"a\":[1,\"]\"]}".getBytes(UTF_8);
+        new ByteJsonReader(bytes, 0, bytes.length).skipValue();
+    }
+
+    /***********************************************************************************************/
+    private static void randomValue(Random random, StringBuilder sb, int depth)
+    {
+        switch (depth > 4 ? 2 + random.nextInt(2) : random.nextInt(4))
+        {
+            case 0:
+                sb.append('[');
+                for (int n = random.nextInt(5), i = 0; i < n; i++)
+                {
+                    sb.append(i > 0 ? "," : "");
+                    randomValue(random, sb, depth + 1);
+                }
+                sb.append(']');
+                break;
+
+            case 1:
+                sb.append('{');
+                for (int n = random.nextInt(5), i = 0; i < n; i++)
+                {
+                    sb.append(i > 0 ? "," : "").append("\"k").append(i).append("\": ");
+                    randomValue(random, sb, depth + 1);
+                }
+                sb.append('}');
+                break;
+
+            case 2:
+                sb.append('"');
+                for (int n = random.nextInt(80), i = 0; i < n; i++)
+                {
+                    String[] parts = {"a", "\\\"", "\\\\", "{", "]", "é", "世", "\\u005d", " "};
+                    sb.append(parts[random.nextInt(parts.length)]);
+                }
+                sb.append('"');
+                break;
+
+            default:
+                sb.append(random.nextBoolean() ? "-12.5e3" : "null");
+                break;
+        }
+    }
+
+    /***********************************************************************************************/
+    // the smallest windows there can be
+    private final static class OneByOneStream extends InputStream
+    {
+        private final InputStream in;
+
+        OneByOneStream(byte[] b)
+        {
+            in = new ByteArrayInputStream(b);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            return in.read(b, off, Math.min(1, len));
+        }
+    }
+
+    /***********************************************************************************************/
+    private final static class OneByOneReader extends Reader
+    {
+        private final Reader in;
+
+        OneByOneReader(String s)
+        {
+            in = new StringReader(s);
+        }
+
+        @Override
+        public int read(char[] b, int off, int len) throws IOException
+        {
+            return in.read(b, off, Math.min(1, len));
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+// toJsonCompact(): arrays of objects of one class as a header of names and rows of values, read
+// back by fromJson() and iterate(), in parallel too
+public class CompactTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Item
+    {
+        public int id;
+        public String name;
+        public double[] values;
+    }
+
+    public static class Special extends Item
+    {
+        public boolean special = true;
+    }
+
+    public static class Order
+    {
+        public long number;
+        public List<Item> items;
+        public Item[] extra;
+        public String[] tags;
+    }
+
+    public static class Grid
+    {
+        public Item[][] rows;
+        public List<Item[]> pages;
+    }
+
+    /***********************************************************************************************/
+    @After
+    public void reset()
+    {
+        StupidJson.setParallelEncodeThreshold(0);
+        StupidJson.setParallelDecodeThreshold(0);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void layout()
+    {
+        Item[] items = items(2);
+        items[1].values = null;
+        assertEquals("[[\"id\",\"name\",\"values\"],[0,\"item \\\"0\\\"\",[0.0,0.5]],[1,\"item \\\"1\\\"\",null]]",
+                StupidJson.toJsonCompact(items));
+
+        // null elements stay null rows, nested arrays of objects get their own header
+        Order order = new Order();
+        order.number = 9;
+        order.items = Arrays.asList(items[0], null);
+        order.tags = new String[] {"a"};
+        assertEquals("{\"number\":9,\"items\":[[\"id\",\"name\",\"values\"],[0,\"item \\\"0\\\"\",[0.0,0.5]],null]," +
+                "\"extra\":null,\"tags\":[\"a\"]}", StupidJson.toJsonCompact(order));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void plainWhenNotOneClass()
+    {
+        List<Item> mixed = new ArrayList<>(Arrays.asList(items(2)));
+        mixed.add(new Special());
+        assertEquals(StupidJson.toJson(mixed), StupidJson.toJsonCompact(mixed));
+
+        assertEquals("[]", StupidJson.toJsonCompact(new Item[0]));
+        assertEquals("[null,null]", StupidJson.toJsonCompact(new Item[2]));
+        assertEquals("[1,2]", StupidJson.toJsonCompact(new int[] {1, 2}));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void roundTrip() throws IOException
+    {
+        Order order = new Order();
+        order.number = 3;
+        order.items = Arrays.asList(items(50));
+        order.extra = items(3);
+
+        String json = StupidJson.toJsonCompact(order);
+        byte[] bytes = StupidJson.toJsonCompactBytes(order);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StupidJson.toJsonCompact(order, out);
+
+        assertArrayEquals(json.getBytes(UTF_8), bytes);
+        assertArrayEquals(bytes, out.toByteArray());
+
+        String plain = StupidJson.toJson(order);
+        assertEquals(plain, StupidJson.toJson(StupidJson.fromJson(json, Order.class)));
+        assertEquals(plain, StupidJson.toJson(StupidJson.fromJson(bytes, Order.class)));
+        assertEquals(plain, StupidJson.toJson(StupidJson.fromJson(new ByteArrayInputStream(bytes), Order.class)));
+        assertEquals(plain, StupidJson.toJson(StupidJson.parseLazy(bytes).as(Order.class)));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void nestedRowsRoundTrip()
+    {
+        Item[][] rows = {items(3), null, items(2), new Item[0]};
+        String json = StupidJson.toJsonCompact(rows);
+        String plain = StupidJson.toJson(rows);
+        assertEquals(plain, StupidJson.toJson(StupidJson.fromJson(json, Item[][].class)));
+        assertEquals(plain, StupidJson.toJson(StupidJson.fromJson(json.getBytes(UTF_8), Item[][].class)));
+
+        Grid grid = new Grid();
+        grid.rows = rows;
+        grid.pages = Arrays.asList(items(2), null);
+        json = StupidJson.toJsonCompact(grid);
+        plain = StupidJson.toJson(grid);
+        assertEquals(plain, StupidJson.toJson(StupidJson.fromJson(json, Grid.class)));
+        assertEquals(plain, StupidJson.toJson(StupidJson.parseLazy(json.getBytes(UTF_8)).as(Grid.class)));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void headerDecidesTheColumns()
+    {
+        // rows bind by the header, whatever the order; a row that is not an array binds to null
+        String json = "[[\"name\",\"unknown\",\"id\"],[\"a\",{\"x\":[1]},1],[\"b\",2,2,\"extra\"],[\"c\"],null,{\"id\":5}]";
+        Item[] items = StupidJson.fromJson(json, Item[].class);
+
+        assertEquals(5, items.length);
+        assertEquals("a", items[0].name);
+        assertEquals(1, items[0].id);
+        assertEquals(2, items[1].id);
+        assertEquals("c", items[2].name);
+        assertEquals(0, items[2].id);
+        assertNull(items[3]);
+        assertNull(items[4]);
+        assertNull(items[0].values);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void projected()
+    {
+        byte[] bytes = StupidJson.toJsonCompactBytes(items(10));
+        Item[] items = StupidJson.fromJson(bytes, Item[].class, StupidJson.Projection.of(Item[].class, "name"));
+
+        assertEquals(10, items.length);
+        assertEquals("item \"7\"", items[7].name);
+        assertEquals(0, items[7].id);
+        assertNull(items[7].values);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void iterated()
+    {
+        Item[] src = items(100);
+        byte[] bytes = StupidJson.toJsonCompactBytes(src);
+        List<Iterator<Item>> iterators = Arrays.asList(
+                StupidJson.iterate(new ByteArrayInputStream(bytes), Item.class),
+                StupidJson.iterate(new StringReader(new String(bytes, UTF_8)), Item.class));
+
+        for (Iterator<Item> it: iterators)
+        {
+            for (Item expected: src)
+            {
+                assertEquals(StupidJson.toJson(expected), StupidJson.toJson(it.next()));
+            }
+            assertFalse(it.hasNext());
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void parallel()
+    {
+        assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+
+        Item[] src = items(20000);
+        String sequential = StupidJson.toJsonCompact(src);
+        String plain = StupidJson.toJson(src);
+
+        StupidJson.setParallelEncodeThreshold(1000);
+        StupidJson.setParallelDecodeThreshold(1000);
+
+        assertEquals(sequential, StupidJson.toJsonCompact(src));
+        assertEquals(sequential, StupidJson.toJsonCompact(Arrays.asList(src)));
+        assertEquals(plain, StupidJson.toJson(StupidJson.fromJson(sequential, Item[].class)));
+        assertEquals(plain, StupidJson.toJson(StupidJson.fromJson(sequential.getBytes(UTF_8), Item[].class)));
+    }
+
+    /***********************************************************************************************/
+    private static Item[] items(int n)
+    {
+        Item[] items = new Item[n];
+        for (int i = 0; i < n; i++)
+        {
+            items[i] = new Item();
+            items[i].id = i;
+            items[i].name = "item \"" + i + "\"";
+            items[i].values = new double[] {i, i + 0.5};
+        }
+        return items;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+// strings are escaped in one pass: short escapes where JSON has them, \\u00XX for the other
+// control chars, everything else copied as is
+public class EscapingTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Text
+    {
+        public String s;
+    }
+
+    public static class Keys
+    {
+        public Map<String, String> map;
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void escapes()
+    {
+        assertEquals("{\"s\":\"\\\"q\\\" \\\\ / \\b\\t\\n\\f\\r \\u0000\\u0001\\u001f \u007f <a href='x'>\"}",
+                json("\"q\" \\ / \b\t\n\f\r \u0000\u0001\u001f \u007f <a href='x'>"));
+        assertEquals("{\"s\":\"\"}", json(""));
+        assertEquals("{\"s\":\"\\\\\"}", json("\\"));
+        assertEquals("{\"s\":\"caf\u00e9 \u4e16 \ud83d\ude00\"}", json("caf\u00e9 \u4e16 \ud83d\ude00"));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void keysAreEscapedToo()
+    {
+        Keys keys = new Keys();
+        keys.map = new LinkedHashMap<>();
+        keys.map.put("a\"b", "1");
+        keys.map.put("tab\t", "\n");
+
+        String json = StupidJson.toJson(keys);
+        assertEquals("{\"map\":{\"a\\\"b\":\"1\",\"tab\\t\":\"\\n\"}}", json);
+        assertEquals(keys.map, StupidJson.fromJson(json, Keys.class).map);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void roundTrip()
+    {
+        Random random = new Random(11);
+        String alphabet = "\"\\/\b\t\n\f\r\u0000\u0007\u001f\u007fabc <>&'\u00e9\u4e16\ud83d\ude00";
+        for (int k = 0; k < 200; k++)
+        {
+            StringBuilder s = new StringBuilder();
+            int length = random.nextInt(k < 100 ? 40 : 5000);
+            while(s.length() < length)
+            {
+                int i = random.nextInt(alphabet.length() - 1);
+                // keep the surrogate pair together
+                s.append(alphabet.charAt(i) == '\ud83d' ? "\ud83d\ude00" : alphabet.substring(i, i + 1));
+            }
+
+            Text text = new Text();
+            text.s = s.toString();
+            String json = StupidJson.toJson(text);
+            byte[] bytes = StupidJson.toJsonBytes(text);
+
+            assertEquals(json, new String(bytes, UTF_8));
+            assertEquals(text.s, StupidJson.fromJson(json, Text.class).s);
+            assertEquals(text.s, StupidJson.fromJson(bytes, Text.class).s);
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void quoteHeavy()
+    {
+        StringBuilder s = new StringBuilder();
+        StringBuilder expected = new StringBuilder("{\"s\":\"");
+        for (int i = 0; i < 100000; i++)
+        {
+            s.append("\"\\");
+            expected.append("\\\"\\\\");
+        }
+
+        assertEquals(expected.append("\"}").toString(), json(s.toString()));
+    }
+
+    /***********************************************************************************************/
+    private static String json(String s)
+    {
+        Text text = new Text();
+        text.s = s;
+        return StupidJson.toJson(text);
+    }
+}
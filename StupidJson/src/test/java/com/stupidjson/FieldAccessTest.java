@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// typed reflective access: each primitive through its own type, references through get() / set()
+public class FieldAccessTest
+{
+    public static class Fields
+    {
+        public int i = -1;
+        public short s = -2;
+        public byte b = -3;
+        public char c = 'c';
+        public long l = Long.MIN_VALUE;
+        public float f = 0.5f;
+        public double d = 1e300;
+        public boolean z = true;
+        public String text = "t";
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void readsAndWritesThroughTheFieldType() throws Exception
+    {
+        Fields o = new Fields();
+        assertEquals(-1, access("i").getInt(o));
+        assertEquals(-2, access("s").getInt(o));
+        assertEquals(-3, access("b").getInt(o));
+        assertEquals('c', access("c").getInt(o));
+        assertEquals(Long.MIN_VALUE, access("l").getLong(o));
+        assertEquals(0.5f, access("f").getFloat(o), 0);
+        assertEquals(1e300, access("d").getDouble(o), 0);
+        assertTrue(access("z").getBoolean(o));
+        assertEquals("t", access("text").get(o));
+        assertEquals(-3, ((Number) access("b").get(o)).intValue());
+
+        access("i").setInt(o, 7);
+        access("s").setShort(o, (short) 8);
+        access("b").setByte(o, (byte) 9);
+        access("c").setChar(o, 'x');
+        access("l").setLong(o, 10);
+        access("f").setFloat(o, 11);
+        access("d").setDouble(o, 12);
+        access("z").setBoolean(o, false);
+        access("text").set(o, null);
+        assertEquals("7 8 9 x 10 11.0 12.0 false null", o.i + " " + o.s + " " + o.b + " " + o.c + " " + o.l + " " + o.f + " " + o.d + " " + o.z + " " + o.text);
+    }
+
+    /***********************************************************************************************/
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongReferenceTypeIsRejected() throws Exception
+    {
+        access("text").set(new Fields(), 5);
+    }
+
+    /***********************************************************************************************/
+    private static FieldAccess access(String name) throws NoSuchFieldException
+    {
+        Field f = Fields.class.getField(name);
+        return new FieldAccess.Reflect(f);
+    }
+}
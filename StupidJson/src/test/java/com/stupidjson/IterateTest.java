@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// iterate(): the elements of a top level array one at a time, read from the stream as they are asked for
+public class IterateTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Item
+    {
+        public int id;
+        public String name;
+    }
+
+    // counts what was read from it
+    private final static class CountingStream extends InputStream
+    {
+        private final InputStream in;
+        int read;
+
+        CountingStream(byte[] b)
+        {
+            in = new ByteArrayInputStream(b);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int c = in.read();
+            read += c < 0 ? 0 : 1;
+            return c;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = in.read(b, off, len);
+            read += Math.max(n, 0);
+            return n;
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void elementsComeAsTheyAreRead()
+    {
+        List<Item> items = new ArrayList<>();
+        for (int k = 0; k < 50000; k++)
+        {
+            Item i = new Item();
+            i.id = k;
+            i.name = k % 10 == 0 ? null : "n" + k;
+            items.add(i);
+        }
+        byte[] json = StupidJson.toJsonBytes(items);
+        CountingStream in = new CountingStream(json);
+
+        Iterator<Item> it = StupidJson.iterate(in, Item.class);
+        assertTrue(it.hasNext());
+        assertEquals(0, it.next().id);
+        assertTrue(in.read < json.length / 10);
+
+        int count = 1;
+        while(it.hasNext())
+        {
+            Item i = it.next();
+            assertEquals(count, i.id);
+            assertEquals(count % 10 == 0 ? null : "n" + count, i.name);
+            count++;
+        }
+        assertEquals(50000, count);
+        assertEquals(json.length, in.read);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void scalarsNullsAndEmptyArrays()
+    {
+        Iterator<Integer> ints = StupidJson.iterate(new StringReader(" [ 1 , null, \"3\" ] "), Integer.class);
+        assertEquals(Integer.valueOf(1), ints.next());
+        assertNull(ints.next());
+        assertEquals(Integer.valueOf(3), ints.next());
+        assertFalse(ints.hasNext());
+        assertFalse(ints.hasNext());
+
+        Iterator<Item> empty = StupidJson.iterate(new ByteArrayInputStream("[]".getBytes(UTF_8)), Item.class);
+        assertFalse(empty.hasNext());
+        try
+        {
+            empty.next();
+            fail();
+        }
+        catch (NoSuchElementException e)
+        {
+            // expected
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void malformedJsonThrowsFromTheIterator()
+    {
+        Iterator<Item> it = StupidJson.iterate(new StringReader("[{\"id\":1},{\"id\":"), Item.class);
+        assertEquals(1, it.next().id);
+        try
+        {
+            it.next();
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assertTrue(e.getCause() instanceof JsonReader.SyntaxException);
+        }
+        assertFalse(it.hasNext());
+
+        try
+        {
+            StupidJson.iterate(new StringReader("{\"id\":1}"), Item.class).hasNext();
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            // not an array
+        }
+    }
+}
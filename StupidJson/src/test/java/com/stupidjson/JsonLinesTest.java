@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// json lines: one record per line out, batches of lines decoded on an executor back in
+public class JsonLinesTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Record
+    {
+        public int id;
+        public String text;
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void oneRecordPerLine() throws IOException
+    {
+        List<Record> records = records(3);
+        records.add(1, null);
+        String expected = StupidJson.toJson(records.get(0)) + "\nnull\n" + StupidJson.toJson(records.get(2)) + "\n" +
+                StupidJson.toJson(records.get(3)) + "\n";
+
+        assertEquals(expected, new String(StupidJson.toJsonLines(records), UTF_8));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StupidJson.toJsonLines(records, out);
+        assertEquals(expected, out.toString("UTF-8"));
+        assertNull(StupidJson.toJsonLines(null));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void blankLinesSkippedMalformedOnesNull()
+    {
+        byte[] json = "{\"id\":1}\n\n  \r\n{\"id\":\n{\"id\":3,\"text\":\"a\\nb\"}\r\n{\"id\":4}".getBytes(UTF_8);
+        List<Record> back = StupidJson.fromJsonLines(json, Record.class);
+
+        assertEquals(4, back.size());
+        assertEquals(1, back.get(0).id);
+        assertNull(back.get(1));
+        assertEquals("a\nb", back.get(2).text);
+        assertEquals(4, back.get(3).id);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void orderKeptOrNotOnAnyExecutor() throws IOException
+    {
+        List<Record> records = records(300000);
+        byte[] json = StupidJson.toJsonLines(records);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            // several batches, and several chunks of the stream
+            assertTrue(json.length > 4 << 20);
+            assertSameRecords(records, StupidJson.fromJsonLines(json, Record.class), true);
+            assertSameRecords(records, StupidJson.fromJsonLines(json, Record.class, executor, false), false);
+            assertSameRecords(records, StupidJson.fromJsonLines(new ByteArrayInputStream(json), Record.class, executor, true), true);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test(timeout = 60000)
+    public void fromInsideForkJoinPool() throws Exception
+    {
+        final List<Record> records = records(100000);
+        final byte[] json = StupidJson.toJsonLines(records);
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try
+        {
+            // every worker waiting on batches queued on its own pool
+            List<Callable<List<Record>>> tasks = new ArrayList<>();
+            for (int k = 0; k < 2 * pool.getParallelism(); k++)
+            {
+                final boolean keepOrder = k % 2 == 0;
+                tasks.add(new Callable<List<Record>>()
+                {
+                    @Override
+                    public List<Record> call()
+                    {
+                        return StupidJson.fromJsonLines(json, Record.class, pool, keepOrder);
+                    }
+                });
+            }
+            for (Future<List<Record>> f: pool.invokeAll(tasks))
+            {
+                assertSameRecords(records, f.get(), false);
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void lineLongerThanAStreamChunk() throws IOException
+    {
+        Record big = new Record();
+        char[] text = new char[3 << 20];
+        Arrays.fill(text, 'é');
+        big.text = new String(text);
+        List<Record> records = records(10);
+        records.add(5, big);
+
+        byte[] json = StupidJson.toJsonLines(records);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            List<Record> back = StupidJson.fromJsonLines(new ByteArrayInputStream(json), Record.class, executor, true);
+            assertEquals(11, back.size());
+            assertEquals(big.text, back.get(5).text);
+            assertEquals(9, back.get(10).id);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /***********************************************************************************************/
+    private static List<Record> records(int n)
+    {
+        List<Record> records = new ArrayList<>();
+        for (int k = 0; k < n; k++)
+        {
+            Record r = new Record();
+            r.id = k;
+            r.text = "t" + k;
+            records.add(r);
+        }
+        return records;
+    }
+
+    /***********************************************************************************************/
+    private static void assertSameRecords(List<Record> expected, List<Record> actual, boolean ordered)
+    {
+        assertEquals(expected.size(), actual.size());
+        if(ordered)
+        {
+            assertArrayEquals(StupidJson.toJsonLines(expected), StupidJson.toJsonLines(actual));
+            return;
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        for (Record r: actual)
+        {
+            ids.add(r.id);
+        }
+        assertEquals(expected.size(), ids.size());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// the pull tokenizer on its own: strings, skipping and errors, the same over chars, bytes and streams
+public class JsonReaderTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final static String DOC = " {\"s\" : \"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\t\\u00e9\\ud83d\\ude00x\",\n" +
+            "\t\"skip\":[1,{\"a\":\"]}\\\"\"},[[]],-2.5e3,true,null],\r\n\"raw\":{\"k\":[1, 2]},\"n\":-12 } ";
+
+    /***********************************************************************************************/
+    @Test
+    public void everySourceTokenizesTheSame() throws IOException
+    {
+        byte[] bytes = DOC.getBytes(UTF_8);
+        JsonReader[] readers = {
+                new CharJsonReader(DOC),
+                new CharJsonReader(new StringReader(DOC)),
+                new ByteJsonReader(bytes, 0, bytes.length),
+                new ByteJsonReader(new ByteArrayInputStream(bytes)),
+                new ByteJsonReader(Channels.newChannel(new ByteArrayInputStream(bytes)))
+        };
+
+        for (JsonReader r: readers)
+        {
+            r.expect('{');
+            assertFalse(r.consume('}'));
+            assertEquals("s", r.nextName());
+            assertEquals("a\"b\\c/d\b\f\n\r\t\u00e9\ud83d\ude00x", r.nextString());
+            assertTrue(r.more('}'));
+            assertEquals("skip", r.nextName());
+            r.skipValue();
+            assertTrue(r.more('}'));
+            assertEquals("raw", r.nextName());
+            assertEquals("{\"k\":[1, 2]}", r.nextRaw());
+            assertTrue(r.more('}'));
+            assertEquals("n", r.nextName());
+            assertEquals(-12, r.nextLong());
+            assertFalse(r.more('}'));
+            assertEquals(JsonReader.EOF, r.peek());
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void lenientScalars() throws IOException
+    {
+        JsonReader r = new CharJsonReader("[null,true,1e2,\"7\",{\"a\":1}]");
+        r.expect('[');
+        assertFalse(r.consume(']'));
+        assertNull(r.nextString());
+        assertTrue(r.more(']'));
+        assertEquals("true", r.nextString());
+        assertTrue(r.more(']'));
+        assertEquals("1e2", r.nextString());
+        assertTrue(r.more(']'));
+        assertEquals(7, r.nextInt());
+        assertTrue(r.more(']'));
+        assertEquals("{\"a\":1}", r.nextString());
+        assertFalse(r.more(']'));
+
+        // escaped for no reason
+        assertEquals("x'", new CharJsonReader("\"\\x\\'\"").nextString());
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void malformedInputReportsTheOffset() throws IOException
+    {
+        assertSyntaxError("{\"a\" 1}", "Expected ':' at offset 5");
+        assertSyntaxError("{\"a\":1 \"b\":2}", "Expected ',' or '}' at offset 7");
+        assertSyntaxError("\"\\u12\"", null);
+        assertSyntaxError("tru]", null);
+        assertSyntaxError("\"open", null);
+    }
+
+    /***********************************************************************************************/
+    // reads an object of strings, or a single string
+    private static void assertSyntaxError(String json, String message) throws IOException
+    {
+        byte[] bytes = json.getBytes(UTF_8);
+        JsonReader[] readers = {new CharJsonReader(json), new ByteJsonReader(bytes, 0, bytes.length)};
+        for (JsonReader r: readers)
+        {
+            try
+            {
+                if(r.consume('{'))
+                {
+                    do
+                    {
+                        r.nextName();
+                        r.nextString();
+                    }
+                    while(r.more('}'));
+                }
+                else
+                {
+                    r.nextString();
+                }
+                fail(json);
+            }
+            catch(JsonReader.SyntaxException e)
+            {
+                assertTrue(e.getMessage(), message == null || e.getMessage().equals(message));
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// parseLazy(): navigation over the index and decoding on demand, the same over text and bytes
+public class LazyTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final static String DOC = "{\"id\":42,\"name\":\"caf\\u00e9 \\\"x\\\"\",\"ok\":true,\"none\":null,\"ratio\":-2.5e-1," +
+            "\"big\":9007199254740993,\"tags\":[\"a\",\"b\",{\"deep\":[1,[2,3]]}],\"owner\":{\"id\":7,\"name\":\"ann\"}," +
+            "\"empty\":{},\"list\":[],\"id\":43,\"text\":\"] } , \\\\\"}";
+
+    public static class Owner
+    {
+        public int id;
+        public String name;
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void navigation()
+    {
+        StupidJson.Node[] roots = {StupidJson.parseLazy(DOC), StupidJson.parseLazy(DOC.getBytes(UTF_8))};
+        for (StupidJson.Node root: roots)
+        {
+            assertTrue(root.isObject());
+            assertEquals(12, root.size());
+
+            // the last one of a repeated name
+            assertEquals(43, root.get("id").asInt());
+            assertEquals(42, root.get(0).asInt());
+            assertEquals("café \"x\"", root.get("name").asString());
+            assertTrue(root.get("ok").asBoolean());
+            assertTrue(root.get("none").exists());
+            assertTrue(root.get("none").isNull());
+            assertEquals(-0.25, root.get("ratio").asDouble(), 0);
+            assertEquals(9007199254740993L, root.get("big").asLong());
+            assertEquals("] } , \\", root.get("text").asString());
+
+            StupidJson.Node tags = root.get("tags");
+            assertTrue(tags.isArray());
+            assertEquals(3, tags.size());
+            assertEquals("b", tags.get(1).asString());
+            assertEquals(3, tags.get(2).get("deep").get(1).get(1).asInt());
+            assertEquals("[1,[2,3]]", tags.get(2).get("deep").toString());
+
+            assertEquals(0, root.get("empty").size());
+            assertTrue(root.get("empty").isObject());
+            assertEquals(0, root.get("list").size());
+            assertEquals("{\"id\":7,\"name\":\"ann\"}", root.get("owner").asString());
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void missingReadsAsNothing()
+    {
+        StupidJson.Node root = StupidJson.parseLazy(DOC);
+        StupidJson.Node missing = root.get("nope").get(3).get("deeper");
+
+        assertFalse(missing.exists());
+        assertTrue(missing.isNull());
+        assertFalse(missing.isObject());
+        assertEquals(0, missing.size());
+        assertNull(missing.asString());
+        assertEquals(0, missing.asInt());
+        assertEquals(0, missing.asLong());
+        assertEquals(0, missing.asDouble(), 0);
+        assertFalse(missing.asBoolean());
+        assertNull(missing.as(Owner.class));
+        assertEquals("null", missing.toString());
+
+        assertFalse(root.get("tags").get(3).exists());
+        assertFalse(root.get("tags").get(-1).exists());
+        assertFalse(root.get("id").get("x").exists());
+        assertFalse(root.get(13).exists());
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void bindsLikeFromJson()
+    {
+        StupidJson.Node root = StupidJson.parseLazy(DOC.getBytes(UTF_8));
+
+        Owner owner = root.get("owner").as(Owner.class);
+        assertEquals(7, owner.id);
+        assertEquals("ann", owner.name);
+
+        String[] tags = StupidJson.parseLazy("{\"t\":[\"x\",\"y\"]}").get("t").as(String[].class);
+        assertEquals(Arrays.asList("x", "y"), Arrays.asList(tags));
+
+        assertEquals(0, root.get("list").as(Owner[].class).length);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void scalarRootsAndMalformed()
+    {
+        assertEquals(5, StupidJson.parseLazy(" 5 ").asInt());
+        assertEquals("s", StupidJson.parseLazy("\"s\"").asString());
+        assertTrue(StupidJson.parseLazy("null").isNull());
+
+        assertNull(StupidJson.parseLazy("{\"a\":[1,2}"));
+        assertNull(StupidJson.parseLazy("{\"a\":1".getBytes(UTF_8)));
+        assertNull(StupidJson.parseLazy((String) null));
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// maps of every kind of key and value, and the Number subclasses that are not boxed primitives
+public class MapTest
+{
+    public enum Color
+    {
+        RED,
+        @StupidJson.NameOverride("g")
+        GREEN
+    }
+
+    public static class Value
+    {
+        public int v;
+    }
+
+    public static class Maps
+    {
+        public Map<String, Integer> plain = new LinkedHashMap<>();
+        public HashMap<Long, String> numericKeys = new HashMap<>();
+        public Hashtable<Color, Double> enumKeys = new Hashtable<>();
+        public ConcurrentHashMap<Integer, Value> objects = new ConcurrentHashMap<>();
+        public TreeMap<String, Boolean> sorted = new TreeMap<>();
+        public Map<String, String> absent = null;
+    }
+
+    public static class Box<T>
+    {
+        public String label;
+    }
+
+    public static class Nested
+    {
+        public Map<String, Box<Integer>> boxes;
+        public Map<String, List<String>> lists;
+    }
+
+    public static class Scores extends HashMap<String, Integer>
+    {
+        private final static long serialVersionUID = 1L;
+    }
+
+    public static class Numbers
+    {
+        public BigDecimal[] decimals = {new BigDecimal("0.1"), null, new BigDecimal("-2E+5")};
+        public BigInteger[] integers = {BigInteger.ONE, new BigInteger("123456789012345678901234567890")};
+        public AtomicLong[] atomics = {new AtomicLong(5)};
+        public AtomicInteger[] atomicInts = {new AtomicInteger(-7)};
+        public Number[] numbers = {1, 2};
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void everyMapKindRoundTrips()
+    {
+        Maps src = new Maps();
+        src.plain.put("b", 2);
+        src.plain.put("a", null);
+        src.numericKeys.put(-1L, "minus");
+        src.numericKeys.put(1L << 40, "big");
+        src.enumKeys.put(Color.GREEN, 0.5);
+        Value value = new Value();
+        value.v = 9;
+        src.objects.put(3, value);
+        src.sorted.put("z", true);
+        src.sorted.put("y", false);
+
+        String json = StupidJson.toJson(src);
+        assertTrue(json.contains("\"plain\":{\"b\":2,\"a\":null}"));
+        assertTrue(json.contains("\"enumKeys\":{\"g\":0.5}"));
+
+        Maps back = StupidJson.fromJson(json, Maps.class);
+        assertEquals(json, StupidJson.toJson(back));
+        assertEquals(LinkedHashMap.class, back.plain.getClass());
+        assertEquals("big", back.numericKeys.get(1L << 40));
+        assertEquals(0.5, back.enumKeys.get(Color.GREEN), 0);
+        assertEquals(9, back.objects.get(3).v);
+        assertEquals(Boolean.FALSE, back.sorted.get("y"));
+        assertNull(back.absent);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void rootMapTypedBySubclass()
+    {
+        Scores scores = StupidJson.fromJson("{\"x\":1,\"y\":\"2\"}", Scores.class);
+        assertEquals(Integer.valueOf(1), scores.get("x"));
+        assertEquals(Integer.valueOf(2), scores.get("y"));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void nullValuesAreDroppedWhereTheMapRejectsThem()
+    {
+        Maps back = StupidJson.fromJson("{\"enumKeys\":{\"RED\":null,\"g\":1}}", Maps.class);
+        assertEquals(1, back.enumKeys.size());
+        assertEquals(1.0, back.enumKeys.get(Color.GREEN), 0);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void numberSubclassesRoundTrip()
+    {
+        Numbers src = new Numbers();
+        String json = StupidJson.toJson(src);
+        Numbers back = StupidJson.fromJson(json, Numbers.class);
+
+        assertEquals(json, StupidJson.toJson(back));
+        assertArrayEquals(src.decimals, back.decimals);
+        assertArrayEquals(src.integers, back.integers);
+        assertEquals(5, back.atomics[0].get());
+        assertEquals(-7, back.atomicInts[0].get());
+        assertEquals(2, back.numbers[1]);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void numberSubclassesAreLenient()
+    {
+        Numbers back = StupidJson.fromJson("{\"decimals\":[true,\"1.5\"],\"integers\":[2.9],\"atomics\":null}", Numbers.class);
+        assertArrayEquals(new BigDecimal[] {BigDecimal.ZERO, new BigDecimal("1.5")}, back.decimals);
+        assertArrayEquals(new BigInteger[] {BigInteger.valueOf(2)}, back.integers);
+        assertNull(back.atomics);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void parameterizedValuesBindByTheirRawType()
+    {
+        Nested back = StupidJson.fromJson("{\"boxes\":{\"a\":{\"label\":\"x\"}}}", Nested.class);
+        assertEquals("x", back.boxes.get("a").label);
+
+        Nested src = new Nested();
+        src.boxes = back.boxes;
+        assertEquals("x", StupidJson.fromBinary(StupidJson.toBinary(src), Nested.class).boxes.get("a").label);
+
+        // nothing says what the lists hold, rejected rather than filled with whatever the input has
+        src.lists = new HashMap<>();
+        src.lists.put("k", Arrays.asList("a", "b"));
+        assertNull(StupidJson.fromJson(StupidJson.toJson(src), Nested.class));
+        assertNull(StupidJson.fromBinary(StupidJson.toBinary(src), Nested.class));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// what the recorder sees of successful and failed calls, and of the plan cache
+public class MetricsTest
+{
+    public static class Counted
+    {
+        public int i = 5;
+        public String s = "text";
+    }
+
+    // a class no other test uses, so its first lookup is a miss
+    public static class Fresh
+    {
+        public long l = 1;
+    }
+
+    // fails with whatever it is given, after the first write
+    private final static class FailingStream extends OutputStream
+    {
+        private final RuntimeException unchecked;
+
+        FailingStream(RuntimeException unchecked)
+        {
+            this.unchecked = unchecked;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            fail();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            if(unchecked != null)
+            {
+                throw unchecked;
+            }
+            throw new IOException("disk full");
+        }
+    }
+
+    /***********************************************************************************************/
+    @After
+    public void reset()
+    {
+        StupidJson.setMetrics(null);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void countsSizesAndLatency() throws IOException
+    {
+        int binarySize = StupidJson.toBinary(new Counted()).length;
+        StupidJson.MetricsRecorder metrics = new StupidJson.MetricsRecorder();
+        StupidJson.setMetrics(metrics);
+
+        String json = StupidJson.toJson(new Counted());
+        byte[] bytes = StupidJson.toJsonBytes(new Counted());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StupidJson.toJson(new Counted(), out);
+        StupidJson.fromJson(json, Counted.class);
+        StupidJson.fromJson(bytes, Counted.class);
+        StupidJson.fromBinary(StupidJson.toBinary(new Counted()), Counted.class);
+
+        StupidJson.MetricsRecorder.Stats s = metrics.statsOf(Counted.class);
+        assertEquals(4, s.encodes.get());
+        assertEquals(3, s.decodes.get());
+        assertEquals(3L * json.length() + binarySize, s.encodedSize.get());
+        assertEquals(0, s.encodeFailures.get());
+        assertTrue(StupidJson.MetricsRecorder.Stats.quantile(s.encodeNanos, 0.5) > 0);
+        assertTrue(metrics.report().contains(Counted.class.getName() + " encodes=4"));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void planLookupsOncePerCall()
+    {
+        StupidJson.MetricsRecorder metrics = new StupidJson.MetricsRecorder();
+        StupidJson.setMetrics(metrics);
+
+        StupidJson.toJson(new Fresh());
+        StupidJson.toJson(new Fresh());
+        StupidJson.fromJson("[{\"l\":2}]", Fresh[].class);
+        StupidJson.fromJson("[{\"l\":2}]", Fresh[].class);
+        assertEquals(2, metrics.planMisses.get());
+        assertEquals(2, metrics.planHits.get());
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void everyFailureIsRecorded()
+    {
+        StupidJson.MetricsRecorder metrics = new StupidJson.MetricsRecorder();
+        StupidJson.setMetrics(metrics);
+
+        try
+        {
+            StupidJson.toJson(new Counted(), new FailingStream(null));
+            fail();
+        }
+        catch (IOException e)
+        {
+            assertEquals("disk full", e.getMessage());
+        }
+
+        IllegalStateException unchecked = new IllegalStateException();
+        try
+        {
+            StupidJson.toJson(new Counted(), new FailingStream(unchecked));
+            fail();
+        }
+        catch (IOException e)
+        {
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+            assertTrue(e == unchecked);
+        }
+
+        StupidJson.fromJson("{\"i\":", Counted.class);
+        StupidJson.fromBinary(new byte[] {(byte) 0xa1}, Counted.class);
+
+        StupidJson.MetricsRecorder.Stats s = metrics.statsOf(Counted.class);
+        assertEquals(2, s.encodeFailures.get());
+        assertEquals(0, s.encodes.get());
+        assertEquals(2, s.decodeFailures.get());
+    }
+}
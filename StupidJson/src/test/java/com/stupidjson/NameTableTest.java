@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+// keys matched against the field names in place: plain ascii in the window, anything else
+// decoded first; same answer either way
+public class NameTableTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Named
+    {
+        public int plain;
+        @StupidJson.NameOverride("caf\u00e9")
+        public int accented;
+        @StupidJson.NameOverride("a\"b")
+        public int quoted;
+        // same String.hashCode()
+        public int Aa;
+        public int BB;
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void manyNames() throws IOException
+    {
+        String[] names = new String[200];
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = i % 2 == 0 ? "field" + i : i % 3 == 0 ? "Aa" + i : "BB" + i;
+        }
+        NameTable table = new NameTable(names);
+
+        for (int i = 0; i < names.length; i++)
+        {
+            assertEquals(i, table.find(names[i].toCharArray(), names[i].length()));
+
+            String json = "{\"" + names[i] + "\":1}";
+            byte[] bytes = json.getBytes(UTF_8);
+            JsonReader[] readers = {new CharJsonReader(json), new ByteJsonReader(bytes, 0, bytes.length)};
+            for (JsonReader r: readers)
+            {
+                r.expect('{');
+                assertEquals(i, r.nextName(table));
+            }
+        }
+
+        assertEquals(-1, table.find("field1".toCharArray(), 6));
+        assertEquals(-1, table.find("field".toCharArray(), 5));
+        assertEquals(-1, table.find("field00".toCharArray(), 7));
+        assertEquals(-1, new NameTable(new String[0]).find("x".toCharArray(), 1));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void sameNameTwiceLaterWins()
+    {
+        assertEquals(2, new NameTable(new String[] {"a", "b", "a"}).find(new char[] {'a'}, 1));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void escapedAndNonAsciiKeys() throws IOException
+    {
+        String json = "{\"pl\\u0061in\":1,\"caf\u00e9\":2,\"a\\\"b\":3,\"Aa\":4,\"BB\":5,\"AaBB\":6,\"\":7,\"caf\":8}";
+        final byte[] bytes = json.getBytes(UTF_8);
+
+        // one byte per read, so keys are cut by the window end
+        InputStream trickle = new ByteArrayInputStream(bytes)
+        {
+            @Override
+            public synchronized int read(byte[] b, int off, int len)
+            {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        Named[] all = {
+                StupidJson.fromJson(json, Named.class),
+                StupidJson.fromJson(bytes, Named.class),
+                StupidJson.fromJson(new StringReader(json), Named.class),
+                StupidJson.fromJson(trickle, Named.class)
+        };
+
+        for (Named n: all)
+        {
+            assertEquals(1, n.plain);
+            assertEquals(2, n.accented);
+            assertEquals(3, n.quoted);
+            assertEquals(4, n.Aa);
+            assertEquals(5, n.BB);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// numbers written straight into the output buffer: the shortest text that reads back to the same
+// value, laid out like Double.toString() / Float.toString(); integers as Long.toString() does
+public class NumberFormattingTest
+{
+    /***********************************************************************************************/
+    @Test
+    public void doublesAreShortestAndReadBack()
+    {
+        Random random = new Random(3);
+        double[] values = new double[20000];
+        for (int k = 0; k < values.length; k++)
+        {
+            double v = k % 2 == 0 ? Double.longBitsToDouble(random.nextLong()) : random.nextDouble() * Math.pow(10, random.nextInt(30) - 15);
+            values[k] = Double.isNaN(v) || Double.isInfinite(v) ? k : v;
+        }
+
+        String[] texts = elements(StupidJson.toJson(values));
+        for (int k = 0; k < values.length; k++)
+        {
+            assertEquals(texts[k], Double.doubleToLongBits(values[k]), Double.doubleToLongBits(Double.parseDouble(texts[k])));
+            assertTrue(texts[k], texts[k].length() <= Double.toString(values[k]).length());
+            assertEquals(texts[k], Double.toString(values[k]).contains("E"), texts[k].contains("E"));
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void floatsAreShortestAndReadBack()
+    {
+        Random random = new Random(5);
+        float[] values = new float[20000];
+        for (int k = 0; k < values.length; k++)
+        {
+            float v = Float.intBitsToFloat(random.nextInt());
+            values[k] = Float.isNaN(v) || Float.isInfinite(v) ? k : v;
+        }
+
+        String[] texts = elements(StupidJson.toJson(values));
+        for (int k = 0; k < values.length; k++)
+        {
+            assertEquals(texts[k], Float.floatToIntBits(values[k]), Float.floatToIntBits(Float.parseFloat(texts[k])));
+            assertTrue(texts[k], texts[k].length() <= Float.toString(values[k]).length());
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void layout()
+    {
+        assertEquals("[100.0,1.0E21,1.0E-5,0.001,0.002,1.23456789125E8,4.9E-324,1.7976931348623157E308,-0.0,1.0E7,9999999.0," +
+                        "1.0E23,NaN,-Infinity]",
+                StupidJson.toJson(new double[] {100, 1e21, 1e-5, 0.001, 0.002, 123456789.125, Double.MIN_VALUE, Double.MAX_VALUE,
+                        -0.0, 1e7, 9999999, 1e23, Double.NaN, Double.NEGATIVE_INFINITY}));
+        assertEquals("[1.1,1.4E-45,3.4028235E38,1.0E7,1.6777216E7,0.0]",
+                StupidJson.toJson(new float[] {1.1f, Float.MIN_VALUE, Float.MAX_VALUE, 1e7f, 16777216f, 0f}));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void integers()
+    {
+        Random random = new Random(9);
+        long[] longs = new long[5000];
+        int[] ints = new int[5000];
+        StringBuilder expectedLongs = new StringBuilder("[");
+        StringBuilder expectedInts = new StringBuilder("[");
+        for (int k = 0; k < longs.length; k++)
+        {
+            longs[k] = k < 3 ? new long[] {0, Long.MIN_VALUE, Long.MAX_VALUE}[k] : random.nextLong() >> random.nextInt(64);
+            ints[k] = k < 3 ? new int[] {0, Integer.MIN_VALUE, Integer.MAX_VALUE}[k] : random.nextInt() >> random.nextInt(32);
+            expectedLongs.append(k > 0 ? "," : "").append(longs[k]);
+            expectedInts.append(k > 0 ? "," : "").append(ints[k]);
+        }
+
+        assertEquals(expectedLongs.append(']').toString(), StupidJson.toJson(longs));
+        assertEquals(expectedInts.append(']').toString(), new String(StupidJson.toJsonBytes(ints)));
+    }
+
+    /***********************************************************************************************/
+    private static String[] elements(String json)
+    {
+        return json.substring(1, json.length() - 1).split(",");
+    }
+}
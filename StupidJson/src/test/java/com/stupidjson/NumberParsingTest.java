@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// numbers parsed in place must be the same as Double.parseDouble() / Float.parseFloat(), and
+// saturate to the field type
+public class NumberParsingTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Fields
+    {
+        public int i;
+        public long l;
+        public short s;
+        public byte b;
+        public float f;
+        public double d;
+        public Integer boxed;
+    }
+
+    public static class Numbers
+    {
+        public Number number = 3;
+        public BigDecimal decimal = new BigDecimal("12345678901234567890.125");
+        public BigInteger integer = new BigInteger("-98765432109876543210");
+        public AtomicLong atomicLong = new AtomicLong(Long.MAX_VALUE);
+        public AtomicInteger atomicInt = new AtomicInteger(-7);
+        public List<BigDecimal> decimalList = Arrays.asList(new BigDecimal("1e-30"), null);
+        public Map<String, BigInteger> integerMap = new HashMap<>();
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void doublesMatchTheJdk()
+    {
+        Random random = new Random(42);
+        String[] texts = new String[20000];
+        for (int k = 0; k < texts.length; k++)
+        {
+            switch (k % 4)
+            {
+                case 0:
+                    texts[k] = Double.toString(Double.longBitsToDouble(random.nextLong()));
+                    break;
+                case 1:
+                    texts[k] = Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+                    break;
+                case 2:
+                    texts[k] = randomDigits(random, 1 + random.nextInt(30)) + "." + randomDigits(random, 1 + random.nextInt(30)) +
+                            "e" + (random.nextInt(700) - 350);
+                    break;
+                default:
+                    texts[k] = (random.nextBoolean() ? "-" : "") + randomDigits(random, 1 + random.nextInt(25));
+                    break;
+            }
+
+            if(texts[k].contains("NaN") || texts[k].contains("Infinity"))
+            {
+                texts[k] = "0";
+            }
+        }
+
+        double[] expected = new double[texts.length];
+        float[] expectedFloats = new float[texts.length];
+        StringBuilder json = new StringBuilder("[");
+        for (int k = 0; k < texts.length; k++)
+        {
+            expected[k] = Double.parseDouble(texts[k]);
+            expectedFloats[k] = Float.parseFloat(texts[k]);
+            json.append(k > 0 ? "," : "").append(texts[k]);
+        }
+        json.append(']');
+
+        assertArrayEquals(expected, StupidJson.fromJson(json.toString(), double[].class), 0);
+        assertArrayEquals(expected, StupidJson.fromJson(json.toString().getBytes(UTF_8), double[].class), 0);
+        assertArrayEquals(expectedFloats, StupidJson.fromJson(json.toString(), float[].class), 0);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void edgeCases()
+    {
+        String json = "[0,-0.0,1e-400,1e400,-1e400,4.9e-324,2.2250738585072011e-308,1.7976931348623157e308," +
+                "9007199254740993,0.1,123456789012345678901234567890e-10,\"2.5\",1E2,1e+2]";
+        double[] back = StupidJson.fromJson(json, double[].class);
+        assertEquals(14, back.length);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(back[1]));
+        assertEquals(0, back[2], 0);
+        assertEquals(Double.POSITIVE_INFINITY, back[3], 0);
+        assertEquals(Double.NEGATIVE_INFINITY, back[4], 0);
+        assertEquals(Double.MIN_VALUE, back[5], 0);
+        assertEquals(Double.parseDouble("2.2250738585072011e-308"), back[6], 0);
+        assertEquals(Double.MAX_VALUE, back[7], 0);
+        assertEquals(9007199254740992.0, back[8], 0);
+        assertEquals(0.1, back[9], 0);
+        assertEquals(Double.parseDouble("123456789012345678901234567890e-10"), back[10], 0);
+        assertEquals(2.5, back[11], 0);
+        assertEquals(100, back[12], 0);
+        assertEquals(100, back[13], 0);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void integersSaturateToTheFieldType()
+    {
+        Fields f = StupidJson.fromJson("{\"i\":3000000000,\"l\":99999999999999999999,\"s\":-40000,\"b\":300," +
+                "\"f\":1e39,\"d\":-5,\"boxed\":-3000000000}", Fields.class);
+        assertEquals(Integer.MAX_VALUE, f.i);
+        assertEquals(Long.MAX_VALUE, f.l);
+        assertEquals(Short.MIN_VALUE, f.s);
+        assertEquals(Byte.MAX_VALUE, f.b);
+        assertEquals(Float.POSITIVE_INFINITY, f.f, 0);
+        assertEquals(-5, f.d, 0);
+        assertEquals(Integer.MIN_VALUE, (int) f.boxed);
+
+        long[] longs = StupidJson.fromJson("[-9223372036854775808,9223372036854775807,1.9,-1.9,1e3]", long[].class);
+        assertArrayEquals(new long[] {Long.MIN_VALUE, Long.MAX_VALUE, 1, -1, 1000}, longs);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void lenientValues()
+    {
+        Fields f = StupidJson.fromJson("{\"i\":\"12\",\"l\":true,\"d\":\"x\",\"s\":{\"a\":1},\"b\":null,\"boxed\":null}", Fields.class);
+        assertEquals(12, f.i);
+        assertEquals(0, f.l);
+        assertEquals(0, f.d, 0);
+        assertEquals(0, f.s);
+        assertEquals(0, f.b);
+        assertEquals(null, f.boxed);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void numberFieldsRoundTrip()
+    {
+        Numbers src = new Numbers();
+        src.integerMap.put("k", BigInteger.TEN.pow(30));
+        String json = StupidJson.toJson(src);
+        Numbers back = StupidJson.fromJson(json, Numbers.class);
+
+        assertEquals(json, StupidJson.toJson(back));
+        assertEquals(3, back.number);
+        assertEquals(src.decimal, back.decimal);
+        assertEquals(src.integer, back.integer);
+        assertEquals(Long.MAX_VALUE, back.atomicLong.get());
+        assertEquals(-7, back.atomicInt.get());
+        assertEquals(src.decimalList, back.decimalList);
+        assertEquals(src.integerMap, back.integerMap);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void numberFieldsKeepTheirValue()
+    {
+        // the boxed type follows the value: Integer, Long or BigInteger, Double or BigDecimal
+        Number[] values = {1.5, 10000000000L, -2147483648, 2147483648L, new BigInteger("123456789012345678901234567890"),
+                new BigDecimal("0.10000000000000000000001"), 1e300, -0.25};
+        for (Number value: values)
+        {
+            Numbers src = new Numbers();
+            src.number = value;
+            String json = StupidJson.toJson(src);
+
+            assertEquals(json, value, StupidJson.fromJson(json, Numbers.class).number);
+            assertEquals(json, value, StupidJson.fromJson(json.getBytes(UTF_8), Numbers.class).number);
+        }
+
+        Number[] elements = StupidJson.fromJson("[1,1.0,1e2,9223372036854775807,9223372036854775808,\"2.5\",true]", Number[].class);
+        assertArrayEquals(new Number[] {1, 1.0, 100.0, Long.MAX_VALUE, new BigInteger("9223372036854775808"), 2.5, 0}, elements);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void numberFieldsAreLenient()
+    {
+        Numbers back = StupidJson.fromJson("{\"decimal\":\"1.5\",\"integer\":2.9,\"atomicInt\":{\"a\":1}}", Numbers.class);
+        assertEquals(new BigDecimal("1.5"), back.decimal);
+        assertEquals(BigInteger.valueOf(2), back.integer);
+        assertEquals(0, back.atomicInt.get());
+        assertNull(back.atomicLong);
+    }
+
+    /***********************************************************************************************/
+    private static String randomDigits(Random random, int n)
+    {
+        StringBuilder sb = new StringBuilder(n);
+        for (int k = 0; k < n; k++)
+        {
+            sb.append((char) ('0' + random.nextInt(10)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+// parallel stores and decodes give what the sequential ones give, and only run when asked to
+public class ParallelTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Item
+    {
+        public int id;
+        public String name;
+        public double[] values;
+    }
+
+    public static class Items extends ArrayList<Item>
+    {
+        private final static long serialVersionUID = 1L;
+    }
+
+    // runs every task on the calling thread, and counts them
+    private final static class CountingExecutor implements Executor
+    {
+        final AtomicInteger tasks = new AtomicInteger();
+
+        @Override
+        public void execute(Runnable command)
+        {
+            tasks.incrementAndGet();
+            command.run();
+        }
+    }
+
+    /***********************************************************************************************/
+    @After
+    public void reset()
+    {
+        StupidJson.setParallelEncodeThreshold(0);
+        StupidJson.setParallelDecodeThreshold(0);
+        StupidJson.setParallelExecutor(null);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void offByDefault()
+    {
+        CountingExecutor executor = new CountingExecutor();
+        StupidJson.setParallelExecutor(executor);
+
+        Item[] items = items(20000);
+        String json = StupidJson.toJson(items);
+        StupidJson.fromJson(json, Item[].class);
+        StupidJson.fromJson(json.getBytes(UTF_8), Items.class);
+        assertEquals(0, executor.tasks.get());
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void sameOutputAsSequential()
+    {
+        Item[] items = items(20000);
+        List<Item> list = new ArrayList<>();
+        for (Item i: items)
+        {
+            list.add(i);
+        }
+        String expected = StupidJson.toJson(items);
+        byte[] expectedBytes = StupidJson.toJsonBytes(list);
+
+        StupidJson.setParallelEncodeThreshold(100);
+        StupidJson.setParallelDecodeThreshold(1000);
+        assertEquals(expected, StupidJson.toJson(items));
+        assertArrayEquals(expectedBytes, StupidJson.toJsonBytes(list));
+        assertEquals(expected, StupidJson.toJson(StupidJson.fromJson(expected, Item[].class)));
+        assertEquals(expected, StupidJson.toJson(StupidJson.fromJson(expectedBytes, Items.class)));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void callerSuppliedExecutor()
+    {
+        assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+
+        CountingExecutor executor = new CountingExecutor();
+        StupidJson.setParallelExecutor(executor);
+        Item[] items = items(20000);
+        String expected = StupidJson.toJson(items);
+
+        StupidJson.setParallelEncodeThreshold(100);
+        assertEquals(expected, StupidJson.toJson(items));
+        int stored = executor.tasks.get();
+        assertEquals(true, stored > 1);
+
+        StupidJson.setParallelEncodeThreshold(0);
+        StupidJson.setParallelDecodeThreshold(1000);
+        Item[] back = StupidJson.fromJson(expected, Item[].class);
+        assertEquals(true, executor.tasks.get() > stored);
+        assertEquals(expected, StupidJson.toJson(back));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void stringInputSplitOnlyForTopLevelArrays()
+    {
+        assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+
+        CountingExecutor executor = new CountingExecutor();
+        StupidJson.setParallelExecutor(executor);
+        StupidJson.setParallelDecodeThreshold(1000);
+        String json = StupidJson.toJson(items(5000));
+
+        // a list root is bound into an ArrayList, whatever the subclass
+        Object list = StupidJson.fromJson(" \r\n\t" + json, Items.class);
+        assertEquals(json, StupidJson.toJson(list));
+        int tasks = executor.tasks.get();
+        assertEquals(true, tasks > 1);
+
+        // not an array, or not bound to one: read sequentially
+        Item item = StupidJson.fromJson("{\"name\":" + StupidJson.toJson(json) + "}", Item.class);
+        assertEquals(json, item.name);
+        assertEquals(null, StupidJson.fromJson(json, Item.class));
+        assertEquals(tasks, executor.tasks.get());
+    }
+
+    /***********************************************************************************************/
+    @Test(timeout = 60000)
+    public void storesFromInsideForkJoinPool() throws Exception
+    {
+        final Item[] items = items(20000);
+        final String expected = StupidJson.toJson(items);
+        StupidJson.setParallelEncodeThreshold(100);
+
+        // every worker busy with a call of its own, none left for chunks queued behind them
+        List<String> results = onEveryWorker(new Callable<String>()
+        {
+            @Override
+            public String call()
+            {
+                return StupidJson.toJson(items);
+            }
+        });
+        for (String json: results)
+        {
+            assertEquals(expected, json);
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test(timeout = 60000)
+    public void decodesFromInsideForkJoinPool() throws Exception
+    {
+        final String expected = StupidJson.toJson(items(20000));
+        StupidJson.setParallelDecodeThreshold(1000);
+
+        List<String> results = onEveryWorker(new Callable<String>()
+        {
+            @Override
+            public String call()
+            {
+                Item[] array = StupidJson.fromJson(expected, Item[].class);
+                Object list = StupidJson.fromJson(expected.getBytes(UTF_8), Items.class);
+                return StupidJson.toJson(array) + StupidJson.toJson(list);
+            }
+        });
+        for (String json: results)
+        {
+            assertEquals(expected + expected, json);
+        }
+    }
+
+    /***********************************************************************************************/
+    // the task run at once on each worker of a small pool that is also the parallel executor
+    private static <T> List<T> onEveryWorker(Callable<T> task) throws Exception
+    {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        StupidJson.setParallelExecutor(pool);
+        try
+        {
+            List<Callable<T>> tasks = new ArrayList<>();
+            for (int k = 0; k < 2 * pool.getParallelism(); k++)
+            {
+                tasks.add(task);
+            }
+
+            List<T> results = new ArrayList<>();
+            for (Future<T> f: pool.invokeAll(tasks))
+            {
+                results.add(f.get());
+            }
+            return results;
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /***********************************************************************************************/
+    private static Item[] items(int n)
+    {
+        Item[] items = new Item[n];
+        for (int k = 0; k < n; k++)
+        {
+            items[k] = new Item();
+            items[k].id = k;
+            items[k].name = k % 7 == 0 ? null : "item \"" + k + "\"";
+            items[k].values = new double[] {k * 0.1, -k};
+        }
+        return items;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+// arrays of every primitive and boxed type, written without boxing and read back
+public class PrimitiveArraysTest
+{
+    public static class AllArrays
+    {
+        public int[] i = {1, -2, Integer.MIN_VALUE};
+        public long[] l = {Long.MIN_VALUE, Long.MAX_VALUE};
+        public short[] s = {-3, Short.MAX_VALUE};
+        public byte[] b = {-4, 5};
+        public char[] c = {'a', '"', 'é'};
+        public float[] f = {0.1f, -0f};
+        public double[] d = {1e-7, 2.5};
+        public boolean[] z = {true, false};
+        public Integer[] boxedInts = {1, null};
+        public Long[] boxedLongs = {2L, null};
+        public Double[] boxedDoubles = {null, 2.5};
+        public Float[] boxedFloats = {1.5f};
+        public Short[] boxedShorts = {7};
+        public Byte[] boxedBytes = {8};
+        public Boolean[] boxedBooleans = {null, true};
+        public Character[] boxedChars = {'x', null};
+        public int[] empty = {};
+        public long[] nothing = null;
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void writtenAsPlainArrays()
+    {
+        assertEquals("{\"i\":[1,-2,-2147483648],\"l\":[-9223372036854775808,9223372036854775807],\"s\":[-3,32767]," +
+                "\"b\":[-4,5],\"c\":[\"a\",\"\\\"\",\"é\"],\"f\":[0.1,-0.0],\"d\":[1.0E-7,2.5],\"z\":[true,false]," +
+                "\"boxedInts\":[1,null],\"boxedLongs\":[2,null],\"boxedDoubles\":[null,2.5],\"boxedFloats\":[1.5]," +
+                "\"boxedShorts\":[7],\"boxedBytes\":[8],\"boxedBooleans\":[null,true],\"boxedChars\":[\"x\",null]," +
+                "\"empty\":[],\"nothing\":null}", StupidJson.toJson(new AllArrays()));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void roundTrip()
+    {
+        AllArrays src = new AllArrays();
+        AllArrays back = StupidJson.fromJson(StupidJson.toJsonBytes(src), AllArrays.class);
+
+        assertArrayEquals(src.i, back.i);
+        assertArrayEquals(src.l, back.l);
+        assertArrayEquals(src.s, back.s);
+        assertArrayEquals(src.b, back.b);
+        assertArrayEquals(src.c, back.c);
+        assertArrayEquals(src.f, back.f, 0);
+        assertEquals(Float.floatToIntBits(-0f), Float.floatToIntBits(back.f[1]));
+        assertArrayEquals(src.d, back.d, 0);
+        assertArrayEquals(src.boxedInts, back.boxedInts);
+        assertArrayEquals(src.boxedLongs, back.boxedLongs);
+        assertArrayEquals(src.boxedDoubles, back.boxedDoubles);
+        assertArrayEquals(src.boxedBooleans, back.boxedBooleans);
+        assertArrayEquals(src.boxedChars, back.boxedChars);
+        assertEquals(0, back.empty.length);
+        assertEquals(null, back.nothing);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void rootArrays()
+    {
+        assertEquals("[true,false]", StupidJson.toJson(new boolean[] {true, false}));
+        assertEquals("[1,2,3]", StupidJson.toJson(new byte[] {1, 2, 3}));
+        assertArrayEquals(new short[] {1, -1}, StupidJson.fromJson("[1,-1]", short[].class));
+        assertArrayEquals(new Long[] {1L, null}, StupidJson.fromJson("[1,null]", Long[].class));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+// fromJson() with a projection: only the fields on the paths are read, the rest of the input is
+// skipped and the rest of the instance keeps what the constructor put there
+public class ProjectionTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final static String DOC = "{\"id\":5,\"note\":\"skipped \\\"}]\",\"owner\":{\"id\":7,\"name\":\"ann\",\"blob\":[{\"x\":[[]]}]}," +
+            "\"items\":[{\"name\":\"a\",\"price\":1.5},{\"name\":\"b\",\"price\":2}],\"prices\":[{\"name\":\"c\",\"price\":3}]}";
+
+    public static class Owner
+    {
+        public int id = -1;
+        public String name = "unset";
+        public int[] blob;
+    }
+
+    public static class Item
+    {
+        public String name = "unset";
+        public double price = -1;
+    }
+
+    public static class Order
+    {
+        public int id = -1;
+        public String note = "unset";
+        public Owner owner = new Owner();
+        public List<Item> items = new ArrayList<>();
+        public Item[] prices;
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void onlyThePaths()
+    {
+        StupidJson.Projection p = StupidJson.Projection.of(Order.class, "id", "owner.name", "items.price", "prices.name");
+        Order[] orders = {StupidJson.fromJson(DOC, Order.class, p), StupidJson.fromJson(DOC.getBytes(UTF_8), Order.class, p)};
+        for (Order o: orders)
+        {
+            assertEquals(5, o.id);
+            assertEquals("unset", o.note);
+            assertEquals(-1, o.owner.id);
+            assertEquals("ann", o.owner.name);
+            assertNull(o.owner.blob);
+
+            assertEquals(2, o.items.size());
+            assertEquals("unset", o.items.get(0).name);
+            assertEquals(1.5, o.items.get(0).price, 0);
+            assertEquals(2, o.items.get(1).price, 0);
+
+            assertEquals(1, o.prices.length);
+            assertEquals("c", o.prices[0].name);
+            assertEquals(-1, o.prices[0].price, 0);
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void wholeFieldWins()
+    {
+        Order o = StupidJson.fromJson(DOC, Order.class, StupidJson.Projection.of(Order.class, "owner.name", "owner"));
+        assertEquals(7, o.owner.id);
+        assertEquals("ann", o.owner.name);
+        assertEquals(-1, o.id);
+        assertEquals(0, o.items.size());
+
+        o = StupidJson.fromJson(DOC, Order.class, StupidJson.Projection.of(Order.class, "owner", "owner.name"));
+        assertEquals(7, o.owner.id);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void arrayRoots()
+    {
+        String json = "[" + DOC + "," + DOC + "]";
+        Order[] orders = StupidJson.fromJson(json.getBytes(UTF_8), Order[].class, StupidJson.Projection.of(Order[].class, "items.name"));
+        assertEquals(2, orders.length);
+        assertEquals(-1, orders[1].id);
+        assertEquals("b", orders[1].items.get(1).name);
+        assertEquals(-1, orders[1].items.get(1).price, 0);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void sameAsWithoutWhenEverythingIsProjected()
+    {
+        StupidJson.Projection p = StupidJson.Projection.of(Order.class, "id", "note", "owner", "items", "prices");
+        assertEquals(StupidJson.toJson(StupidJson.fromJson(DOC, Order.class)), StupidJson.toJson(StupidJson.fromJson(DOC, Order.class, p)));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void pathsMustResolve()
+    {
+        String[][] bad = {{"missing"}, {"owner.missing"}, {"id.x"}, {"note.length"}, {"owner.blob.x"}};
+        for (String[] paths: bad)
+        {
+            try
+            {
+                StupidJson.Projection.of(Order.class, paths);
+                fail(paths[0]);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+// fromJson() from a Reader, an InputStream or a channel: same result as from memory, malformed json
+// gives null, failures of the stream are thrown and the stream is left open
+public class StreamTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Item
+    {
+        public int id;
+        public String name;
+        public double[] values;
+    }
+
+    // hands out the bytes a few at a time and remembers whether it was closed
+    private final static class TrickleStream extends InputStream
+    {
+        private final InputStream in;
+        private final IOException failure;
+        boolean closed;
+
+        TrickleStream(byte[] b, IOException failure)
+        {
+            this.in = new ByteArrayInputStream(b);
+            this.failure = failure;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = in.read(b, off, Math.min(3, len));
+            if(n < 0 && failure != null)
+            {
+                throw failure;
+            }
+            return n;
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void sameAsFromMemory() throws IOException
+    {
+        Item[] items = new Item[3000];
+        for (int k = 0; k < items.length; k++)
+        {
+            items[k] = new Item();
+            items[k].id = k;
+            items[k].name = "é 😀 \"" + k;
+            items[k].values = new double[] {k / 3.0};
+        }
+        String json = StupidJson.toJson(items);
+        byte[] bytes = json.getBytes(UTF_8);
+
+        assertEquals(json, StupidJson.toJson(StupidJson.fromJson(new ByteArrayInputStream(bytes), Item[].class)));
+        assertEquals(json, StupidJson.toJson(StupidJson.fromJson(new TrickleStream(bytes, null), Item[].class)));
+        assertEquals(json, StupidJson.toJson(StupidJson.fromJson(Channels.newChannel(new ByteArrayInputStream(bytes)), Item[].class)));
+        assertEquals(json, StupidJson.toJson(StupidJson.fromJson(new StringReader(json), Item[].class)));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void malformedJsonIsNullAndTheStreamStaysOpen() throws IOException
+    {
+        TrickleStream in = new TrickleStream("{\"id\":1,\"name\":".getBytes(UTF_8), null);
+        assertNull(StupidJson.fromJson(in, Item.class));
+        assertFalse(in.closed);
+
+        Reader reader = new StringReader("[1,2");
+        assertNull(StupidJson.fromJson(reader, int[].class));
+        assertNull(StupidJson.fromJson((InputStream) null, Item.class));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void streamFailuresAreThrown()
+    {
+        IOException failure = new IOException("connection reset");
+        try
+        {
+            StupidJson.fromJson(new TrickleStream("[1,2,".getBytes(UTF_8), failure), int[].class);
+            fail();
+        }
+        catch (IOException e)
+        {
+            assertEquals(failure, e);
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void readsOneValueOnly() throws IOException
+    {
+        byte[] bytes = "[1,2] [3]".getBytes(UTF_8);
+        assertArrayEquals(new int[] {1, 2}, StupidJson.fromJson(new ByteArrayInputStream(bytes), int[].class));
+        assertEquals(Arrays.asList("a"), Arrays.asList(StupidJson.fromJson(new StringReader("[\"a\"]"), String[].class)));
+    }
+}
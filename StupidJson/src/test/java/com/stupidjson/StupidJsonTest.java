@@ -0,0 +1,191 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// class plans: names, annotations and every field kind, through toJson() and fromJson()
+public class StupidJsonTest
+{
+    public enum Level
+    {
+        LOW,
+        @StupidJson.NameOverride("hi")
+        HIGH
+    }
+
+    public static class Inner
+    {
+        private double d = 0.6;
+    }
+
+    public static class Sample
+    {
+        public int i = 55;
+        public boolean flag = true;
+        private Integer[] boxed = {1, 2, 3};
+        protected String[] strings = {"a", "b"};
+        public List<String> list = new ArrayList<>(Arrays.asList("x", "y"));
+        public Level level = Level.HIGH;
+        public Inner inner = new Inner();
+
+        @StupidJson.Ignore
+        public float ignored = 7;
+
+        @StupidJson.NameOverride("renamed")
+        public float f = 0.5f;
+
+        public String quoted = "\"q\\\n";
+
+        @StupidJson.DontQuote
+        public String raw = "{\"k\":[1,2]}";
+
+        public long l = Long.MIN_VALUE;
+        public double dd = 1e300;
+        public short s = -5;
+        public byte b = 7;
+        public char c = 'x';
+        public Double boxedDouble = 2.5;
+        public Long boxedLong = 5L;
+        public Character boxedChar = 'z';
+        public String nothing = null;
+        public static int notAField = 3;
+        public transient int skipped = 4;
+    }
+
+    public static class Hidden
+    {
+        public int v;
+        @StupidJson.Ignore
+        public boolean constructed;
+
+        private Hidden()
+        {
+            constructed = true;
+        }
+    }
+
+    public static class Narrow
+    {
+        public int i = 1;
+        public String extra = "default";
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void roundTripKeepsEveryField()
+    {
+        Sample src = new Sample();
+        String json = StupidJson.toJson(src);
+
+        Sample back = StupidJson.fromJson(json, Sample.class);
+        assertEquals(json, StupidJson.toJson(back));
+        assertEquals(Level.HIGH, back.level);
+        assertEquals(0.6, back.inner.d, 0);
+        assertArrayEquals(new Integer[] {1, 2, 3}, back.boxed);
+        assertEquals(src.quoted, back.quoted);
+        assertEquals(Long.MIN_VALUE, back.l);
+        assertEquals('z', (char) back.boxedChar);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void annotationsShapeTheOutput()
+    {
+        String json = StupidJson.toJson(new Sample());
+
+        assertFalse(json.contains("ignored"));
+        assertFalse(json.contains("notAField"));
+        assertTrue(json.contains("\"renamed\":0.5"));
+        assertTrue(json.contains("\"level\":\"hi\""));
+        assertTrue(json.contains("\"raw\":{\"k\":[1,2]}"));
+        assertTrue(json.contains("\"quoted\":\"\\\"q\\\\\\n\""));
+        assertTrue(json.startsWith("{\"i\":55,\"flag\":true,"));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void ignoredFieldKeepsItsValue()
+    {
+        Sample back = StupidJson.fromJson("{\"ignored\":1,\"renamed\":2}", Sample.class);
+        assertEquals(7, back.ignored, 0);
+        assertEquals(2, back.f, 0);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void missingFieldsAreResetAndUnknownOnesSkipped()
+    {
+        Narrow n = StupidJson.fromJson(StupidJson.toJson(new Sample()), Narrow.class);
+        assertEquals(55, n.i);
+        assertNull(n.extra);
+
+        n = StupidJson.fromJson("{\"zzz\":{\"a\":[1,{}]},\"extra\":\"e\"}", Narrow.class);
+        assertEquals(0, n.i);
+        assertEquals("e", n.extra);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void listsOfObjectsShareThePlan()
+    {
+        List<Narrow> list = new ArrayList<>();
+        for (int k = 0; k < 1000; k++)
+        {
+            Narrow n = new Narrow();
+            n.i = k;
+            list.add(n);
+        }
+
+        String json = StupidJson.toJson(list);
+        Narrow[] back = StupidJson.fromJson(json, Narrow[].class);
+        assertEquals(1000, back.length);
+        assertEquals(999, back[999].i);
+        assertEquals(json, StupidJson.toJson(back));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void privateConstructorIsUsed()
+    {
+        assertTrue(StupidJson.fromJson("{}", Hidden.class).constructed);
+        Hidden[] back = StupidJson.fromJson("[{\"v\":3}]", Hidden[].class);
+        assertTrue(back[0].constructed);
+        assertEquals(3, back[0].v);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void nullAndMalformedInput()
+    {
+        assertNull(StupidJson.toJson(null));
+        assertNull(StupidJson.fromJson((String) null, Sample.class));
+        assertNull(StupidJson.fromJson("{\"i\":", Sample.class));
+        assertNull(StupidJson.fromJson("[1,2]", Sample.class));
+    }
+}
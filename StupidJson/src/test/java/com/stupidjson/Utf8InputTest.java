@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// fromJson(byte[]) decodes UTF-8 in place, to what fromJson(String) gives for the same text
+public class Utf8InputTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Texts
+    {
+        public String text;
+        public String[] more;
+        public char c;
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void everyEncodingLength()
+    {
+        String json = "{\"text\":\"a é ࠀ 世 😀 \\u00e9\\ud83d\\ude00\",\"more\":[\"ü\",null,\"\"],\"c\":\"世\"}";
+        Texts fromBytes = StupidJson.fromJson(json.getBytes(UTF_8), Texts.class);
+        Texts fromText = StupidJson.fromJson(json, Texts.class);
+
+        assertEquals("a é ࠀ 世 😀 é😀", fromBytes.text);
+        assertEquals(fromText.text, fromBytes.text);
+        assertArrayEquals(new String[] {"ü", null, ""}, fromBytes.more);
+        assertEquals('世', fromBytes.c);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void sliceOfALargerBuffer()
+    {
+        byte[] json = "garbage[\"é\",\"😀\"]more garbage".getBytes(UTF_8);
+        int from = "garbage".length();
+        int length = "[\"é\",\"😀\"]".getBytes(UTF_8).length;
+
+        assertArrayEquals(new String[] {"é", "😀"}, StupidJson.fromJson(json, from, length, String[].class));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void malformedBytesAreReplaced()
+    {
+        byte[] json = {'[', '"', 'a', (byte) 0xff, (byte) 0xc3, '"', ',', '"', (byte) 0xed, (byte) 0xa0, (byte) 0x80, '"', ',',
+                '"', (byte) 0xc0, (byte) 0xaf, '"', ']'};
+        String[] back = StupidJson.fromJson(json, String[].class);
+
+        // one replacement per bad byte: a stray byte, a truncated sequence, an encoded surrogate, an overlong '/'
+        assertEquals("a\ufffd\ufffd", back[0]);
+        assertEquals("\ufffd\ufffd\ufffd", back[1]);
+        assertEquals("\ufffd\ufffd", back[2]);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void nullAndMalformedJson()
+    {
+        assertNull(StupidJson.fromJson((byte[]) null, Texts.class));
+        assertNull(StupidJson.fromJson("{\"text\":\"open".getBytes(UTF_8), Texts.class));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// toJsonBytes() and toJson(Object, OutputStream) write what toJson() writes, as UTF-8
+public class Utf8OutputTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static class Texts
+    {
+        public String ascii = "plain \"quoted\" \\ / \t\n";
+        public String latin = "caf\u00e9 \u00f1";
+        public String cjk = "\u4e16\u754c";
+        public String emoji = "\ud83d\ude00 ok \ud83c\udf89";
+        public String control = "\u0000\u001f\u007f\u2028";
+        public char c = '\u00e9';
+        public char[] chars = {'a', '\u4e16'};
+        public List<String> list = Arrays.asList("\u00fc", null);
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void sameAsTheStringEncoded() throws IOException
+    {
+        Texts src = new Texts();
+        byte[] expected = StupidJson.toJson(src).getBytes(UTF_8);
+
+        assertArrayEquals(expected, StupidJson.toJsonBytes(src));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StupidJson.toJson(src, out);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void longTextCrossesTheStreamBuffer() throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < 20000; k++)
+        {
+            sb.append(k % 3 == 0 ? "\ud83d\ude00" : k % 3 == 1 ? "\u00e9" : "x");
+        }
+        String[] src = {sb.toString(), "tail"};
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StupidJson.toJson(src, out);
+        assertArrayEquals(StupidJson.toJson(src).getBytes(UTF_8), out.toByteArray());
+        assertArrayEquals(src, StupidJson.fromJson(out.toByteArray(), String[].class));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void unpairedSurrogatesBecomeQuestionMarks()
+    {
+        String[] src = {"a\ud83db", "\ude00", "\ud83d"};
+        assertEquals("[\"a?b\",\"?\",\"?\"]", new String(StupidJson.toJsonBytes(src), UTF_8));
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void nullWritesNothing() throws IOException
+    {
+        assertNull(StupidJson.toJsonBytes(null));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StupidJson.toJson(null, out);
+        assertEquals(0, out.size());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson.benchmarks;
+
+import com.stupidjson.StupidJson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// The same array of objects written and read through reflection and through the generated
+// adapter of a @GenerateAdapter class. The two classes differ only in the annotation, so what's
+// left is the cost of field access.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldAccessBenchmark
+{
+    private final static int COUNT = 1000;
+
+    public static class Reflected
+    {
+        public int id;
+        public long time;
+        public double value;
+        public boolean flag;
+        public String name;
+    }
+
+    @StupidJson.GenerateAdapter
+    public static class Generated
+    {
+        public int id;
+        public long time;
+        public double value;
+        public boolean flag;
+        public String name;
+    }
+
+    @Param({"reflection", "adapter"})
+    public String access;
+
+    private Object[] objects;
+    private Class<?> type;
+    private byte[] bytes;
+
+    /***********************************************************************************************/
+    @Setup
+    public void setup()
+    {
+        boolean adapter = access.equals("adapter");
+        objects = adapter ? new Generated[COUNT] : new Reflected[COUNT];
+        for (int i = 0; i < COUNT; i++)
+        {
+            String name = "item" + i;
+            if(adapter)
+            {
+                Generated g = new Generated();
+                g.id = i;
+                g.time = 1500000000000L + i;
+                g.value = i * 0.25;
+                g.flag = i % 2 == 0;
+                g.name = name;
+                objects[i] = g;
+            }
+            else
+            {
+                Reflected r = new Reflected();
+                r.id = i;
+                r.time = 1500000000000L + i;
+                r.value = i * 0.25;
+                r.flag = i % 2 == 0;
+                r.name = name;
+                objects[i] = r;
+            }
+        }
+
+        type = objects.getClass();
+        bytes = StupidJson.toJsonBytes(objects);
+    }
+
+    /***********************************************************************************************/
+    @Benchmark
+    public byte[] toJsonBytes()
+    {
+        return StupidJson.toJsonBytes(objects);
+    }
+
+    /***********************************************************************************************/
+    @Benchmark
+    public Object fromJsonBytes()
+    {
+        return StupidJson.fromJson(bytes, type);
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson.benchmarks;
+
+import com.stupidjson.StupidJson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Benchmark inputs. Everything is built from a fixed seed, so runs compare the same data.
+public final class Payloads
+{
+    private final static long SEED = 42;
+
+    private Payloads()
+    {
+    }
+
+    /***********************************************************************************************/
+    // a handful of scalars
+    public static class Small
+    {
+        public int id;
+        public String name;
+        public boolean active;
+        public double score;
+        public long timestamp;
+    }
+
+    /***********************************************************************************************/
+    // a typical API object: scalars of every kind, a nested object, a list and an enum
+    public static class Medium
+    {
+        public enum Status
+        {
+            NEW,
+            ACTIVE,
+            @StupidJson.NameOverride("closed")
+            CLOSED,
+        }
+
+        public int id;
+        public long created;
+        public long updated;
+        public String title;
+        public String description;
+        public String url;
+        public double price;
+        public double discount;
+        public float rating;
+        public int votes;
+        public short stock;
+        public byte flags;
+        public char grade;
+        public boolean available;
+        public Boolean featured;
+        public Integer parent;
+        public Long owner;
+        public Status status;
+        public Small author;
+        public List<String> tags;
+    }
+
+    /***********************************************************************************************/
+    public static class Large
+    {
+        public List<Medium> items;
+    }
+
+    /***********************************************************************************************/
+    public static class Numbers
+    {
+        public int[] ints;
+        public long[] longs;
+        public double[] doubles;
+        public float[] floats;
+    }
+
+    /***********************************************************************************************/
+    // text with quotes, backslashes, control chars and non-ascii, all of it escaped or encoded
+    public static class Strings
+    {
+        public List<String> lines;
+        public String[] words;
+    }
+
+    /***********************************************************************************************/
+    // lists of objects shaped like SimpleActivity.TestClass in the usage example
+    public static class Nested
+    {
+        public List<Node> nodes;
+    }
+
+    /***********************************************************************************************/
+    public static class Node
+    {
+        public enum Kind
+        {
+            ONE,
+            @StupidJson.NameOverride("2")
+            TWO,
+        }
+
+        public static class Inner
+        {
+            public double d;
+        }
+
+        public int t1;
+        public boolean t2;
+        public Integer[] t3;
+        public String[] t4;
+        public List<String> t5;
+        public Kind t6;
+        public Kind t7;
+        public Inner t8;
+        @StupidJson.NameOverride("test6")
+        public float t10;
+        public String t11;
+        @StupidJson.DontQuote
+        public String t12;
+        public List<Node> children;
+    }
+
+    /***********************************************************************************************/
+    // the payload for the benchmark parameter
+    public static Object create(String name)
+    {
+        Random random = new Random(SEED);
+        switch (name)
+        {
+            case "small":
+                return small(random);
+            case "medium":
+                return medium(random);
+            case "large":
+                return large(random, 1000);
+            case "numbers":
+                return numbers(random, 10000);
+            case "strings":
+                return strings(random, 1000);
+            case "nested":
+                return nested(random, 200);
+            default:
+                throw new IllegalArgumentException("Unknown payload " + name);
+        }
+    }
+
+    /***********************************************************************************************/
+    private static Small small(Random random)
+    {
+        Small s = new Small();
+        s.id = random.nextInt(1000000);
+        s.name = "user" + random.nextInt(100000);
+        s.active = random.nextBoolean();
+        s.score = random.nextDouble() * 100;
+        s.timestamp = 1500000000000L + random.nextInt(Integer.MAX_VALUE);
+        return s;
+    }
+
+    /***********************************************************************************************/
+    private static Medium medium(Random random)
+    {
+        Medium m = new Medium();
+        m.id = random.nextInt();
+        m.created = 1500000000000L + random.nextInt(Integer.MAX_VALUE);
+        m.updated = m.created + random.nextInt(1000000);
+        m.title = "Item number " + random.nextInt(100000);
+        m.description = "A reasonably long description of the item, the kind of text a listing carries around: " +
+                random.nextLong();
+        m.url = "https://example.com/items/" + random.nextInt(100000) + "?ref=list&page=" + random.nextInt(100);
+        m.price = Math.round(random.nextDouble() * 100000) / 100.0;
+        m.discount = random.nextDouble();
+        m.rating = random.nextFloat() * 5;
+        m.votes = random.nextInt(10000);
+        m.stock = (short) random.nextInt(Short.MAX_VALUE);
+        m.flags = (byte) random.nextInt(128);
+        m.grade = (char) ('A' + random.nextInt(6));
+        m.available = random.nextBoolean();
+        m.featured = random.nextBoolean();
+        m.parent = random.nextBoolean() ? random.nextInt(1000) : null;
+        m.owner = random.nextLong();
+        m.status = Medium.Status.values()[random.nextInt(Medium.Status.values().length)];
+        m.author = small(random);
+        m.tags = new ArrayList<>();
+        for (int i = random.nextInt(6); i >= 0; i--)
+        {
+            m.tags.add("tag" + random.nextInt(50));
+        }
+        return m;
+    }
+
+    /***********************************************************************************************/
+    private static Large large(Random random, int count)
+    {
+        Large l = new Large();
+        l.items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            l.items.add(medium(random));
+        }
+        return l;
+    }
+
+    /***********************************************************************************************/
+    private static Numbers numbers(Random random, int count)
+    {
+        Numbers n = new Numbers();
+        n.ints = new int[count];
+        n.longs = new long[count];
+        n.doubles = new double[count];
+        n.floats = new float[count];
+        for (int i = 0; i < count; i++)
+        {
+            n.ints[i] = random.nextInt();
+            n.longs[i] = random.nextLong();
+            n.doubles[i] = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+            n.floats[i] = random.nextFloat() * 1000;
+        }
+        return n;
+    }
+
+    /***********************************************************************************************/
+    private static Strings strings(Random random, int count)
+    {
+        String[] pieces = {"plain ascii text ", "\"quoted\" ", "back\\slash ", "tab\tand\nnewline ",
+                "caf\u00e9 ", "\u65e5\u672c\u8a9e ", "emoji \ud83d\ude00 ", "ctrl\u0001 "};
+
+        Strings s = new Strings();
+        s.lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            StringBuilder sb = new StringBuilder();
+            while(sb.length() < 100)
+            {
+                // mostly plain text, as it usually is
+                sb.append(random.nextInt(4) > 0 ? pieces[0] : pieces[random.nextInt(pieces.length)]);
+            }
+            s.lines.add(sb.toString());
+        }
+
+        s.words = new String[count];
+        for (int i = 0; i < count; i++)
+        {
+            s.words[i] = pieces[random.nextInt(pieces.length)].trim();
+        }
+        return s;
+    }
+
+    /***********************************************************************************************/
+    private static Nested nested(Random random, int count)
+    {
+        Nested n = new Nested();
+        n.nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            Node node = node(random);
+            node.children = new ArrayList<>();
+            for (int j = random.nextInt(4); j > 0; j--)
+            {
+                node.children.add(node(random));
+            }
+            n.nodes.add(node);
+        }
+        return n;
+    }
+
+    /***********************************************************************************************/
+    private static Node node(Random random)
+    {
+        Node n = new Node();
+        n.t1 = random.nextInt(100);
+        n.t2 = random.nextBoolean();
+        n.t3 = new Integer[] {random.nextInt(10), random.nextInt(100), random.nextInt(1000)};
+        n.t4 = new String[] {"t1", "t2", "t3"};
+        n.t5 = new ArrayList<>(Arrays.asList("a", "b", "c"));
+        n.t6 = Node.Kind.TWO;
+        n.t7 = Node.Kind.ONE;
+        n.t8 = new Node.Inner();
+        n.t8.d = random.nextDouble();
+        n.t10 = random.nextFloat();
+        n.t11 = "\"test\"";
+        n.t12 = "{\"test\":\"\"}";
+        return n;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson.benchmarks;
+
+import com.stupidjson.StupidJson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// toJson / fromJson over each payload, to text and to UTF-8. Run with -prof gc (the gradle task
+// does) to see allocation per operation next to the time.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StupidJsonBenchmark
+{
+    @Param({"small", "medium", "large", "numbers", "strings", "nested"})
+    public String payload;
+
+    private Object object;
+    private Class<?> type;
+    private String json;
+    private byte[] bytes;
+
+    /***********************************************************************************************/
+    @Setup
+    public void setup()
+    {
+        object = Payloads.create(payload);
+        type = object.getClass();
+        json = StupidJson.toJson(object);
+        bytes = StupidJson.toJsonBytes(object);
+
+        // a payload that does not survive the round trip would measure the wrong thing
+        if(json == null || !json.equals(StupidJson.toJson(StupidJson.fromJson(json, type))))
+        {
+            throw new IllegalStateException("Payload " + payload + " does not round trip");
+        }
+    }
+
+    /***********************************************************************************************/
+    @Benchmark
+    public String toJson()
+    {
+        return StupidJson.toJson(object);
+    }
+
+    /***********************************************************************************************/
+    @Benchmark
+    public byte[] toJsonBytes()
+    {
+        return StupidJson.toJsonBytes(object);
+    }
+
+    /***********************************************************************************************/
+    @Benchmark
+    public Object fromJson()
+    {
+        return StupidJson.fromJson(json, type);
+    }
+
+    /***********************************************************************************************/
+    @Benchmark
+    public Object fromJsonBytes()
+    {
+        return StupidJson.fromJson(bytes, type);
+    }
+}
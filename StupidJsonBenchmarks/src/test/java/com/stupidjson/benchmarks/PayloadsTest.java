@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson.benchmarks;
+
+import com.stupidjson.StupidJson;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+// every benchmark payload round trips through text and bytes, so the benchmarks measure
+// successful calls; runs without JMH
+public class PayloadsTest
+{
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+    private final static String[] NAMES = {"small", "medium", "large", "numbers", "strings", "nested"};
+
+    /***********************************************************************************************/
+    @Test
+    public void roundTrip()
+    {
+        for (String name: NAMES)
+        {
+            Object payload = Payloads.create(name);
+            String json = StupidJson.toJson(payload);
+            byte[] bytes = StupidJson.toJsonBytes(payload);
+
+            assertNotNull(name, json);
+            assertEquals(name, json, new String(bytes, UTF_8));
+            assertEquals(name, json, StupidJson.toJson(StupidJson.fromJson(json, payload.getClass())));
+            assertEquals(name, json, StupidJson.toJson(StupidJson.fromJson(bytes, payload.getClass())));
+        }
+    }
+
+    /***********************************************************************************************/
+    @Test
+    public void sameDataEveryRun()
+    {
+        for (String name: NAMES)
+        {
+            assertEquals(name, StupidJson.toJson(Payloads.create(name)), StupidJson.toJson(Payloads.create(name)));
+        }
+    }
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+// Generates a StupidJson.Adapter for every class marked with @StupidJson.GenerateAdapter. The
+// library is not on the processor path, its annotations are matched by name.
+@SupportedAnnotationTypes(AdapterProcessor.GENERATE_ADAPTER)
+public final class AdapterProcessor extends AbstractProcessor
+{
+    final static String GENERATE_ADAPTER = "com.stupidjson.StupidJson.GenerateAdapter";
+    private final static String IGNORE = "com.stupidjson.StupidJson.Ignore";
+    private final static String NAME_OVERRIDE = "com.stupidjson.StupidJson.NameOverride";
+    private final static String DONT_QUOTE = "com.stupidjson.StupidJson.DontQuote";
+    private final static String ADAPTER = "com.stupidjson.StupidJson.Adapter";
+    // keep in sync with StupidJson.ADAPTER_SUFFIX
+    private final static String ADAPTER_SUFFIX = "_JsonAdapter";
+
+    // one serialized field
+    private final static class FieldInfo
+    {
+        String field;
+        String name;
+        TypeMirror type;
+        // erased source name of the type, for class literals and casts
+        String typeName;
+        String elementTypeName;
+        String keyTypeName;
+        boolean dontQuote;
+    }
+
+    /***********************************************************************************************/
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    /***********************************************************************************************/
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        for (TypeElement annotation: annotations)
+        {
+            for (Element e: roundEnv.getElementsAnnotatedWith(annotation))
+            {
+                if(e.getKind() != ElementKind.CLASS)
+                {
+                    error(e, "@GenerateAdapter only applies to classes");
+                    continue;
+                }
+
+                TypeElement type = (TypeElement) e;
+                List<FieldInfo> fields = collect(type);
+                if(fields != null)
+                {
+                    write(type, fields);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /***********************************************************************************************/
+    // serialized fields in declaration order, null after reporting an error
+    private List<FieldInfo> collect(TypeElement type)
+    {
+        boolean ok = true;
+
+        if(type.getModifiers().contains(Modifier.ABSTRACT))
+        {
+            error(type, "@GenerateAdapter class cannot be abstract");
+            ok = false;
+        }
+
+        for (Element e = type; e.getKind() == ElementKind.CLASS; e = e.getEnclosingElement())
+        {
+            Set<Modifier> modifiers = e.getModifiers();
+            if(modifiers.contains(Modifier.PRIVATE))
+            {
+                error(type, "@GenerateAdapter class must be visible from its package");
+                ok = false;
+                break;
+            }
+            if(e.getEnclosingElement().getKind() == ElementKind.CLASS && !modifiers.contains(Modifier.STATIC))
+            {
+                error(type, "@GenerateAdapter class cannot be an inner class, make it static");
+                ok = false;
+                break;
+            }
+        }
+
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        boolean defaultConstructor = false;
+        for (ExecutableElement c: constructors)
+        {
+            if(c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE))
+            {
+                defaultConstructor = true;
+            }
+        }
+        if(!defaultConstructor)
+        {
+            error(type, "@GenerateAdapter class needs a non-private constructor without arguments");
+            ok = false;
+        }
+
+        TypeMirror collection = processingEnv.getTypeUtils().erasure(
+                processingEnv.getElementUtils().getTypeElement("java.util.Collection").asType());
+        TypeMirror map = processingEnv.getTypeUtils().erasure(
+                processingEnv.getElementUtils().getTypeElement("java.util.Map").asType());
+
+        List<FieldInfo> fields = new ArrayList<>();
+        for (VariableElement f: ElementFilter.fieldsIn(type.getEnclosedElements()))
+        {
+            Set<Modifier> modifiers = f.getModifiers();
+            if(modifiers.contains(Modifier.STATIC) || annotation(f, IGNORE) != null)
+            {
+                continue;
+            }
+
+            if(modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL))
+            {
+                error(f, "Field is private or final, the generated adapter cannot access it; relax it or mark it @Ignore");
+                ok = false;
+                continue;
+            }
+
+            FieldInfo info = new FieldInfo();
+            info.field = f.getSimpleName().toString();
+            info.name = info.field;
+            AnnotationMirror nameOverride = annotation(f, NAME_OVERRIDE);
+            if(nameOverride != null)
+            {
+                info.name = "";
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> v: nameOverride.getElementValues().entrySet())
+                {
+                    if(v.getKey().getSimpleName().contentEquals("value"))
+                    {
+                        info.name = (String) v.getValue().getValue();
+                    }
+                }
+            }
+            info.dontQuote = annotation(f, DONT_QUOTE) != null;
+            info.type = f.asType();
+            info.typeName = erasure(info.type);
+
+            // same rule as reflection: the raw types of the element, or key and value, type
+            // arguments
+            if(info.type.getKind() == TypeKind.DECLARED)
+            {
+                TypeMirror erased = processingEnv.getTypeUtils().erasure(info.type);
+                List<? extends TypeMirror> arguments = ((DeclaredType) info.type).getTypeArguments();
+                if(processingEnv.getTypeUtils().isAssignable(erased, collection))
+                {
+                    info.elementTypeName = rawClass(arguments, 0);
+                }
+                else if(processingEnv.getTypeUtils().isAssignable(erased, map))
+                {
+                    info.keyTypeName = rawClass(arguments, 0);
+                    info.elementTypeName = rawClass(arguments, 1);
+                }
+            }
+
+            fields.add(info);
+        }
+
+        return ok ? fields : null;
+    }
+
+    /***********************************************************************************************/
+    // erased name of the i-th type argument if it is a declared type, null for wildcards and type
+    // variables
+    private String rawClass(List<? extends TypeMirror> arguments, int i)
+    {
+        if(arguments.size() > i && arguments.get(i).getKind() == TypeKind.DECLARED)
+        {
+            return erasure(arguments.get(i));
+        }
+
+        return null;
+    }
+
+    /***********************************************************************************************/
+    private void write(TypeElement type, List<FieldInfo> fields)
+    {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String adapterName = type.getSimpleName().toString();
+        for (Element e = type.getEnclosingElement(); e.getKind() == ElementKind.CLASS; e = e.getEnclosingElement())
+        {
+            adapterName = e.getSimpleName() + "_" + adapterName;
+        }
+        adapterName += ADAPTER_SUFFIX;
+
+        String target = erasure(type.asType());
+
+        StringBuilder names = new StringBuilder();
+        StringBuilder types = new StringBuilder();
+        StringBuilder elementTypes = new StringBuilder();
+        StringBuilder keyTypes = new StringBuilder();
+        StringBuilder dontQuote = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++)
+        {
+            FieldInfo f = fields.get(i);
+            String separator = i > 0 ? ", " : "";
+            names.append(separator).append(processingEnv.getElementUtils().getConstantExpression(f.name));
+            types.append(separator).append(f.typeName).append(".class");
+            elementTypes.append(separator).append(f.elementTypeName != null ? f.elementTypeName + ".class" : "null");
+            keyTypes.append(separator).append(f.keyTypeName != null ? f.keyTypeName + ".class" : "null");
+            dontQuote.append(separator).append(f.dontQuote);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated by StupidJsonProcessor, do not edit\n");
+        if(!packageName.isEmpty())
+        {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        sb.append("public final class ").append(adapterName).append(" extends ").append(ADAPTER).append('<').append(target).append(">\n");
+        sb.append("{\n");
+        sb.append("    public ").append(adapterName).append("()\n");
+        sb.append("    {\n");
+        sb.append("        super(new String[] {").append(names).append("},\n");
+        sb.append("                new Class<?>[] {").append(types).append("},\n");
+        sb.append("                new Class<?>[] {").append(elementTypes).append("},\n");
+        sb.append("                new Class<?>[] {").append(keyTypes).append("},\n");
+        sb.append("                new boolean[] {").append(dontQuote).append("});\n");
+        sb.append("    }\n\n");
+
+        sb.append("    @Override\n");
+        sb.append("    protected ").append(target).append(" newInstance()\n");
+        sb.append("    {\n");
+        sb.append("        return new ").append(target).append("();\n");
+        sb.append("    }\n");
+
+        getter(sb, target, fields, "Object", "get", null);
+        getter(sb, target, fields, "int", "getInt", new TypeKind[] {TypeKind.INT, TypeKind.SHORT, TypeKind.BYTE, TypeKind.CHAR});
+        getter(sb, target, fields, "long", "getLong", new TypeKind[] {TypeKind.LONG});
+        getter(sb, target, fields, "float", "getFloat", new TypeKind[] {TypeKind.FLOAT});
+        getter(sb, target, fields, "double", "getDouble", new TypeKind[] {TypeKind.DOUBLE});
+        getter(sb, target, fields, "boolean", "getBoolean", new TypeKind[] {TypeKind.BOOLEAN});
+
+        setter(sb, target, fields, "Object", "set", null);
+        setter(sb, target, fields, "int", "setInt", TypeKind.INT);
+        setter(sb, target, fields, "short", "setShort", TypeKind.SHORT);
+        setter(sb, target, fields, "byte", "setByte", TypeKind.BYTE);
+        setter(sb, target, fields, "char", "setChar", TypeKind.CHAR);
+        setter(sb, target, fields, "long", "setLong", TypeKind.LONG);
+        setter(sb, target, fields, "float", "setFloat", TypeKind.FLOAT);
+        setter(sb, target, fields, "double", "setDouble", TypeKind.DOUBLE);
+        setter(sb, target, fields, "boolean", "setBoolean", TypeKind.BOOLEAN);
+
+        sb.append("}\n");
+
+        String qualified = packageName.isEmpty() ? adapterName : packageName + "." + adapterName;
+        try
+        {
+            Writer w = processingEnv.getFiler().createSourceFile(qualified, type).openWriter();
+            try
+            {
+                w.write(sb.toString());
+            }
+            finally
+            {
+                w.close();
+            }
+        }
+        catch (IOException e)
+        {
+            error(type, "Cannot write " + qualified + ": " + e);
+        }
+    }
+
+    /***********************************************************************************************/
+    // kinds null means every field, boxed
+    private static void getter(StringBuilder sb, String target, List<FieldInfo> fields, String returnType, String method, TypeKind[] kinds)
+    {
+        StringBuilder cases = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++)
+        {
+            FieldInfo f = fields.get(i);
+            if(kinds != null && !contains(kinds, f.type.getKind()))
+            {
+                continue;
+            }
+
+            cases.append("            case ").append(i).append(":\n");
+            cases.append("                return o.").append(f.field).append(";\n");
+        }
+
+        if(cases.length() == 0)
+        {
+            return;
+        }
+
+        sb.append("\n    @Override\n");
+        sb.append("    protected ").append(returnType).append(' ').append(method).append('(').append(target).append(" o, int field)\n");
+        sb.append("    {\n");
+        sb.append("        switch (field)\n");
+        sb.append("        {\n");
+        sb.append(cases);
+        sb.append("            default:\n");
+        sb.append("                throw noSuchField(field);\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+    }
+
+    /***********************************************************************************************/
+    // kind null means the reference fields
+    private static void setter(StringBuilder sb, String target, List<FieldInfo> fields, String valueType, String method, TypeKind kind)
+    {
+        StringBuilder cases = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++)
+        {
+            FieldInfo f = fields.get(i);
+            TypeKind k = f.type.getKind();
+            if(kind != null ? k != kind : k.isPrimitive())
+            {
+                continue;
+            }
+
+            cases.append("            case ").append(i).append(":\n");
+            cases.append("                o.").append(f.field).append(" = ");
+            if(kind == null)
+            {
+                cases.append('(').append(f.typeName).append(") ");
+            }
+            cases.append("v;\n");
+            cases.append("                break;\n");
+        }
+
+        if(cases.length() == 0)
+        {
+            return;
+        }
+
+        sb.append("\n    @Override\n");
+        sb.append("    protected void ").append(method).append('(').append(target).append(" o, int field, ").append(valueType).append(" v)\n");
+        sb.append("    {\n");
+        sb.append("        switch (field)\n");
+        sb.append("        {\n");
+        sb.append(cases);
+        sb.append("            default:\n");
+        sb.append("                throw noSuchField(field);\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+    }
+
+    /***********************************************************************************************/
+    private static boolean contains(TypeKind[] kinds, TypeKind kind)
+    {
+        for (TypeKind k: kinds)
+        {
+            if(k == kind)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /***********************************************************************************************/
+    private String erasure(TypeMirror type)
+    {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    /***********************************************************************************************/
+    private static AnnotationMirror annotation(Element e, String name)
+    {
+        for (AnnotationMirror m: e.getAnnotationMirrors())
+        {
+            if(((TypeElement) m.getAnnotationType().asElement()).getQualifiedName().contentEquals(name))
+            {
+                return m;
+            }
+        }
+
+        return null;
+    }
+
+    /***********************************************************************************************/
+    private void error(Element e, String message)
+    {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, e);
+    }
+}
@@ -87,6 +87,19 @@ public class SimpleActivity extends Activity
         }
     }
 
+    /******************************************************************/
+    // with StupidJsonProcessor on the annotation processor path this class gets a generated
+    // adapter - no reflection, and nothing to keep for Proguard. Fields cannot be private.
+    @StupidJson.GenerateAdapter
+    public static class GeneratedClass
+    {
+        int count = 3;
+        String title = "generated";
+
+        @StupidJson.NameOverride("values")
+        List<String> list = new ArrayList<>();
+    }
+
     /******************************************************************/
     @Override
     protected void onCreate(Bundle savedInstanceState)
@@ -110,5 +123,10 @@ public class SimpleActivity extends Activity
 
         Integer[] testList1 = StupidJson.fromJson(s1, Integer[].class);
         Log.d(TAG, "" + testList1[1]);
+
+        // same calls, the generated adapter is picked up when it's there
+        String s2 = StupidJson.toJson(new GeneratedClass());
+        GeneratedClass g = StupidJson.fromJson(s2, GeneratedClass.class);
+        Log.d(TAG, s2 + " " + g.title);
     }
 }
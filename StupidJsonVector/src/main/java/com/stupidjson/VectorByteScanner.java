@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Alex Portnov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.stupidjson;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+// ByteScanner on whole vectors, picked up by ByteScanner.load(). Each vector is compared against
+// the bytes we look for at once, the scalar code takes the tail. Brackets are found in pairs: '['
+// and '{', ']' and '}' differ only in bit 0x20.
+final class VectorByteScanner extends ByteScanner
+{
+    private final static VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private final static int LANES = SPECIES.length();
+    // most gaps between quotes and brackets are short, a vector only pays off past the first few bytes
+    private final static int SCALAR_PREFIX = 16;
+
+    /***********************************************************************************************/
+    VectorByteScanner()
+    {
+        // narrower than that is no better than the scalar loop
+        if(LANES < 16)
+        {
+            throw new UnsupportedOperationException("Vectors of " + LANES + " bytes");
+        }
+    }
+
+    /***********************************************************************************************/
+    @Override
+    int quoteOrEscape(byte[] b, int from, int to)
+    {
+        int i = Math.min(to, from + SCALAR_PREFIX);
+        int p = super.quoteOrEscape(b, from, i);
+        if(p < i)
+        {
+            return p;
+        }
+
+        for(int last = to - LANES; i <= last; i += LANES)
+        {
+            ByteVector v = ByteVector.fromArray(SPECIES, b, i);
+            VectorMask<Byte> m = v.eq((byte) '"').or(v.eq((byte) '\\'));
+            if(m.anyTrue())
+            {
+                return i + m.firstTrue();
+            }
+        }
+
+        return super.quoteOrEscape(b, i, to);
+    }
+
+    /***********************************************************************************************/
+    @Override
+    int quoteOrBracket(byte[] b, int from, int to)
+    {
+        int i = Math.min(to, from + SCALAR_PREFIX);
+        int p = super.quoteOrBracket(b, from, i);
+        if(p < i)
+        {
+            return p;
+        }
+
+        for(int last = to - LANES; i <= last; i += LANES)
+        {
+            ByteVector v = ByteVector.fromArray(SPECIES, b, i);
+            ByteVector folded = v.or((byte) 0x20);
+            VectorMask<Byte> m = v.eq((byte) '"').or(folded.eq((byte) '{')).or(folded.eq((byte) '}'));
+            if(m.anyTrue())
+            {
+                return i + m.firstTrue();
+            }
+        }
+
+        return super.quoteOrBracket(b, i, to);
+    }
+}